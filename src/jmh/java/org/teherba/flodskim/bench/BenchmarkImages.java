@@ -0,0 +1,73 @@
+/*  Representative disk images for the benchmarks
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: with ImageGenerator
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.bench;
+import  org.teherba.flodskim.system.ImageGenerator;
+import  java.io.File;
+import  java.io.IOException;
+
+/** Writes the disk images which are used by the benchmarks, if they do not yet exist
+ *  in the benchmark directory (system property <code>flodskim.bench.dir</code>,
+ *  default <code>target/bench</code>). Real images can be placed there instead,
+ *  with the same file names:
+ *  <ul>
+ *  <li>rx50.dsk - DEC RX50 (CP/M directory, interleaved sectors) in a DSK container, fully allocated</li>
+ *  <li>sinix.raw - Sinix MX-2 raw image with a tar archive starting at block 0x38</li>
+ *  <li>tavs.raw - TA VS20 raw image with a FAT</li>
+ *  </ul>
+ *  @author Dr. Georg Fischer
+ */
+public class BenchmarkImages {
+    public final static String CVSID = "@(#) $Id: BenchmarkImages.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** Gets the benchmark directory, and creates the images in it if necessary
+     *  @return directory with the images
+     *  @throws IOException if an image cannot be written
+     */
+    public static File getDirectory() throws IOException {
+        File dir = new File(System.getProperty("flodskim.bench.dir", "target/bench"));
+        dir.mkdirs();
+        File file = new File(dir, "rx50.dsk");
+        if (! file.exists()) {
+            ImageGenerator generator = new ImageGenerator("dec-rx50");
+            generator.setFormat("dsk");
+            generator.setFileCount(16);
+            generator.setFileSize(10 * 2048, 10 * 2048); // 160 of 193 data blocks
+            generator.write(file);
+        }
+        file = new File(dir, "sinix.raw");
+        if (! file.exists()) {
+            ImageGenerator generator = new ImageGenerator("sinix-mx2");
+            generator.setFileCount(40);
+            generator.setFileSize(200, 8000);
+            generator.write(file);
+        }
+        file = new File(dir, "tavs.raw");
+        if (! file.exists()) {
+            ImageGenerator generator = new ImageGenerator("ta-vs");
+            generator.setFileCount(40);
+            generator.setFileSize(3 * 4096 + 1, 4 * 4096); // chains of 4 blocks
+            generator.setFragmentation(20);
+            generator.write(file);
+        }
+        return dir;
+    } // getDirectory
+
+} // BenchmarkImages
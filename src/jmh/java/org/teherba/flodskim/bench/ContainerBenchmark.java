@@ -0,0 +1,103 @@
+/*  JMH benchmark for reading disk image containers
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.bench;
+import  org.teherba.flodskim.bench.BenchmarkImages;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.buffer.BufferFactory;
+import  java.io.File;
+import  java.io.IOException;
+import  java.util.concurrent.TimeUnit;
+import  org.openjdk.jmh.annotations.Benchmark;
+import  org.openjdk.jmh.annotations.BenchmarkMode;
+import  org.openjdk.jmh.annotations.Fork;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Measurement;
+import  org.openjdk.jmh.annotations.Mode;
+import  org.openjdk.jmh.annotations.OutputTimeUnit;
+import  org.openjdk.jmh.annotations.Param;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+import  org.openjdk.jmh.annotations.Warmup;
+
+/** Measures <code>readContainer</code> of {@link BaseBuffer} (raw image)
+ *  and of <code>DskBuffer</code> (DSK container) in the different access modes.
+ *  Each invocation opens the file, reads the container and closes it.
+ *  @author Dr. Georg Fischer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerBenchmark {
+    public final static String CVSID = "@(#) $Id: ContainerBenchmark.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** buffer code and file name of the image, separated by ":" */
+    @Param({"base:sinix.raw", "dsk:rx50.dsk"})
+    public String image;
+
+    /** access mode, see {@link BaseBuffer#setAccessMode} */
+    @Param({"read", "map", "lazy"})
+    public String access;
+
+    /** factory for the buffers */
+    private BufferFactory bufferFactory;
+
+    /** code of the buffer */
+    private String bufferCode;
+
+    /** path of the image file */
+    private String fileName;
+
+    /** access mode constant */
+    private int accessMode;
+
+    /** Creates the images if necessary
+     *  @throws IOException if an image cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File dir = BenchmarkImages.getDirectory();
+        int colon  = image.indexOf(':');
+        bufferCode = image.substring(0, colon);
+        fileName   = new File(dir, image.substring(colon + 1)).getPath();
+        accessMode = access.equals("map")  ? BaseBuffer.ACCESS_MAPPED
+                   : access.equals("lazy") ? BaseBuffer.ACCESS_LAZY
+                   : BaseBuffer.ACCESS_READ;
+        bufferFactory = new BufferFactory();
+    } // setup
+
+    /** Opens, reads and closes the container
+     *  @return length of the container
+     */
+    @Benchmark
+    public long readContainer() {
+        BaseBuffer container = bufferFactory.getInstance(bufferCode);
+        container.setAccessMode(accessMode);
+        container.openFile(0, fileName);
+        container.readContainer(0);
+        long result = container.getLength();
+        container.closeInput();
+        return result;
+    } // readContainer
+
+} // ContainerBenchmark
@@ -0,0 +1,230 @@
+/*  JMH benchmark for the file system hot paths
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: directoryCursor and printDirectory
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.bench;
+import  org.teherba.flodskim.bench.BenchmarkImages;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.buffer.BufferFactory;
+import  org.teherba.flodskim.system.BaseSystem;
+import  org.teherba.flodskim.system.DirectoryCursor;
+import  org.teherba.flodskim.system.DirectoryEntry;
+import  org.teherba.flodskim.system.SystemFactory;
+import  java.io.File;
+import  java.io.IOException;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.PrintWriter;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.WritableByteChannel;
+import  java.util.concurrent.TimeUnit;
+import  org.openjdk.jmh.annotations.Benchmark;
+import  org.openjdk.jmh.annotations.BenchmarkMode;
+import  org.openjdk.jmh.annotations.Fork;
+import  org.openjdk.jmh.annotations.Level;
+import  org.openjdk.jmh.annotations.Measurement;
+import  org.openjdk.jmh.annotations.Mode;
+import  org.openjdk.jmh.annotations.OutputTimeUnit;
+import  org.openjdk.jmh.annotations.Param;
+import  org.openjdk.jmh.annotations.Scope;
+import  org.openjdk.jmh.annotations.Setup;
+import  org.openjdk.jmh.annotations.State;
+import  org.openjdk.jmh.annotations.TearDown;
+import  org.openjdk.jmh.annotations.Warmup;
+import  org.openjdk.jmh.infra.Blackhole;
+
+/** Measures the hot paths of the file systems on a container which was read once:
+ *  <code>getBlock</code> over all blocks, directory iteration with
+ *  <code>nextDirectoryEntry</code> and with a <code>DirectoryCursor</code>,
+ *  the directory listing, <code>copyFiles</code> and the hexadecimal dump.
+ *  @author Dr. Georg Fischer
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemBenchmark {
+    public final static String CVSID = "@(#) $Id: SystemBenchmark.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** file system code */
+    @Param({"dec-rx50", "sinix-mx2", "ta-vs"})
+    public String system;
+
+    /** container with the image */
+    private BaseBuffer container;
+
+    /** file system on {@link #container} */
+    private BaseSystem fileSystem;
+
+    /** number of blocks in the image */
+    private int blockCount;
+
+    /** difference between consecutive block numbers (2 for TA VS) */
+    private int blockStep;
+
+    /** target directory for {@link #copyFiles} */
+    private String targetPath;
+
+    /** Stream which discards all bytes */
+    private static class NullOutputStream extends OutputStream {
+        public void write(int b) {
+        } // write(1)
+        public void write(byte[] b, int off, int len) {
+        } // write(3)
+    } // NullOutputStream
+
+    /** Channel which discards all bytes */
+    private static class NullChannel implements WritableByteChannel {
+        public int write(ByteBuffer src) {
+            int result = src.remaining();
+            src.position(src.limit());
+            return result;
+        } // write
+        public boolean isOpen() {
+            return true;
+        } // isOpen
+        public void close() {
+        } // close
+    } // NullChannel
+
+    /** Reads the image into the container, and attaches the file system
+     *  @throws IOException if an image cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File dir = BenchmarkImages.getDirectory();
+        String bufferCode = "base";
+        String fileName   = null;
+        if (false) {
+        } else if (system.equals("dec-rx50" )) {
+            bufferCode = "dsk";
+            fileName   = "rx50.dsk";
+        } else if (system.equals("sinix-mx2")) {
+            fileName   = "sinix.raw";
+        } else if (system.equals("ta-vs"    )) {
+            fileName   = "tavs.raw";
+        }
+        container = new BufferFactory().getInstance(bufferCode);
+        container.openFile(0, new File(dir, fileName).getPath());
+        File dumpFile = new File("/dev/null");
+        if (! dumpFile.exists()) {
+            dumpFile = new File(dir, "dump.tmp");
+        }
+        container.openFile(1, dumpFile.getPath()); // for dump
+        container.readContainer(0);
+        fileSystem = new SystemFactory().getInstance(system);
+        fileSystem.setContainer(container);
+        fileSystem.setWriter(new PrintWriter(new OutputStreamWriter(new NullOutputStream())));
+        blockStep  = system.equals("ta-vs") ? 2 : 1;
+        blockCount = system.equals("dec-rx50")
+                ? 78 * 10 * 512 / fileSystem.getBlockSize() // tracks 0 and 1 are not used
+                : (int) (container.getLength() / fileSystem.getBlockSize());
+        File target = new File(dir, "copy-" + system);
+        target.mkdirs();
+        targetPath = target.getPath();
+    } // setup
+
+    /** Closes the container */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        container.closeAll();
+    } // tearDown
+
+    /** Gets all blocks of the image as byte arrays
+     *  @param hole consumes the blocks
+     */
+    @Benchmark
+    public void getBlock(Blackhole hole) {
+        int iblock = 0;
+        while (iblock < blockCount) {
+            hole.consume(fileSystem.getBlock(iblock * blockStep));
+            iblock ++;
+        } // while iblock
+    } // getBlock
+
+    /** Gets all blocks of the image as views
+     *  @param hole consumes the views
+     */
+    @Benchmark
+    public void getBlockViews(Blackhole hole) {
+        ByteBuffer[] views = new ByteBuffer[fileSystem.getMaxBlockViews()];
+        int iblock = 0;
+        while (iblock < blockCount) {
+            hole.consume(fileSystem.getBlockViews(iblock * blockStep, views));
+            hole.consume(views[0]);
+            iblock ++;
+        } // while iblock
+    } // getBlockViews
+
+    /** Fills the directory and iterates over all entries
+     *  @param hole consumes the entries
+     */
+    @Benchmark
+    public void nextDirectoryEntry(Blackhole hole) {
+        fileSystem.fillDirectory();
+        DirectoryEntry diren = null;
+        while ((diren = fileSystem.nextDirectoryEntry(true)) != null) {
+            hole.consume(diren);
+        } // while diren
+    } // nextDirectoryEntry
+
+    /** Fills the directory and walks over all entries with one cursor,
+     *  reading the fields in place (Tar and Sinix have no cursor)
+     *  @param hole consumes the fields
+     */
+    @Benchmark
+    public void directoryCursor(Blackhole hole) {
+        DirectoryCursor cursor = fileSystem.getDirectoryCursor();
+        if (cursor != null) {
+            while (cursor.next(true)) {
+                hole.consume(cursor.getFileSize());
+                hole.consume(cursor.getBlock(0));
+            } // while next
+        }
+    } // directoryCursor
+
+    /** Prints the directory listing to a writer which discards the output */
+    @Benchmark
+    public void printDirectory() {
+        fileSystem.printDirectory();
+    } // printDirectory
+
+    /** Copies all files into a target directory */
+    @Benchmark
+    public void copyFiles() {
+        fileSystem.copyFiles(targetPath);
+    } // copyFiles
+
+    /** Dumps the whole container to a file with {@link BaseBuffer#dump(long, int)} */
+    @Benchmark
+    public void dump() {
+        container.dump(0L, (int) container.getLength());
+    } // dump
+
+    /** Dumps the whole container to a channel which discards the output
+     *  @throws IOException if the channel cannot be written
+     */
+    @Benchmark
+    public void dumpChannel() throws IOException {
+        container.dump(0L, Long.MAX_VALUE, new NullChannel(), 1);
+    } // dumpChannel
+
+} // SystemBenchmark
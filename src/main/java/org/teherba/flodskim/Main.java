@@ -1,5 +1,23 @@
 /*  Read and Process (Floppy) Disk Image Formats
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: -generate imd, and formats with .gz or .zip
+    2026-10-16: -jobs for -copy, default 1
+    2026-10-16: containers are writable only with -patch or -write
+    2026-10-16: per-image output of the containers in -batch
+    2026-10-16: -generate
+    2026-10-16: -hexdump
+    2026-10-16: -cat
+    2026-10-16: -extract
+    2026-10-16: -threads for -copy
+    2026-10-16: -batch, -threads
+    2026-10-16: -cache; deferred -read
+    2026-10-16: -patch, -write
+    2026-10-16: -zip; gzip-compressed input
+    2026-10-16: -buffer auto, -probe
+    2026-10-16: -read - for STDIN
+    2026-10-16: -block with views
+    2026-10-16: -access lazy
+    2026-10-16: -access
     2013-11-05, Georg Fischer: copied from Main
 */
 /*
@@ -23,10 +41,39 @@ import  org.teherba.flodskim.buffer.BaseBuffer;
 import  org.teherba.flodskim.buffer.BufferFactory;
 import  org.teherba.flodskim.system.BaseSystem;
 import  org.teherba.flodskim.system.DirectoryEntry;
+import  org.teherba.flodskim.system.DirectorySnapshot;
+import  org.teherba.flodskim.system.ImageGenerator;
+import  org.teherba.flodskim.system.ParseCache;
 import  org.teherba.flodskim.system.SystemFactory;
+import  java.io.BufferedInputStream;
+import  java.io.BufferedReader;
+import  java.io.ByteArrayOutputStream;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.FileOutputStream;
+import  java.io.FileReader;
+import  java.io.InputStream;
+import  java.io.InputStreamReader;
+import  java.io.IOException;
+import  java.io.OutputStreamWriter;
 import  java.io.StringWriter;
 import  java.io.PrintWriter;
+import  java.io.Reader;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.Channels;
+import  java.nio.channels.FileChannel;
+import  java.nio.channels.WritableByteChannel;
+import  java.nio.file.Files;
+import  java.nio.file.Path;
+import  java.nio.file.Paths;
+import  java.util.ArrayList;
+import  java.util.Arrays;
 import  java.util.Iterator;
+import  java.util.List;
+import  java.util.concurrent.ForkJoinPool;
+import  java.util.concurrent.ForkJoinTask;
+import  java.util.concurrent.atomic.AtomicInteger;
+import  java.util.stream.Stream;
 import  java.util.regex.Matcher;
 import  java.util.regex.Pattern;
 import  org.apache.logging.log4j.Logger;
@@ -87,114 +134,631 @@ final public class Main {
         process(commandLine.split("\\s+"));
     } // process(String)
 
+    /** Prints the detected container format of a file, or of all files in a directory tree.
+     *  Only the first bytes of each file are read.
+     *  @param bufferFactory factory which detects the format
+     *  @param path name of a file or directory
+     */
+    private void probeFiles(BufferFactory bufferFactory, String path) {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(System.out), false);
+        ByteBuffer header = ByteBuffer.allocate(BufferFactory.PROBE_SIZE);
+        try {
+            Stream<Path> paths = Files.walk(Paths.get(path));
+            try {
+                Iterator<Path> iter = paths.filter(Files::isRegularFile).sorted().iterator();
+                while (iter.hasNext()) {
+                    File file = iter.next().toFile();
+                    writer.println(bufferFactory.probe(file, header) + "\t" + file.length() + "\t" + file.getPath());
+                } // while iter
+            } finally {
+                paths.close();
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        writer.flush();
+    } // probeFiles
+
+    /** factory for the container buffers */
+    private BufferFactory bufferFactory;
+    /** factory for the file systems */
+    private SystemFactory systemFactory;
+    /** current container */
+    private BaseBuffer    container;
+    /** current file system */
+    private BaseSystem    fileSystem;
+    /** code for the container format, or "auto" */
+    private String bufferCode;
+    /** amount of diagnostic information */
+    private int informLevel;
+    /** access mode for the container file */
+    private int accessMode;
+    /** persistent cache for parsed directories, or null */
+    private ParseCache cache;
+    /** name of the image file which is still to be read, or null if it was read */
+    private String pendingFile;
+    /** name of the image file for the {@link #cache}, or null */
+    private String cacheFile;
+    /** directory entries of the image file for the {@link #cache}, or null if not yet known */
+    private List<DirectoryEntry> cachedEntries;
+    /** number of threads for {@link #processBatch} and -hexdump */
+    private int threadCount;
+    /** number of files which -copy writes concurrently */
+    private int copyThreads;
+    /** writer for the output of the file systems, or null for STDOUT */
+    private PrintWriter writer;
+    /** whether the containers will be changed (-patch, -write) */
+    private boolean writable;
+    /** number of exceptions which occurred while the options were processed */
+    private int errorCount;
+
     /** Evaluates the arguments of the command line, and processes them.
      *  @param args Arguments; if missing, print the usage string
      */
     public void process(String args[]) {
-        BufferFactory bufferFactory  = new BufferFactory();
-        BaseBuffer    container = null;
-        SystemFactory systemFactory  = new SystemFactory();
-        BaseSystem    fileSystem = null;
+        bufferFactory = new BufferFactory();
+        container     = null;
+        systemFactory = new SystemFactory();
+        fileSystem    = null;
+        cache         = null;
+        pendingFile   = null;
+        cacheFile     = null;
+        threadCount   = Runtime.getRuntime().availableProcessors();
+        copyThreads   = 1;
+        writer        = null;
+        errorCount    = 0;
         try {
             int iarg = 0; // index for command line arguments
             if (iarg >= args.length) { // usage
                 System.out.println("Usage:\tjava org.teherba.flodskim.Main parameters actions");
                 System.out.println("Parameters are:");
-                System.out.println("  -buffer code        container format is code (default: dsk)");
+                System.out.println("  -access mode        container access: read (default), map, lazy");
+                System.out.println("  -buffer code        container format is code (default: dsk), or auto");
+                System.out.println("  -cache dir mbytes   cache parsed directories in dir, with at most mbytes");
                 System.out.println("  -system code        filesystem is code (default: base)");
                 System.out.println("  -inform num         amount of diagnostic output");
+                System.out.println("  -jobs num           number of files copied concurrently by -copy (default: 1)");
+                System.out.println("  -threads num        number of threads for -batch and -hexdump (default: number of cores)");
                 System.out.println("Actions on buffers are:");
+                System.out.println("  -batch path         read all disk images in a list file (lines: filename [buffer [system]])");
+                System.out.println("                      or a directory tree in parallel, and apply the following actions");
+                System.out.println("                      (-dir, -copy path/filename) to each of them");
                 System.out.println("  -block xnum         dump block xnum");
                 System.out.println("  -dump xoffs xlen    hexadecimal dump");
-                System.out.println("  -read filename      read a disk image file");
+                System.out.println("  -generate format dir count files maxsize frag  write count synthetic images");
+                System.out.println("                      for the -system code into dir, with a list file dir/images.lst for -batch;");
+                System.out.println("                      format raw, dsk, edsk or imd, files of 1..maxsize bytes, frag = % fragmentation");
+                System.out.println("                      (format.gz: gzip-compressed images, format.zip: one ZIP archive for -zip)");
+                System.out.println("  -hexdump path xoffs xlen  hexadecimal dump into a file (\"-\" = STDOUT),");
+                System.out.println("                      xlen \"*\" = up to the end of the container");
+                System.out.println("  -patch xoffs xbytes change bytes in the container");
+                System.out.println("  -probe path         print the container formats of a file or directory tree");
+                System.out.println("  -read filename      read a disk image file (\"-\" = STDIN, may be gzip-compressed)");
+                System.out.println("  -zip filename       read all disk images in a ZIP archive (\"-\" = STDIN),");
+                System.out.println("                      and apply the following actions to each of them");
+                System.out.println("  -write              write the changed sectors back to the disk image file");
                 System.out.println("Actions on file systems are:");
                 System.out.println("  -dir                print a directory listing");
+                System.out.println("  -cat name           print a single file, translated by the character set of the system");
                 System.out.println("  -copy path          copy all files into path");
+                System.out.println("  -extract name file  copy a single file (\"-\" = STDOUT)");
             } else { // >= 1 argument
-                String bufferCode = "dsk";
-                String systemCode = "base";
-                String fileName   = null;
-                String targetPath = ".";
-                int informLevel   = 0; // amount of diagnostic information
-
-                // get all option codes
-                while (iarg < args.length && args[iarg].startsWith("-")) {
-                    String option = args[iarg ++];
+                bufferCode  = "dsk";
+                informLevel = 0;
+                accessMode  = BaseBuffer.ACCESS_READ;
+                writable    = false;
+                int jarg = iarg;
+                while (jarg < args.length) { // open the containers for writing only if necessary
+                    if (args[jarg].startsWith("-patch") || args[jarg].startsWith("-write")) {
+                        writable = true;
+                    }
+                    jarg ++;
+                } // while jarg
+                processOptions(args, iarg);
+                if (container != null) {
+                    container.closeAll();
+                }
+            } // args.length >= 1
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        } // try
+     } // process
+
+    /** Evaluates the options of the command line from some index on, and processes them.
+     *  @param args Arguments
+     *  @param iarg index of the first option to be processed
+     */
+    private void processOptions(String args[], int iarg) {
+        try {
+            String systemCode = "base";
+            String fileName   = null;
+            String targetPath = ".";
+
+            // get all option codes
+            while (iarg < args.length && args[iarg].startsWith("-")) {
+                String option = args[iarg ++];
+                if (false) {
+
+                } else if (option.startsWith("-access"  )) {
+                    String taccess = args[iarg ++];
                     if (false) {
+                    } else if (taccess.startsWith("lazy")) {
+                        accessMode = BaseBuffer.ACCESS_LAZY;
+                    } else if (taccess.startsWith("map" )) {
+                        accessMode = BaseBuffer.ACCESS_MAPPED;
+                    } else if (taccess.startsWith("read")) {
+                        accessMode = BaseBuffer.ACCESS_READ;
+                    } else {
+                        System.err.println("invalid access mode \"" + taccess + "\"");
+                    }
 
-                    } else if (option.startsWith("-block"   )) {
-                        String tblock = args[iarg ++];
-                        int blockNo = 0;
-                        try {
-                            blockNo = Integer.parseInt(tblock, 16); // hex
-                        } catch (Exception exc) {
-                            log.error("Main.process: numeric exception, blockNo=" + tblock);
-                        }
-                        byte[] block = fileSystem.getBlock(blockNo);
-                        fileSystem.dump(block, 0, block.length);
+                } else if (option.startsWith("-batch"   )) {
+                    String listName = args[iarg ++];
+                    processBatch(listName, systemCode, Arrays.copyOfRange(args, iarg, args.length));
+                    iarg = args.length; // the following actions were applied to all images
 
-                    } else if (option.startsWith("-buffer"  )) {
-                        bufferCode = args[iarg ++];
-                        container = bufferFactory.getInstance(bufferCode);
+                } else if (option.startsWith("-block"   )) {
+                    String tblock = args[iarg ++];
+                    int blockNo = 0;
+                    try {
+                        blockNo = Integer.parseInt(tblock, 16); // hex
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, blockNo=" + tblock);
+                    }
+                    ensureRead();
+                    fileSystem.dumpBlock(blockNo);
+
+                } else if (option.startsWith("-buffer"  )) {
+                    bufferCode = args[iarg ++];
+                    container = bufferCode.equals("auto") ? null : bufferFactory.getInstance(bufferCode);
+
+                } else if (option.startsWith("-cache"   )) {
+                    String tdir   = args[iarg ++];
+                    String tbytes = args[iarg ++];
+                    long maxBytes = 64L << 20;
+                    try {
+                        maxBytes = Long.parseLong(tbytes) << 20;
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, mbytes=" + tbytes);
+                    }
+                    cache = new ParseCache(new File(tdir), maxBytes);
+
+                } else if (option.startsWith("-cat"     )) {
+                    String name = args[iarg ++];
+                    ensureSnapshot();
+                    Reader reader = new InputStreamReader(fileSystem.openFile(name), fileSystem.getCharset());
+                    PrintWriter writer = fileSystem.getWriter();
+                    char[] buffer = new char[8192];
+                    int len = 0;
+                    while ((len = reader.read(buffer, 0, buffer.length)) >= 0) {
+                        writer.write(buffer, 0, len);
+                    } // while len
+                    writer.flush();
 
-                    } else if (option.startsWith("-copy"    )) {
-                        targetPath = args[iarg ++];
+                } else if (option.startsWith("-copy"    )) {
+                    targetPath = args[iarg ++];
+                    if (cacheFile != null) {
+                        List<DirectoryEntry> entries = getCachedEntries();
+                        ensureRead();
+                        fileSystem.copyFiles(targetPath, entries);
+                    } else {
+                        ensureRead();
                         fileSystem.copyFiles(targetPath);
+                    }
 
-                    } else if (option.startsWith("-dir"     )) {
+                } else if (option.startsWith("-dir"     )) {
+                    if (cacheFile != null) {
+                        fileSystem.printDirectory(getCachedEntries());
+                    } else {
+                        ensureRead();
                         fileSystem.printDirectory();
+                    }
 
-                    } else if (option.startsWith("-dump"    )) {
-                        String toffs = args[iarg ++];
-                        String tlen  = args[iarg ++];
-                        int offset = 0;
-                        int length = 0x100;
-                        try {
-                            offset = Integer.parseInt(toffs, 16);
-                            length = Integer.parseInt(tlen , 16);
-                        } catch (Exception exc) {
-                            log.error("Main.process: numeric exception, offset=" + toffs + ", length=" + tlen);
-                        }
-                        if (container == null) {
-                            container = bufferFactory.getInstance(bufferCode);
+                } else if (option.startsWith("-dump"    )) {
+                    String toffs = args[iarg ++];
+                    String tlen  = args[iarg ++];
+                    long offset = 0;
+                    int length = 0x100;
+                    try {
+                        offset = Long.parseLong(toffs, 16);
+                        length = Integer.parseInt(tlen , 16);
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, offset=" + toffs + ", length=" + tlen);
+                    }
+                    ensureRead();
+                    if (container == null) {
+                        container = bufferFactory.getInstance(bufferCode);
+                    }
+                    container.dump(offset, length);
+
+                } else if (option.startsWith("-extract" )) {
+                    String name   = args[iarg ++];
+                    String target = args[iarg ++];
+                    ensureSnapshot();
+                    if (target.equals("-")) { // STDOUT
+                        InputStream stream = fileSystem.openFile(name);
+                        byte[] buffer = new byte[8192];
+                        int len = 0;
+                        while ((len = stream.read(buffer, 0, buffer.length)) >= 0) {
+                            System.out.write(buffer, 0, len);
+                        } // while len
+                        System.out.flush();
+                    } else {
+                        fileSystem.extractFile(name, target);
+                        fileSystem.getWriter().println("\'" + name +  "\' -> \'" + target + "\'");
+                    }
+
+                } else if (option.startsWith("-generate")) {
+                    String tformat = args[iarg ++];
+                    String tdir    = args[iarg ++];
+                    String tcount  = args[iarg ++];
+                    String tfiles  = args[iarg ++];
+                    String tsize   = args[iarg ++];
+                    String tfrag   = args[iarg ++];
+                    try {
+                        ImageGenerator generator = new ImageGenerator(systemCode);
+                        generator.setFormat(tformat);
+                        generator.setFileCount(Integer.parseInt(tfiles, 10));
+                        generator.setFileSize(1, Integer.parseInt(tsize, 10));
+                        generator.setFragmentation(Integer.parseInt(tfrag, 10));
+                        File listFile = generator.writeCorpus(new File(tdir), Integer.parseInt(tcount, 10));
+                        if (informLevel >= 1) {
+                            System.err.println(tcount + " images " + (listFile.getName().endsWith(".zip") ? "stored" : "listed")
+                                    + " in " + listFile.getPath());
                         }
-                        container.dump(offset, length);
+                    } catch (NumberFormatException exc) {
+                        log.error("Main.process: numeric exception, count=" + tcount + ", files=" + tfiles
+                                + ", maxsize=" + tsize + ", frag=" + tfrag);
+                    } catch (IllegalArgumentException exc) {
+                        System.err.println(exc.getMessage());
+                    }
 
-                    } else if (option.startsWith("-inform"  )) {
-                        String tlevel = args[iarg ++];
+                } else if (option.startsWith("-hexdump" )) {
+                    String tpath = args[iarg ++];
+                    String toffs = args[iarg ++];
+                    String tlen  = args[iarg ++];
+                    long offset = 0;
+                    long length = Long.MAX_VALUE; // "*" = rest of the container
+                    try {
+                        offset = Long.parseLong(toffs, 16);
+                        if (! tlen.equals("*")) {
+                            length = Long.parseLong(tlen, 16);
+                        }
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, offset=" + toffs + ", length=" + tlen);
+                    }
+                    ensureRead();
+                    if (container == null) {
+                        container = bufferFactory.getInstance(bufferCode);
+                    }
+                    if (tpath.equals("-") && writer != null) { // buffer of one image in a batch
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream(0x1000);
+                        container.dump(offset, length, Channels.newChannel(bytes), threadCount);
+                        writer.print(bytes.toString("UTF-8"));
+                    } else if (tpath.equals("-")) { // STDOUT
+                        WritableByteChannel channel = Channels.newChannel(System.out);
+                        container.dump(offset, length, channel, threadCount);
+                        System.out.flush();
+                    } else {
+                        FileChannel channel = new FileOutputStream(tpath, false).getChannel();
                         try {
-                            informLevel = Integer.parseInt(tlevel, 10);
-                        } catch (Exception exc) {
-                            log.error("Main.process: numeric exception, level=" + tlevel);
+                            container.dump(offset, length, channel, threadCount);
+                        } finally {
+                            channel.close();
                         }
+                    }
 
-                    } else if (option.startsWith("-read"    )) {
-                        fileName = args[iarg ++];
-                        if (container == null) {
-                            container = bufferFactory.getInstance(bufferCode);
+                } else if (option.startsWith("-inform"  )) {
+                    String tlevel = args[iarg ++];
+                    try {
+                        informLevel = Integer.parseInt(tlevel, 10);
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, level=" + tlevel);
+                    }
+
+                } else if (option.startsWith("-jobs"    )) {
+                    String tcount = args[iarg ++];
+                    try {
+                        copyThreads = Math.max(Integer.parseInt(tcount, 10), 1);
+                        if (fileSystem != null) {
+                            fileSystem.setCopyThreads(copyThreads);
                         }
-                        container.openFile(0, fileName);
-                        container.openFile(1, null);
-                        container.readContainer(informLevel);
-
-                    } else if (option.startsWith("-system"  )) {
-                        systemCode = args[iarg ++];
-                        fileSystem = systemFactory.getInstance(systemCode);
-                        if (container == null) {
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, jobs=" + tcount);
+                    }
+
+                } else if (option.startsWith("-patch"   )) {
+                    String toffs  = args[iarg ++];
+                    String tbytes = args[iarg ++];
+                    try {
+                        long offset = Long.parseLong(toffs, 16);
+                        byte[] bytes = new byte[tbytes.length() / 2];
+                        int ibyte = 0;
+                        while (ibyte < bytes.length) {
+                            bytes[ibyte] = (byte) Integer.parseInt(tbytes.substring(ibyte * 2, ibyte * 2 + 2), 16);
+                            ibyte ++;
+                        } // while ibyte
+                        ensureRead();
+                        container.putBytes(offset, bytes, 0, bytes.length);
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, offset=" + toffs + ", bytes=" + tbytes);
+                    }
+
+                } else if (option.startsWith("-probe"   )) {
+                    probeFiles(bufferFactory, args[iarg ++]);
+
+                } else if (option.startsWith("-read"    )) {
+                    fileName = args[iarg ++];
+                    cacheFile = null;
+                    cachedEntries = null;
+                    if (cache != null && ! fileName.equals("-") && ! BaseBuffer.isGzip(new File(fileName))) {
+                        cacheFile   = fileName; // defer the reading until the data are needed
+                        pendingFile = fileName;
+                        if (container == null && ! bufferCode.equals("auto")) {
                             container = bufferFactory.getInstance(bufferCode);
                         }
-                        fileSystem.setContainer(container);
-
                     } else {
-                        System.err.println("invalid option \"" + option + "\"");
+                        readImage(fileName);
                     }
-                } // while options
-                container.closeAll();
-            } // args.length >= 1
+
+                } else if (option.startsWith("-system"  )) {
+                    systemCode = args[iarg ++];
+                    cachedEntries = null;
+                    fileSystem = systemFactory.getInstance(systemCode);
+                    fileSystem.setCopyThreads(copyThreads);
+                    if (writer != null) {
+                        fileSystem.setWriter(writer);
+                    }
+                    if (container == null && ! bufferCode.equals("auto")) {
+                        container = bufferFactory.getInstance(bufferCode);
+                    }
+                    fileSystem.setContainer(container);
+
+                } else if (option.startsWith("-threads" )) {
+                    String tcount = args[iarg ++];
+                    try {
+                        threadCount = Math.max(Integer.parseInt(tcount, 10), 1);
+                    } catch (Exception exc) {
+                        log.error("Main.process: numeric exception, threads=" + tcount);
+                    }
+
+                } else if (option.startsWith("-write"   )) {
+                    ensureRead();
+                    int count = container.writeBack();
+                    if (count >= 0 && informLevel >= 1) {
+                        System.err.println(count + " sectors written");
+                    }
+
+                } else if (option.startsWith("-zip"     )) {
+                    fileName = args[iarg ++];
+                    final int actionStart = iarg;
+                    InputStream zipStream = fileName.equals("-") ? System.in : new FileInputStream(fileName);
+                    bufferFactory.forEachZipEntry(zipStream, bufferCode, informLevel, (entryName, entryContainer) -> {
+                        System.out.println("==> " + entryName + " <==");
+                        setContainer(entryContainer);
+                        processOptions(args, actionStart);
+                        System.out.flush();
+                    });
+                    iarg = args.length; // the following actions were applied to all entries
+
+                } else {
+                    System.err.println("invalid option \"" + option + "\"");
+                }
+            } // while options
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
+            errorCount ++;
         } // try
-     } // process
+    } // processOptions
+
+    /** Gets the list of images for {@link #processBatch}
+     *  @param listName name of a list file with lines "filename [buffer [system]]"
+     *  (empty lines and lines starting with "#" are ignored), or of a directory tree
+     *  @param systemCode default code for the file system
+     *  @return list of (filename, buffer code, system code)
+     *  @throws IOException if the list file or directory cannot be read
+     */
+    private List<String[]> getBatchImages(String listName, String systemCode) throws IOException {
+        ArrayList<String[]> result = new ArrayList<String[]>(1024);
+        if (Files.isDirectory(Paths.get(listName))) {
+            Stream<Path> paths = Files.walk(Paths.get(listName));
+            try {
+                Iterator<Path> iter = paths.filter(Files::isRegularFile).sorted().iterator();
+                while (iter.hasNext()) {
+                    result.add(new String[] { iter.next().toString(), bufferCode, systemCode });
+                } // while iter
+            } finally {
+                paths.close();
+            }
+        } else {
+            BufferedReader reader = new BufferedReader(new FileReader(listName));
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && ! line.startsWith("#")) {
+                    String[] fields = line.split("\\s+");
+                    result.add(new String[]
+                            { fields[0]
+                            , fields.length > 1 ? fields[1] : bufferCode
+                            , fields.length > 2 ? fields[2] : systemCode
+                            });
+                }
+            } // while lines
+            reader.close();
+        }
+        return result;
+    } // getBatchImages
+
+    /** Processes a list of images in parallel on a work-stealing pool of {@link #threadCount} threads.
+     *  Each image is processed by a separate instance of {@link Main} with its own factories,
+     *  such that an error in one image does not affect the others.
+     *  All output of an image (directory listings, dumps, diagnostic messages)
+     *  goes into a separate buffer.
+     *  The outputs are printed in the order of the list, and a summary is printed to STDERR.
+     *  @param listName name of a list file or a directory tree, see {@link #getBatchImages}
+     *  @param systemCode default code for the file system
+     *  @param actions options to be applied to each image; a target path of -copy
+     *  is extended by the image's filename
+     *  @throws IOException if the list file or directory cannot be read
+     */
+    private void processBatch(String listName, String systemCode, String[] actions) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<String[]> images = getBatchImages(listName, systemCode);
+        AtomicInteger failCount = new AtomicInteger(0);
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+        ArrayList<ForkJoinTask<String>> tasks = new ArrayList<ForkJoinTask<String>>(images.size());
+        Iterator<String[]> iter = images.iterator();
+        while (iter.hasNext()) {
+            String[] image = iter.next();
+            tasks.add(pool.submit(() -> processBatchImage(image, actions, failCount)));
+        } // while iter
+        Iterator<ForkJoinTask<String>> taskIter = tasks.iterator();
+        while (taskIter.hasNext()) {
+            System.out.print(taskIter.next().join());
+        } // while taskIter
+        System.out.flush();
+        pool.shutdown();
+        System.err.println("batch: " + images.size() + " images, " + failCount.get() + " failed, "
+                + threadCount + " threads, " + (System.currentTimeMillis() - startTime) + " ms");
+    } // processBatch
+
+    /** Processes one image of a batch
+     *  @param image (filename, buffer code, system code)
+     *  @param actions options to be applied to the image
+     *  @param failCount counter for failed images
+     *  @return output of the actions
+     */
+    private String processBatchImage(String[] image, String[] actions, AtomicInteger failCount) {
+        StringWriter buffer = new StringWriter(1024);
+        Main worker = new Main();
+        worker.bufferFactory = new BufferFactory();
+        worker.systemFactory = new SystemFactory();
+        worker.bufferCode    = image[1];
+        worker.informLevel   = informLevel;
+        worker.accessMode    = accessMode;
+        worker.writable      = writable;
+        worker.threadCount   = 1;
+        worker.copyThreads   = 1;
+        worker.writer        = new PrintWriter(buffer);
+        worker.writer.println("==> " + image[0] + " <==");
+        ArrayList<String> workerArgs = new ArrayList<String>(actions.length + 4);
+        workerArgs.add("-system");
+        workerArgs.add(image[2]);
+        workerArgs.add("-read");
+        workerArgs.add(image[0]);
+        int iarg = 0;
+        while (iarg < actions.length) {
+            workerArgs.add(actions[iarg]);
+            if (actions[iarg].startsWith("-copy") && iarg + 1 < actions.length) { // separate target directory
+                iarg ++;
+                File target = new File(actions[iarg], new File(image[0]).getName());
+                target.mkdirs();
+                workerArgs.add(target.getPath());
+            }
+            iarg ++;
+        } // while iarg
+        try {
+            worker.processOptions(workerArgs.toArray(new String[workerArgs.size()]), 0);
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            worker.errorCount ++;
+        }
+        if (worker.container != null) {
+            worker.container.flush();
+            worker.container.closeInput();
+        }
+        if (worker.errorCount > 0) {
+            failCount.incrementAndGet();
+        }
+        worker.writer.flush();
+        return buffer.toString();
+    } // processBatchImage
+
+    /** Reads an image file into the container.
+     *  With buffer code "auto", the container format is detected from the first bytes.
+     *  @param fileName name of the image file, or "-" for STDIN
+     *  @throws IOException if the file cannot be opened
+     */
+    private void readImage(String fileName) throws IOException {
+        InputStream stream = null;
+        if (bufferCode.equals("auto")) { // detect from the first bytes
+            String format = null;
+            if (fileName.equals("-")) {
+                stream = BaseBuffer.decompress(new BufferedInputStream(System.in));
+                format = bufferFactory.probe(stream);
+            } else {
+                format = bufferFactory.probe(new File(fileName), ByteBuffer.allocate(BufferFactory.PROBE_SIZE));
+            }
+            setContainer(bufferFactory.getInstance(bufferFactory.getCodeForFormat(format)));
+        } else if (container == null) {
+            container = bufferFactory.getInstance(bufferCode);
+        }
+        container.setAccessMode(accessMode);
+        container.setWritable(writable);
+        if (writer != null) { // for example the buffer of one image in a batch
+            container.setWriter(writer);
+        }
+        if (stream != null) {
+            container.openStream(stream);
+        } else if (! container.openFile(0, fileName)) {
+            throw new IOException("cannot open " + fileName);
+        }
+        container.openFile(1, null);
+        container.readContainer(informLevel);
+    } // readImage
+
+    /** Reads the image file if its reading was deferred by the {@link #cache}
+     *  @throws IOException if the file cannot be read
+     */
+    private void ensureRead() throws IOException {
+        if (pendingFile != null) {
+            String fileName = pendingFile;
+            pendingFile = null;
+            readImage(fileName);
+        }
+    } // ensureRead
+
+    /** Reads the image if necessary, and takes the directory snapshot
+     *  of the file system from the {@link #cache} if one is set
+     *  @throws IOException if the file cannot be read
+     */
+    private void ensureSnapshot() throws IOException {
+        if (cacheFile != null) {
+            List<DirectoryEntry> entries = getCachedEntries();
+            ensureRead();
+            fileSystem.setSnapshot(new DirectorySnapshot(entries));
+        } else {
+            ensureRead();
+        }
+    } // ensureSnapshot
+
+    /** Gets the directory entries of the current image from the {@link #cache}.
+     *  If they are not yet cached, the image is read, and its directory is parsed and cached.
+     *  @return list of all directory entries, including the deleted ones
+     *  @throws IOException if the file cannot be read
+     */
+    private List<DirectoryEntry> getCachedEntries() throws IOException {
+        if (cachedEntries == null) {
+            String hash = cache.getHash(new File(cacheFile));
+            cachedEntries = cache.get(hash, bufferCode, fileSystem.getCode(), container);
+            if (cachedEntries == null) {
+                ensureRead();
+                cachedEntries = fileSystem.getDirectoryEntries(true);
+                cache.put(hash, bufferCode, fileSystem.getCode(), container, cachedEntries);
+            }
+        }
+        return cachedEntries;
+    } // getCachedEntries
+
+    /** Sets the current container, and connects the current file system to it
+     *  @param newContainer the container to be processed
+     */
+    private void setContainer(BaseBuffer newContainer) {
+        container = newContainer;
+        if (fileSystem != null) {
+            fileSystem.setContainer(container);
+        }
+    } // setContainer
 
     /** Commandline interface for number spelling.
      *  @param args elements of the commandline separated by whitespace
@@ -1,9 +1,15 @@
 /*  Read and Process (Floppy) Disk Image Formats
     @(#) $Id: Servlet.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: no use of a timed out request; attributes are set at the dispatch
+    2026-10-16: stub warning removed, compiled by the target servlet.compile
+    2026-10-16: request attributes for the JSPs; timed out requests are removed or interrupted
+    2026-10-16: ZIP download of selected files with all extents
+    2026-10-16: asynchronous processing on a bounded executor
+    2026-10-16: multipart upload of an image, with streaming parse; numword leftovers removed
+    2026-10-16: function=zip, streaming ZIP download of the files of an image
+    2026-10-16: ImageStore for the images of the sessions
     2017-05-29: javadoc 1.8
     2013-11-05, Dr. Georg Fischer: copied from numword
-
-    Caution, only a stub, not tested!
 */
 /*
  * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
@@ -23,15 +29,54 @@
 
 package org.teherba.flodskim;
 import  org.teherba.flodskim.Main;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.buffer.BufferFactory;
+import  org.teherba.flodskim.buffer.ImageStore;
+import  org.teherba.flodskim.system.BaseSystem;
+import  org.teherba.flodskim.system.DirectoryEntry;
+import  org.teherba.flodskim.system.SystemFactory;
+import  java.io.BufferedInputStream;
+import  java.io.FilterInputStream;
+import  java.io.FilterOutputStream;
 import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.InterruptedIOException;
+import  java.io.OutputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.PrintWriter;
+import  java.util.ArrayList;
+import  java.util.Arrays;
+import  java.util.HashSet;
+import  java.util.Iterator;
+import  java.util.LinkedHashMap;
+import  java.util.List;
+import  java.util.Map;
+import  java.util.concurrent.ArrayBlockingQueue;
+import  java.util.concurrent.RejectedExecutionException;
+import  java.util.concurrent.ThreadFactory;
+import  java.util.concurrent.ThreadPoolExecutor;
+import  java.util.concurrent.TimeUnit;
+import  java.util.concurrent.atomic.AtomicInteger;
+import  java.util.zip.ZipOutputStream;
+import  javax.servlet.AsyncContext;
+import  javax.servlet.AsyncEvent;
+import  javax.servlet.AsyncListener;
 import  javax.servlet.RequestDispatcher;
 import  javax.servlet.ServletConfig;
 import  javax.servlet.ServletContext;
 import  javax.servlet.ServletException;
+import  javax.servlet.ServletRequest;
 import  javax.servlet.http.HttpServlet;
 import  javax.servlet.http.HttpServletRequest;
 import  javax.servlet.http.HttpServletResponse;
 import  javax.servlet.http.HttpSession;
+import  javax.servlet.http.HttpSessionBindingEvent;
+import  javax.servlet.http.HttpSessionBindingListener;
+import  org.apache.commons.fileupload.FileItemIterator;
+import  org.apache.commons.fileupload.FileItemStream;
+import  org.apache.commons.fileupload.servlet.ServletFileUpload;
+import  org.apache.commons.fileupload.servlet.ServletRequestContext;
+import  org.apache.commons.fileupload.util.Streams;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -45,8 +90,22 @@ public class Servlet extends HttpServlet {
 
     /** log4j logger (category) */
     private Logger log;
-    /** instance of the number converter */
-    private Main command;
+    /** images of all sessions, in direct memory */
+    private ImageStore store;
+
+    /** default budget of the {@link #store}, if there is no init parameter <em>imageStoreBytes</em> (256 MB) */
+    private static final long DEFAULT_STORE_BYTES = 256L << 20;
+
+    /** worker threads for parsing, listing and extraction, with a bounded queue */
+    private ThreadPoolExecutor executor;
+    /** maximum duration of an asynchronous request in ms, from init parameter <em>asyncTimeout</em> */
+    private long asyncTimeout;
+    /** seconds for the Retry-After header when the {@link #executor} is saturated,
+     *  from init parameter <em>retryAfter</em> */
+    private long retryAfter;
+
+    /** name of the session attribute with the {@link SessionImages} */
+    private static final String IMAGES_ATTRIBUTE = "images";
 
     /** Called by the servlet container to indicate to a servlet
      *  that the servlet is being placed into service.
@@ -56,16 +115,452 @@ public class Servlet extends HttpServlet {
     public void init(ServletConfig config) throws ServletException {
         super.init(config); // ???
         log = LogManager.getLogger(Servlet.class.getName());
-        command = new Main();
+        store = new ImageStore(getLongParameter(config, "imageStoreBytes", DEFAULT_STORE_BYTES));
+        int threads = (int) getLongParameter(config, "workerThreads", Runtime.getRuntime().availableProcessors());
+        int queue   = (int) getLongParameter(config, "workerQueue"  , 4 * threads);
+        asyncTimeout    =   getLongParameter(config, "asyncTimeout" , 600000L);
+        retryAfter      =   getLongParameter(config, "retryAfter"   , 10L);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS
+                , new ArrayBlockingQueue<Runnable>(Math.max(queue, 1))
+                , new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+                    public Thread newThread(Runnable task) {
+                        Thread result = new Thread(task, "flodskim-worker-" + count.incrementAndGet());
+                        result.setDaemon(true);
+                        return result;
+                    }
+                }); // AbortPolicy: RejectedExecutionException when saturated
+        executor.allowCoreThreadTimeOut(true);
     } // init
 
+    /** Gets a numeric init parameter
+     *  @param config the servlet's configuration
+     *  @param name name of the parameter
+     *  @param defaultValue value if the parameter is missing or invalid
+     *  @return value of the parameter
+     */
+    private long getLongParameter(ServletConfig config, String name, long defaultValue) {
+        long result = defaultValue;
+        String param = config.getInitParameter(name);
+        if (param != null) {
+            try {
+                result = Long.parseLong(param.trim());
+            } catch (NumberFormatException exc) {
+                log.error("invalid " + name + " \"" + param + "\", using " + result);
+            }
+        }
+        return result;
+    } // getLongParameter
+
+    /** Called by the servlet container to indicate to a servlet
+     *  that the servlet is being taken out of service.
+     *  The requests in the queue of the {@link #executor} are dropped, the running requests
+     *  may take some seconds to finish, and the images in the {@link #store} are dropped.
+     */
+    public void destroy() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10L, TimeUnit.SECONDS);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        store.clear();
+        super.destroy();
+    } // destroy
+
+    /** The keys and file system codes of the images of one session in the {@link #store}.
+     *  The images are removed from the store when the session expires.
+     */
+    private static class SessionImages implements HttpSessionBindingListener {
+        /** the store */
+        private final ImageStore store;
+        /** file system codes, indexed by the keys of the images of the session */
+        private final LinkedHashMap<String, String> systems;
+
+        /** Constructor
+         *  @param store the store of the servlet
+         */
+        SessionImages(ImageStore store) {
+            this.store   = store;
+            this.systems = new LinkedHashMap<String, String>(8);
+        } // Constructor
+
+        /** Notes the key of an image
+         *  @param key key in the store
+         *  @param systemCode code of the file system in the image
+         */
+        synchronized void add(String key, String systemCode) {
+            systems.put(key, systemCode);
+        } // add
+
+        /** Gets the file system of an image
+         *  @param key key in the store
+         *  @return code of the file system, or null if the image is not known
+         */
+        synchronized String getSystemCode(String key) {
+            return systems.get(key);
+        } // getSystemCode
+
+        public void valueBound(HttpSessionBindingEvent event) {
+        } // valueBound
+
+        public synchronized void valueUnbound(HttpSessionBindingEvent event) {
+            for (String key : systems.keySet()) {
+                store.remove(key);
+            } // for key
+            systems.clear();
+        } // valueUnbound
+    } // SessionImages
+
+    /** Gets the images of a session
+     *  @param session the user's session
+     *  @return the session attribute, which is created if necessary
+     */
+    private SessionImages getSessionImages(HttpSession session) {
+        SessionImages result = null;
+        synchronized (session) {
+            result = (SessionImages) session.getAttribute(IMAGES_ATTRIBUTE);
+            if (result == null) {
+                result = new SessionImages(store);
+                session.setAttribute(IMAGES_ATTRIBUTE, result);
+            }
+        } // synchronized
+        return result;
+    } // getSessionImages
+
+    /** Copies a container which was read into the {@link #store},
+     *  as an image of the session
+     *  @param session the user's session
+     *  @param name name of the image in the session, for example the name of the uploaded file
+     *  @param container a container which was filled by {@link BaseBuffer#readContainer}
+     *  @param systemCode code of the file system in the image
+     *  @return an acquired handle for the image, which must be closed by the caller
+     *  @throws IOException if the store is full
+     */
+    private ImageStore.Handle storeImage(HttpSession session, String name, BaseBuffer container, String systemCode) throws IOException {
+        String key = session.getId() + "/" + name;
+        getSessionImages(session).add(key, systemCode);
+        return store.put(key, container);
+    } // storeImage
+
+    /** Acquires an image of the session from the {@link #store}
+     *  @param session the user's session
+     *  @param name name of the image in the session
+     *  @return a handle which must be closed by the caller,
+     *  or null if the image was not stored, or was evicted
+     */
+    private ImageStore.Handle acquireImage(HttpSession session, String name) {
+        return store.acquire(session.getId() + "/" + name);
+    } // acquireImage
+
+    /** Opens the file system of an image of the session
+     *  @param session the user's session
+     *  @param handle acquired handle for the image
+     *  @return file system on a new container for the image
+     */
+    private BaseSystem openSystem(HttpSession session, ImageStore.Handle handle) {
+        String systemCode = getSessionImages(session).getSystemCode(handle.getKey());
+        BaseSystem result = new SystemFactory().getInstance(systemCode != null ? systemCode : "base");
+        result.setContainer(handle.openContainer());
+        return result;
+    } // openSystem
+
+    /** Streams all files, or the selected files, of an image of the session as a ZIP archive.
+     *  The blocks of the files are written straight from the image into the response,
+     *  without intermediate files, and the response starts with the first file.
+     *  Request parameters:
+     *  <ul>
+     *  <li>image - name of the image in the session</li>
+     *  <li>file - name of a file to be downloaded (with all extents); may be repeated; default: all files</li>
+     *  </ul>
+     *  @param request fields from the client input form
+     *  @param response ZIP archive, or an error status
+     *  @param task the request, which guards the use of the response
+     *  @throws IOException for IO errors, and if the request timed out
+     */
+    private void downloadZip(HttpServletRequest request, HttpServletResponse response, AsyncTask task) throws IOException {
+        HttpSession session = null;
+        String name    = null;
+        String[] files = null;
+        synchronized (task) { // the request is not used after a timeout
+            task.checkFinished();
+            session = request.getSession();
+            name    = getInputField(request, "image");
+            files   = request.getParameterValues("file");
+        } // synchronized
+        ImageStore.Handle handle = acquireImage(session, name);
+        if (handle == null) {
+            synchronized (task) {
+                task.checkFinished();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "image \"" + name + "\" is not loaded");
+            } // synchronized
+        } else {
+            try {
+                BaseSystem fileSystem = openSystem(session, handle);
+                List<DirectoryEntry> entries = fileSystem.getDirectoryEntries(false);
+                if (files != null) { // only the selected files
+                    HashSet<String> selected = new HashSet<String>(Arrays.asList(files));
+                    ArrayList<DirectoryEntry> filtered = new ArrayList<DirectoryEntry>(files.length);
+                    for (DirectoryEntry diren : entries) {
+                        if (selected.contains(diren.getFileName())) {
+                            filtered.add(diren);
+                        }
+                    } // for diren
+                    entries = filtered;
+                }
+                String zipName = name.substring(name.lastIndexOf('/') + 1).replaceAll("[^\\w\\.\\-]", "_") + ".zip";
+                OutputStream out = null;
+                synchronized (task) {
+                    task.checkFinished();
+                    response.setContentType("application/zip");
+                    response.setHeader("Content-Disposition", "attachment; filename=\"" + zipName + "\"");
+                    out = task.guard(response.getOutputStream());
+                } // synchronized
+                ZipOutputStream zip = new ZipOutputStream(out);
+                fileSystem.writeZip(zip, entries); // stops at the next block if the request timed out
+                zip.finish();
+                zip.flush();
+            } finally {
+                handle.close();
+            }
+        }
+    } // downloadZip
+
+    /** One request which is processed by the {@link #executor}, or synchronously.
+     *  The request is finished exactly once: by a dispatch to the result JSP,
+     *  by completion when the response was written, or by a timeout.
+     *  A timed out request is removed from the queue of the executor,
+     *  or its worker thread is interrupted.
+     *  <p>
+     *  Once the request is finished, the servlet container may recycle the request
+     *  and response objects. Therefore the processing does not set request attributes
+     *  directly, but notes them in the task, and they are set just before the dispatch.
+     *  The request and response streams are {@link #guard guarded}: each read or write
+     *  holds the lock of the task, and it fails when the request is finished.
+     *  A timeout waits for a pending read or write, and the processing stops at the next one,
+     *  for example between the blocks in {@link BaseSystem#writeZip}
+     *  or while the upload is read.
+     */
+    private class AsyncTask implements Runnable, AsyncListener {
+        /** context of the asynchronous request, or null for a synchronous request */
+        private final AsyncContext async;
+        /** whether the request was dispatched, completed or timed out */
+        private boolean finished;
+        /** thread which processes the request, or null if it is not running */
+        private Thread worker;
+        /** request attributes for the result JSP */
+        private final LinkedHashMap<String, Object> attributes;
+
+        /** Constructor
+         *  @param async context of the asynchronous request, or null for a synchronous request
+         */
+        AsyncTask(AsyncContext async) {
+            this.async      = async;
+            this.finished   = false;
+            this.worker     = null;
+            this.attributes = new LinkedHashMap<String, Object>(8);
+        } // Constructor
+
+        /** Notes a request attribute for the result JSP; called by the processing thread only
+         *  @param name name of the attribute
+         *  @param value value of the attribute, or null if it should be removed
+         */
+        void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        } // setAttribute
+
+        /** Sets the noted attributes in the request
+         *  @param request the request which is dispatched or forwarded to the JSP
+         */
+        void applyAttributes(ServletRequest request) {
+            Iterator<Map.Entry<String, Object>> iter = attributes.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<String, Object> entry = iter.next();
+                if (entry.getValue() != null) {
+                    request.setAttribute   (entry.getKey(), entry.getValue());
+                } else {
+                    request.removeAttribute(entry.getKey());
+                }
+            } // while iter
+        } // applyAttributes
+
+        /** Checks whether the request and the response may still be used;
+         *  the caller should hold the lock of the task
+         *  @throws InterruptedIOException if the request is finished, for example by a timeout
+         */
+        synchronized void checkFinished() throws InterruptedIOException {
+            if (finished) {
+                throw new InterruptedIOException("request timed out after " + asyncTimeout + " ms");
+            }
+        } // checkFinished
+
+        /** Guards a stream of the request
+         *  @param stream input stream of the request
+         *  @return stream which fails when the request is finished
+         */
+        InputStream guard(InputStream stream) {
+            return new FilterInputStream(stream) {
+                public int read() throws IOException {
+                    synchronized (AsyncTask.this) {
+                        checkFinished();
+                        return super.read();
+                    } // synchronized
+                } // read()
+                public int read(byte[] buffer, int offset, int len) throws IOException {
+                    synchronized (AsyncTask.this) {
+                        checkFinished();
+                        return super.read(buffer, offset, len);
+                    } // synchronized
+                } // read(3)
+                public long skip(long len) throws IOException {
+                    synchronized (AsyncTask.this) {
+                        checkFinished();
+                        return super.skip(len);
+                    } // synchronized
+                } // skip
+            };
+        } // guard(InputStream)
+
+        /** Guards a stream of the response
+         *  @param stream output stream of the response
+         *  @return stream which fails when the request is finished
+         */
+        OutputStream guard(OutputStream stream) {
+            return new FilterOutputStream(stream) {
+                public void write(int by) throws IOException {
+                    synchronized (AsyncTask.this) {
+                        checkFinished();
+                        out.write(by);
+                    } // synchronized
+                } // write(1)
+                public void write(byte[] buffer, int offset, int len) throws IOException {
+                    synchronized (AsyncTask.this) {
+                        checkFinished();
+                        out.write(buffer, offset, len);
+                    } // synchronized
+                } // write(3)
+                public void flush() throws IOException {
+                    synchronized (AsyncTask.this) {
+                        checkFinished();
+                        out.flush();
+                    } // synchronized
+                } // flush
+                public void close() throws IOException {
+                    flush(); // the container closes the response
+                } // close
+            };
+        } // guard(OutputStream)
+
+        /** Processes the request on a worker thread, unless it timed out already */
+        public void run() {
+            synchronized (this) {
+                if (finished) { // timed out while it was queued
+                    return;
+                }
+                worker = Thread.currentThread();
+            } // synchronized
+            String newPage = null;
+            try {
+                newPage = processRequest((HttpServletRequest) async.getRequest(), (HttpServletResponse) async.getResponse(), this);
+            } catch (Exception exc) {
+                log.error(exc.getMessage(), exc);
+                synchronized (this) {
+                    if (! finished && ! async.getResponse().isCommitted()) {
+                        newPage = "message";
+                        setAttribute("messno", "000");
+                    }
+                } // synchronized
+            } finally {
+                synchronized (this) {
+                    worker = null;
+                    Thread.interrupted(); // clear an interrupt from onTimeout, the thread is reused
+                } // synchronized
+                finish(newPage);
+            }
+        } // run
+
+        /** Dispatches the request to a JSP, or completes it
+         *  @param newPage name of the JSP, or null if the response was written
+         */
+        synchronized void finish(String newPage) {
+            if (! finished) {
+                finished = true;
+                if (newPage != null) {
+                    applyAttributes(async.getRequest());
+                    async.dispatch("/" + newPage + ".jsp");
+                } else {
+                    async.complete();
+                }
+            }
+        } // finish
+
+        public void onTimeout(AsyncEvent event) throws IOException {
+            synchronized (this) {
+                if (! finished) {
+                    finished = true;
+                    log.error("request timed out after " + asyncTimeout + " ms");
+                    if (! executor.remove(this) && worker != null) { // already running
+                        worker.interrupt();
+                    }
+                    HttpServletResponse response = (HttpServletResponse) async.getResponse();
+                    if (! response.isCommitted()) {
+                        sendBusy(response);
+                    }
+                    async.complete();
+                }
+            } // synchronized
+        } // onTimeout
+
+        public void onComplete(AsyncEvent event) {
+        } // onComplete
+
+        public void onError(AsyncEvent event) {
+        } // onError
+
+        public void onStartAsync(AsyncEvent event) {
+        } // onStartAsync
+    } // AsyncTask
+
+    /** Answers with status 503 and a Retry-After header
+     *  @param response the response, which must not be committed
+     *  @throws IOException for IO errors
+     */
+    private void sendBusy(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(retryAfter));
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "server is busy, please try again later");
+    } // sendBusy
+
     /** Creates the response for a HTTP GET request.
+     *  The start page is shown directly. All other requests - uploads, listings and downloads -
+     *  are processed asynchronously by the bounded {@link #executor}, such that they do not tie up
+     *  the threads of the servlet container, and such that a few large images cannot starve
+     *  the other requests. When the executor is saturated, the answer is 503 with a Retry-After header.
      *  @param request fields from the client input form
      *  @param response data to be sent back the user's browser
      *  @throws IOException for IO errors
      */
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        generateResponse(request, response);
+        if (false) {
+        } else if (! ServletFileUpload.isMultipartContent(request) && getInputField(request, "function").equals("")) {
+            AsyncTask task = new AsyncTask(null); // synchronous
+            forward(request, response, processRequest(request, response, task), task);
+        } else if (! request.isAsyncSupported()) { // not enabled in web.xml
+            AsyncTask task = new AsyncTask(null);
+            forward(request, response, processRequest(request, response, task), task);
+        } else {
+            AsyncContext async = request.startAsync(request, response);
+            async.setTimeout(asyncTimeout);
+            AsyncTask task = new AsyncTask(async);
+            async.addListener(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException exc) {
+                log.error("executor is saturated: " + executor.getActiveCount() + " active, "
+                        + executor.getQueue().size() + " queued");
+                sendBusy(response);
+                task.finish(null);
+            }
+        }
     } // doGet
 
     /** Creates the response for a HTTP POST request.
@@ -74,9 +569,51 @@ public class Servlet extends HttpServlet {
      *  @throws IOException for IO errors
      */
     public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        generateResponse(request, response);
+        doGet(request, response);
     } // doPost
 
+    /** Forwards a request to a JSP synchronously
+     *  @param request fields from the client input form
+     *  @param response data to be sent back the user's browser
+     *  @param newPage name of the JSP, or null if the response was written
+     *  @param task the synchronous request with the attributes for the JSP
+     *  @throws IOException for IO errors
+     */
+    private void forward(HttpServletRequest request, HttpServletResponse response, String newPage, AsyncTask task) throws IOException {
+        if (newPage != null) {
+            task.applyAttributes(request);
+            try {
+                RequestDispatcher dispatcher = getServletContext().getRequestDispatcher("/" + newPage + ".jsp");
+                dispatcher.forward(request, response);
+            } catch (ServletException exc) {
+                log.error(exc.getMessage(), exc);
+                throw new IOException(exc.getMessage());
+            }
+        }
+    } // forward
+
+    /** Processes a request, on a thread of the {@link #executor} or of the servlet container
+     *  @param request fields from the client input form
+     *  @param response data to be sent back the user's browser
+     *  @param task the request, which notes the attributes for the JSP and guards the streams
+     *  @return name of the JSP which shows the result, or null if the response was written
+     *  @throws IOException for IO errors
+     */
+    private String processRequest(HttpServletRequest request, HttpServletResponse response, AsyncTask task) throws IOException {
+        String newPage  = null;
+        String function = null;
+        synchronized (task) {
+            task.checkFinished();
+            function = getInputField(request, "function");
+        } // synchronized
+        if (function.equals("zip")) {
+            downloadZip(request, response, task);
+        } else {
+            newPage = generateResponse(request, response, task);
+        }
+        return newPage;
+    } // processRequest
+
     /** Gets the value of an HTML input field, maybe as empty string
      *  @param request request for the HTML form
      *  @param name name of the input field
@@ -90,64 +627,197 @@ public class Servlet extends HttpServlet {
         return value;
     } // getInputField
 
+    /** Reads an image from a multipart/form-data request, stores it in the {@link #store},
+     *  and lists its directory.
+     *  The file part is not spooled into a temporary file: it is read by the streaming API
+     *  of commons-fileupload, and the container is filled (and decoded) while
+     *  the upload is still arriving. Therefore the form fields must precede the file.
+     *  Form fields:
+     *  <ul>
+     *  <li>buffer - code of the container format, default "auto" = detected from the first bytes</li>
+     *  <li>system - code of the file system, default "auto" = detected from the container</li>
+     *  <li>file - the image, maybe gzip-compressed</li>
+     *  <li>view - "text" for a plain text listing, default: HTML</li>
+     *  </ul>
+     *  The request attributes <em>image, buffer, system, entries</em> are noted for the JSP.
+     *  @param request multipart request
+     *  @param response plain text listing for view=text
+     *  @param session the user's session, which holds the images
+     *  @param task the request, which notes the attributes for the JSP and guards the streams
+     *  @return name of the JSP which shows the result, or null if the response was written
+     *  @throws Exception for IO and upload errors, and if the request timed out
+     */
+    private String uploadImage(HttpServletRequest request, HttpServletResponse response, HttpSession session
+            , final AsyncTask task) throws Exception {
+        String newPage    = "message";
+        String bufferCode = "auto";
+        String systemCode = "auto";
+        String view       = "";
+        task.setAttribute("messno", "004"); // uploaded file not found
+        FileItemIterator iter = null;
+        synchronized (task) { // reads the content type of the request
+            task.checkFinished();
+            iter = new ServletFileUpload().getItemIterator(new ServletRequestContext(request) {
+                public InputStream getInputStream() throws IOException {
+                    return task.guard(super.getInputStream()); // the upload is read on the worker thread
+                } // getInputStream
+            });
+        } // synchronized
+        while (iter.hasNext()) {
+            FileItemStream item = iter.next();
+            InputStream stream  = item.openStream();
+            String field = item.getFieldName();
+            if (false) {
+            } else if (item.isFormField()) {
+                String value = Streams.asString(stream, "UTF-8").trim();
+                if (false) {
+                } else if (field.equals("buffer")) {
+                    bufferCode = value.length() > 0 ? value : "auto";
+                } else if (field.equals("system")) {
+                    systemCode = value.length() > 0 ? value : "auto";
+                } else if (field.equals("view"  )) {
+                    view       = value;
+                }
+            } else if (field.equals("file") && item.getName() != null && item.getName().length() > 0) {
+                String name = item.getName().replaceAll(".*[/\\\\]", ""); // browsers may send the full path
+                stream = BaseBuffer.decompress(new BufferedInputStream(stream, 0x10000));
+                BufferFactory bufferFactory = new BufferFactory();
+                if (bufferCode.equals("auto")) {
+                    bufferCode = bufferFactory.getCodeForFormat(bufferFactory.probe(stream));
+                }
+                BaseBuffer container = bufferFactory.getInstance(bufferCode);
+                if (container == null) {
+                    task.setAttribute("messno", "003"); // invalid format
+                    break;
+                }
+                container.openStream(stream);
+                container.setImageName(name);
+                container.readContainer(0); // decodes the tracks as they arrive
+                task.checkFinished(); // the container may have stopped at a failed read
+                if (container.getLength() == 0) {
+                    task.setAttribute("messno", "006"); // image cannot be read
+                    break;
+                }
+                if (systemCode.equals("auto")) {
+                    systemCode = new SystemFactory().detect(container);
+                }
+                if (new SystemFactory().getInstance(systemCode) == null) {
+                    task.setAttribute("messno", "003"); // invalid format
+                    break;
+                }
+                ImageStore.Handle handle = null;
+                try {
+                    handle = storeImage(session, name, container, systemCode);
+                } catch (IOException exc) {
+                    log.error(exc.getMessage());
+                    task.setAttribute("messno", "005"); // image store is full
+                    break;
+                }
+                try {
+                    BaseSystem fileSystem = openSystem(session, handle);
+                    List<DirectoryEntry> entries = fileSystem.getDirectoryEntries(true);
+                    task.setAttribute("image"  , name);
+                    task.setAttribute("buffer" , bufferCode);
+                    task.setAttribute("system" , systemCode);
+                    task.setAttribute("entries", entries);
+                    task.setAttribute("messno" , null);
+                    if (view.equals("text")) {
+                        PrintWriter writer = null;
+                        synchronized (task) {
+                            task.checkFinished();
+                            response.setContentType("text/plain; charset=UTF-8");
+                            writer = new PrintWriter(new OutputStreamWriter(task.guard(response.getOutputStream()), "UTF-8"));
+                        } // synchronized
+                        fileSystem.setWriter(writer);
+                        fileSystem.printDirectory(entries);
+                        writer.flush();
+                        if (writer.checkError()) { // the guarded stream failed
+                            task.checkFinished();
+                        }
+                        newPage = null;
+                    } else {
+                        newPage = "index";
+                    }
+                } finally {
+                    handle.close();
+                }
+                break; // one image per request
+            }
+        } // while iter
+        return newPage;
+    } // uploadImage
+
+    /** Lists the directory of an image of the session which is still in the {@link #store}.
+     *  The request attributes <em>image, system, entries</em> are noted for the JSP.
+     *  @param task the request, which notes the attributes for the JSP
+     *  @param session the user's session, which holds the images
+     *  @param name name of the image in the session
+     *  @return name of the JSP which shows the result
+     */
+    private String listImage(AsyncTask task, HttpSession session, String name) {
+        String newPage = "index";
+        ImageStore.Handle handle = acquireImage(session, name);
+        if (handle == null) {
+            newPage = "message";
+            task.setAttribute("messno", "004"); // uploaded file not found
+        } else {
+            try {
+                BaseSystem fileSystem = openSystem(session, handle);
+                task.setAttribute("image"  , name);
+                task.setAttribute("system" , fileSystem.getCode());
+                task.setAttribute("entries", fileSystem.getDirectoryEntries(true));
+            } finally {
+                handle.close();
+            }
+        }
+        return newPage;
+    } // listImage
+
     /** Creates the response for a HTTP GET or POST request.
+     *  A multipart/form-data request uploads an image;
+     *  otherwise the field <em>function</em> selects the action:
+     *  <ul>
+     *  <li>"" - the upload form</li>
+     *  <li>dir - the directory listing of the image named in field <em>image</em></li>
+     *  </ul>
      *  @param request fields from the client input form
      *  @param response data to be sent back the user's browser
+     *  @param task the request, which notes the attributes for the JSP and guards the streams
+     *  @return name of the JSP which shows the result, or null if the response was written
      *  @throws IOException for IO errors
      */
-    public void generateResponse(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    private String generateResponse(HttpServletRequest request, HttpServletResponse response, AsyncTask task) throws IOException {
+        String newPage = "index";
         try {
-            HttpSession session = request.getSession();
-            // NumwordCommand command = new NumwordCommand();
-            String view     = getInputField(request, "view");
-            String language = getInputField(request, "language");
-            if (language.equals("")) {
-                language = "de";
-            }
-            String function = getInputField(request, "function");
-            String digits   = getInputField(request, "digits"  );
-            session.setAttribute("command"  , command);
-            session.setAttribute("language" , language);
-            session.setAttribute("digits"   , digits  );
-            String newPage = "index";
-            if (false) {
-            } else if (false) {
-                newPage = "message";
-                session.setAttribute("messno", "003"); // invalid language code
-            } else if (function.equals("c")    ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("C")    ) {
-                // check for alphabetic "digits" input field
-                session.setAttribute("function", function);
-            } else if (function.equals("d")    ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("g")    ) {
-                session.setAttribute("function", function);
-            } else if (function.startsWith("h")) {
-                session.setAttribute("function", function);
-            } else if (function.equals("m")    ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("m3")   ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("p")    ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("s")    ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("w")    ) {
-                session.setAttribute("function", function);
-            } else if (function.equals("w2")   ) {
-                session.setAttribute("function", function);
-            } else { // invalid function
-                newPage = "message";
-                session.setAttribute("messno"  , "001");
+            HttpSession session = null;
+            boolean multipart   = false;
+            String function     = null;
+            String image        = null;
+            synchronized (task) { // the request is not used after a timeout
+                task.checkFinished();
+                session   = request.getSession();
+                multipart = ServletFileUpload.isMultipartContent(request);
+                function  = getInputField(request, "function");
+                image     = getInputField(request, "image");
+            } // synchronized
+            if (multipart) {
+                newPage = uploadImage(request, response, session, task);
+            } else {
+                task.setAttribute("function", function);
+                if (false) {
+                } else if (function.equals("")   ) {
+                } else if (function.equals("dir")) {
+                    newPage = listImage(task, session, image);
+                } else { // invalid function
+                    newPage = "message";
+                    task.setAttribute("messno"  , "001");
+                }
             }
-            RequestDispatcher dispatcher = getServletContext().getRequestDispatcher("/" + newPage + ".jsp");
-            dispatcher.forward(request, response);
         } catch (Exception exc) {
-            response.getWriter().write(exc.getMessage());
-            System.out.println(exc.getMessage());
+            log.error(exc.getMessage(), exc);
             throw new IOException(exc.getMessage());
         }
+        return newPage;
     } // generateResponse
 
 } // Servlet
@@ -1,10 +1,24 @@
 /*  Class for a buffer for some disk image container
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: setWriter
+    2026-10-16: setWritable; map read-only by default
+    2026-10-16: openSegments, for containers held in an ImageStore
+    2026-10-16: Flight Recorder events; getImageName
+    2026-10-16: Metrics
+    2026-10-16: dump with HexDumper; dump to a channel
+    2026-10-16: closeInput
+    2026-10-16: putBytes, writeBack
+    2026-10-16: fillBytes
+    2026-10-16: gzip-compressed containers
+    2026-10-16: openStream, read from STDIN in chunks
+    2026-10-16: read-only views of the container
+    2026-10-16: ACCESS_LAZY, openRandom, loadRange
+    2026-10-16: memory-mapped container mode with long offsets
     2017-05-29: javadoc 1.8
     2013-11-05, Georg Fischer: copied from basdetok.BaseBuffer
 
-    Data can currently only be read from a file into a buffer,
-    but not written back to a file.
+    Data is read from a file into a buffer. Changes are tracked
+    per sector, and only the changed sectors are written back to the file.
 */
 /*
  * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
@@ -22,16 +36,25 @@
  * limitations under the License.
  */
 package org.teherba.flodskim.buffer;
+import  org.teherba.flodskim.buffer.ContainerEvents;
+import  org.teherba.flodskim.buffer.Metrics;
 import  java.io.BufferedInputStream;
 import  java.io.File;
 import  java.io.FileInputStream;
 import  java.io.FileOutputStream;
 import  java.io.InputStream;
 import  java.io.InputStreamReader;
+import  java.io.IOException;
 import  java.io.PrintWriter;
+import  java.io.RandomAccessFile;
+import  java.nio.ByteBuffer;
 import  java.nio.channels.Channels;
+import  java.nio.channels.FileChannel;
 import  java.nio.channels.ReadableByteChannel;
 import  java.nio.channels.WritableByteChannel;
+import  java.util.Arrays;
+import  java.util.BitSet;
+import  java.util.zip.GZIPInputStream;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -69,6 +92,15 @@ public class BaseBuffer {
         bufferLength  = 0; // will force an immediate read
         bufferPos     = 0;
         filePos       = 0;
+        segments      = null;
+        segmentShift  = MAP_SHIFT;
+        containerLength = 0L;
+        containerFile   = null;
+        imageName       = "-";
+        dirty           = new BitSet();
+        dirtyUnit       = 0;
+        writable        = false;
+        setAccessMode(ACCESS_READ);
         setResultEncoding("UTF-8");
         setMaxCylinder(0); // unknown
         setMaxHead    (0);
@@ -79,9 +111,31 @@ public class BaseBuffer {
     //--------------------------------------------------
     // Buffer for the binary input, and related methods
     //--------------------------------------------------
-    /** Internal buffer for the container, will have {@link #allocatedSize} */
+    /** Internal buffer for the container, will have {@link #allocatedSize};
+     *  null if the container is held in {@link #segments}
+     */
     private byte[] buffer;
 
+    /** Number of address bits covered by one segment of a mapped container (1 GB) */
+    private static final int MAP_SHIFT = 30;
+
+    /** Number of address bits covered by one chunk of a container read from a stream (1 MB) */
+    private static final int STREAM_SHIFT = 20;
+
+    /** Segments of a container which is not held in {@link #buffer},
+     *  for example the memory-mapped regions of a container file,
+     *  or the chunks of a container read from a stream;
+     *  all segments but the last have a size of <code>1 &lt;&lt; segmentShift</code>.
+     *  null if the container is held in {@link #buffer}.
+     */
+    private ByteBuffer[] segments;
+
+    /** Number of address bits covered by one of the {@link #segments} */
+    private int segmentShift;
+
+    /** Length of the container held in {@link #segments}, may exceed 2 GB */
+    private long containerLength;
+
     /** Allocated length of the buffer (in bytes) */
     protected int allocatedSize;
 
@@ -98,6 +152,13 @@ public class BaseBuffer {
         return bufferLength;
     }  // size
 
+    /** Gets the filled container length, which may exceed 2 GB for mapped containers
+     *  @return number of bytes in the container
+     */
+    public long getLength() {
+        return segments != null ? containerLength : (long) bufferLength;
+    } // getLength
+
    /** Current read/write pointer (position in the internal {@link #buffer}).
     *  Is incremented by almost all access methods, and is sometimes
     *  returned by such methods.
@@ -107,6 +168,52 @@ public class BaseBuffer {
     //-----------------------
     // Other bean properties
     //-----------------------
+    /** access mode: read the whole container file into a buffer on the heap */
+    public static final int ACCESS_READ   = 0;
+    /** access mode: map the container file into memory, and read from the page cache */
+    public static final int ACCESS_MAPPED = 1;
+    /** access mode: read only the structural information of the container file,
+     *  and read the data on first access
+     */
+    public static final int ACCESS_LAZY   = 2;
+
+    /** how the container file is accessed: {@link #ACCESS_READ}, {@link #ACCESS_MAPPED} or {@link #ACCESS_LAZY} */
+    private int accessMode;
+
+    /** Sets the access mode for the container file.
+     *  For a raw container, {@link #ACCESS_MAPPED} and {@link #ACCESS_LAZY} are the same.
+     *  @param accessMode {@link #ACCESS_READ}, {@link #ACCESS_MAPPED} or {@link #ACCESS_LAZY}
+     */
+    public void setAccessMode(int accessMode) {
+        this.accessMode = accessMode;
+    } // setAccessMode
+
+    /** Gets the access mode for the container file
+     *  @return {@link #ACCESS_READ}, {@link #ACCESS_MAPPED} or {@link #ACCESS_LAZY}
+     */
+    public int getAccessMode() {
+        return accessMode;
+    } // getAccessMode
+
+    /** whether the container will be changed by {@link #putBytes} */
+    private boolean writable;
+
+    /** Sets whether the container will be changed by {@link #putBytes}.
+     *  This must be set before the container file is opened with {@link #ACCESS_MAPPED};
+     *  otherwise the file is mapped read-only.
+     *  @param writable true if bytes will be changed, false (default) for read-only access
+     */
+    public void setWritable(boolean writable) {
+        this.writable = writable;
+    } // setWritable
+
+    /** Determines whether the container will be changed by {@link #putBytes}
+     *  @return true if bytes will be changed, false for read-only access
+     */
+    public boolean isWritable() {
+        return writable;
+    } // isWritable
+
     /** description of the disk image container */
     private String description;
 
@@ -131,6 +238,7 @@ public class BaseBuffer {
      */
     public void setCode(String codes) {
         this.code = codes;
+        metrics   = null;
     } // setCode
     /** Gets the file codes
      *  @return list of codes separated by commas
@@ -139,6 +247,19 @@ public class BaseBuffer {
         return code;
     } // getCode
 
+    /** shared metrics for the code, see {@link #getMetrics} */
+    private Metrics metrics;
+
+    /** Gets the metrics which are shared by all buffers with the same code
+     *  @return counters and latency histograms
+     */
+    public Metrics getMetrics() {
+        if (metrics == null) { // determined lazily since subclasses set their code after this constructor
+            metrics = Metrics.getInstance(Metrics.TYPE_BUFFER, code);
+        }
+        return metrics;
+    } // getMetrics
+
     /** output file encoding, empty for binary (byte) data */
     private String resultEncoding;
 
@@ -237,39 +358,137 @@ public class BaseBuffer {
     /** writer for text   files */
     protected PrintWriter   charWriter;
 
+    /** Sets the writer for dumps and diagnostic output, instead of
+     *  a result file opened by {@link #openFile openFile(1, ...)}
+     *  @param writer a PrintWriter, for example for a buffer of one image in a batch
+     */
+    public void setWriter(PrintWriter writer) {
+        charWriter = writer;
+    } // setWriter
+
+    /** the uncompressed container file which was opened, or null for streams */
+    private File containerFile;
+
+    /** Sets the container file, which receives the changed sectors in {@link #writeBack}
+     *  @param containerFile the uncompressed container file, or null for streams
+     */
+    protected void setContainerFile(File containerFile) {
+        this.containerFile = containerFile;
+    } // setContainerFile
+
+    /** Gets the container file
+     *  @return the uncompressed container file, or null for streams
+     */
+    public File getContainerFile() {
+        return containerFile;
+    } // getContainerFile
+
+    /** name of the image for diagnostic output and events */
+    private String imageName;
+
+    /** Sets the name of the image, for example the name of an uploaded file
+     *  @param imageName name of the image, or "-" for STDIN
+     */
+    public void setImageName(String imageName) {
+        this.imageName = imageName;
+    } // setImageName
+
+    /** Gets the name of the image
+     *  @return the file name which was passed to {@link #openFile}, or "-" for STDIN
+     */
+    public String getImageName() {
+        return imageName;
+    } // getImageName
+
+    /** Commits an event for the opening of the container, if it is enabled
+     *  @param event event which was begun before the container was opened
+     *  @param fileName name of the container file, or null or "-" for STDIN
+     *  @param success whether the container could be opened
+     */
+    protected void commitOpen(ContainerEvents.Open event, String fileName, boolean success) {
+        if (event.shouldCommit()) {
+            event.image   = fileName == null ? "-" : fileName;
+            event.buffer  = code;
+            event.size    = containerFile != null ? containerFile.length() : containerLength;
+            event.success = success;
+            event.commit();
+        }
+    } // commitOpen
+
+    /** Commits an event for <code>readContainer</code>, if it is enabled
+     *  @param event event which was begun at the start of <code>readContainer</code>
+     *  @param bytes number of bytes read from the file or stream
+     */
+    protected void commitRead(ContainerEvents.Read event, long bytes) {
+        if (event.shouldCommit()) {
+            event.image  = imageName;
+            event.buffer = code;
+            event.bytes  = bytes;
+            event.length = getLength();
+            event.commit();
+        }
+    } // commitRead
+
+    /** Commits an event for the decoding of a track, if it is enabled
+     *  @param event event which was begun before the track was read
+     *  @param track index of the track in the container file
+     *  @param sectors number of sectors in the track
+     *  @param bytes number of data bytes in the track
+     */
+    protected void commitTrack(ContainerEvents.TrackDecode event, int track, int sectors, long bytes) {
+        if (event.shouldCommit()) {
+            event.image   = imageName;
+            event.buffer  = code;
+            event.track   = track;
+            event.sectors = sectors;
+            event.bytes   = bytes;
+            event.commit();
+        }
+    } // commitTrack
+
     /** Opens some named (ordinary) input or output file
      *  @param ifile 0 for source file, 1 for result file
-     *  @param fileName name of the (ordinary) file to be opened, or null for STDOUT
+     *  @param fileName name of the (ordinary) file to be opened,
+     *  or null or "-" for STDIN (source) or STDOUT (result)
      *  @return whether the operation was successful
      */
     public boolean openFile(int ifile, String fileName) {
         boolean result = true;
+        ContainerEvents.Open event = null;
         try {
             switch (ifile) {
                 case 0: // open input  from file
                     { // byte mode
+                        event = new ContainerEvents.Open();
+                        event.begin();
                         if (byteReader != null) {
                             byteReader.close();
                         }
-                    /* will not read disk images from STDIN
-                        if (fileName == null) {
-                            byteReader = new BufferedInputStream(System.in);
-                        } else
-                    */
-                        {
+                        if (fileName == null || fileName.equals("-")) {
+                            openStream(System.in);
+                        } else if (isGzip(new File(fileName))) {
+                            openStream(new FileInputStream(fileName));
+                        } else if (getAccessMode() != ACCESS_READ) {
+                            byteReader = null;
+                            openRandom(new File(fileName));
+                            setContainerFile(new File(fileName));
+                        } else {
                             File containerFile = new File(fileName);
+                            setContainerFile(containerFile);
                             byteReader = new BufferedInputStream(new FileInputStream(containerFile));
                             allocatedSize = (int) containerFile.length();
                             // System.err.println("allocated " + allocatedSize + " for file " + fileName);
                             // allocatedSize += 16384;
                             buffer = new byte[allocatedSize];
+                            segments = null;
                         }
+                        imageName = fileName == null ? "-" : fileName;
                     } // byte input file
                     break;
                 case 1:
                 default: // open output into file
                     { // character mode
-                        if (fileName == null) { // stdout
+                        if (fileName == null || fileName.equals("-")) { // stdout
                             if (charWriter == null) {
                                 charWriter = new PrintWriter(Channels.newWriter(Channels.newChannel(System.out), resultEncoding));
                             } // else leave stdout open, close it with main program
@@ -285,11 +504,169 @@ public class BaseBuffer {
             } // switch ifile
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
+            getMetrics().addError();
             result = false;
         }
+        if (event != null) {
+            commitOpen(event, fileName, result);
+        }
         return result;
     } // openFile
 
+    /** Opens a container file for random access, for {@link #ACCESS_MAPPED}
+     *  and {@link #ACCESS_LAZY}. This implementation maps the file
+     *  with {@link #mapFile}; subclasses may rather keep a channel
+     *  and read the data on demand.
+     *  @param containerFile the file to be opened
+     *  @throws IOException if the file cannot be opened
+     */
+    protected void openRandom(File containerFile) throws IOException {
+        mapFile(containerFile);
+    } // openRandom
+
+    /** Maps a container file into {@link #segments} of at most 1 GB.
+     *  The mappings remain valid after the channel was closed.
+     *  If the container was {@link #setWritable set writable} and the file is writable,
+     *  the mapping is private (copy-on-write): changes by {@link #putBytes}
+     *  are not visible in the file before {@link #writeBack}.
+     *  Otherwise the file is opened and mapped read-only.
+     *  @param containerFile the file to be mapped
+     *  @throws IOException if the file cannot be mapped
+     */
+    protected void mapFile(File containerFile) throws IOException {
+        boolean writable = isWritable() && containerFile.canWrite();
+        FileChannel channel = writable
+                ? new RandomAccessFile(containerFile, "rw").getChannel()
+                : new FileInputStream(containerFile).getChannel();
+        FileChannel.MapMode mapMode = writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY;
+        try {
+            containerLength = channel.size();
+            segmentShift    = MAP_SHIFT;
+            long segmentSize = 1L << segmentShift;
+            int segmentCount = (int) ((containerLength + segmentSize - 1) >>> segmentShift);
+            segments = new ByteBuffer[segmentCount];
+            int iseg = 0;
+            while (iseg < segmentCount) {
+                long start = (long) iseg << segmentShift;
+                segments[iseg] = channel.map(mapMode, start
+                        , Math.min(segmentSize, containerLength - start));
+                iseg ++;
+            } // while iseg
+            buffer = null;
+            allocatedSize = 0;
+        } finally {
+            channel.close();
+        }
+    } // mapFile
+
+    /** Opens an input stream for the container, for example STDIN or a pipe.
+     *  The size of the container is not known in advance, therefore
+     *  it is stored in {@link #segments} of 1 MB which are appended
+     *  while the stream is read, without copying the bytes read so far.
+     *  gzip-compressed data is decompressed transparently.
+     *  @param stream the input stream to be read by {@link #readContainer}
+     */
+    public void openStream(InputStream stream) {
+        try {
+            if (byteReader != null) {
+                byteReader.close();
+            }
+            byteReader = decompress(stream.markSupported() ? stream : new BufferedInputStream(stream));
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        buffer          = null;
+        allocatedSize   = 0;
+        segments        = new ByteBuffer[16];
+        segmentShift    = STREAM_SHIFT;
+        containerLength = 0L;
+        containerFile   = null;
+        imageName       = "-";
+        filePos         = 0;
+    } // openStream
+
+    /** Opens a container which is held in byte buffers outside of this object,
+     *  for example in the direct memory of an {@link ImageStore}.
+     *  The bytes are not copied, and {@link #readContainer} has nothing to read.
+     *  The container is read-only.
+     *  @param chunks chunks of the container; all chunks but the last
+     *  have a capacity of <code>1 &lt;&lt; chunkShift</code>
+     *  @param chunkShift number of address bits covered by one chunk
+     *  @param length number of bytes in the container
+     */
+    public void openSegments(ByteBuffer[] chunks, int chunkShift, long length) {
+        closeInput();
+        segments = new ByteBuffer[chunks.length];
+        int ichunk = 0;
+        while (ichunk < chunks.length) {
+            ByteBuffer segment = chunks[ichunk].asReadOnlyBuffer();
+            segment.clear();
+            segment.limit((int) Math.min(length - ((long) ichunk << chunkShift), segment.capacity()));
+            segments[ichunk ++] = segment;
+        } // while ichunk
+        segmentShift    = chunkShift;
+        buffer          = null;
+        allocatedSize   = 0;
+        containerLength = length;
+        containerFile   = null;
+        imageName       = "-";
+        bufferLength    = (int) Math.min(length, Integer.MAX_VALUE);
+        bufferPos       = 0;
+        filePos         = 0;
+    } // openSegments
+
+    /** Wraps a stream into a decompressing stream if it starts with the gzip signature
+     *  @param stream a stream which supports {@link InputStream#mark}
+     *  @return a stream of the decompressed data, or <em>stream</em> itself if it is not compressed
+     *  @throws IOException if the stream cannot be read
+     */
+    public static InputStream decompress(InputStream stream) throws IOException {
+        InputStream result = stream;
+        stream.mark(2);
+        int byte0 = stream.read();
+        int byte1 = stream.read();
+        stream.reset();
+        if (byte0 == 0x1f && byte1 == 0x8b) {
+            result = new BufferedInputStream(new GZIPInputStream(stream, 0x10000), 0x10000);
+        }
+        return result;
+    } // decompress
+
+    /** Determines whether a file starts with the gzip signature
+     *  @param file the file to be tested
+     *  @return true if the file is gzip-compressed
+     */
+    public static boolean isGzip(File file) {
+        boolean result = false;
+        try {
+            InputStream stream = new FileInputStream(file);
+            try {
+                result = stream.read() == 0x1f && stream.read() == 0x8b;
+            } finally {
+                stream.close();
+            }
+        } catch (Exception exc) {
+            // not readable - leave the error to openFile
+        }
+        return result;
+    } // isGzip
+
+    /** Determines whether the container is read from a stream opened by {@link #openStream}
+     *  @return true for a stream, false for a file
+     */
+    protected boolean isStream() {
+        return segments != null && byteReader != null;
+    } // isStream
+
+    /** Flushes the result file, for example before another
+     *  container writes to STDOUT
+     */
+    public void flush() {
+        if (charWriter != null) {
+            charWriter.flush();
+        }
+    } // flush
+
     /** Closes any open input and output files
      */
     public void closeAll() {
@@ -298,13 +675,46 @@ public class BaseBuffer {
                 charWriter.flush();
                 charWriter.close();
             }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        closeInput();
+    } // closeAll
+
+    /** Closes the input file only, but leaves the result file
+     *  (for example STDOUT) open
+     */
+    public void closeInput() {
+        try {
             if (byteReader != null) {
                 byteReader.close();
+                byteReader = null;
             }
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
         }
-    } // closeAll
+    } // closeInput
+
+    /** Allocates the internal {@link #buffer} for a container
+     *  whose size is known in advance, and which is filled by a subclass
+     *  @param size number of bytes in the container
+     */
+    protected void allocate(int size) {
+        allocatedSize = size;
+        buffer        = new byte[size];
+        bufferLength  = size;
+        segments      = null;
+    } // allocate
+
+    /** Ensures that a range of the container is filled.
+     *  This implementation does nothing since the raw container is
+     *  either read completely or mapped. Subclasses which fill the
+     *  container on demand ({@link #ACCESS_LAZY}) must override it.
+     *  @param position position of the first byte
+     *  @param length number of bytes
+     */
+    protected void loadRange(long position, int length) {
+    } // loadRange
 
     /** Reads a chunk of bytes from an open stream into the container buffer
      *  @param offset buffer position where first byte read should be stored
@@ -335,28 +745,261 @@ public class BaseBuffer {
         } catch (Exception exc) {
             System.err.println("bufferPos=" + bufferPos + ", length=" + length);
             log.error(exc.getMessage(), exc);
+            getMetrics().addError();
         }
         return result;
     } // readChunk(1)
 
+    /** Reads bytes from the stream opened by {@link #openStream} into the container.
+     *  Chunks are appended as needed; the container's length is extended
+     *  behind the last byte read.
+     *  @param position position in the container where the first byte should be stored
+     *  @param length number of bytes to be read
+     *  @return actual number of bytes which were read, less than <em>length</em> at EOF only
+     */
+    protected int readStream(long position, int length) {
+        int result = 0;
+        extendChunks(position + length);
+        long chunkMask = (1L << segmentShift) - 1;
+        try {
+            int len = 0;
+            while (len >= 0 && result < length) {
+                ByteBuffer chunk = segments[(int) (position >>> segmentShift)];
+                int chunkPos = (int) (position & chunkMask);
+                len = byteReader.read(chunk.array(), chunkPos, Math.min(length - result, chunk.capacity() - chunkPos)); // -1 at EOF
+                if (len > 0) {
+                    result   += len;
+                    position += len;
+                }
+            } // while not EOF
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            getMetrics().addError();
+        }
+        filePos += result;
+        if (position > containerLength) {
+            containerLength = position;
+        }
+        return result;
+    } // readStream
+
+    /** Fills a range of the container with a constant byte, for example
+     *  with the expansion of a compressed sector.
+     *  The container must not be mapped.
+     *  @param position position of the first byte
+     *  @param length number of bytes
+     *  @param value the byte to be stored
+     */
+    protected void fillBytes(long position, int length, byte value) {
+        if (segments == null) {
+            Arrays.fill(buffer, (int) position, (int) position + length, value);
+        } else {
+            long segmentMask = (1L << segmentShift) - 1;
+            while (length > 0) {
+                ByteBuffer segment = segments[(int) (position >>> segmentShift)];
+                int segPos = (int) (position & segmentMask);
+                int len = Math.min(length, segment.limit() - segPos);
+                int end = segPos + len;
+                while (segPos < end) {
+                    segment.put(segPos ++, value);
+                } // while segPos
+                position += len;
+                length   -= len;
+            } // while length
+        }
+    } // fillBytes
+
+    //-----------------------
+    // Changes and write-back
+    //-----------------------
+    /** units (mostly sectors) which were changed by {@link #putBytes} */
+    private BitSet dirty;
+
+    /** size of the units in {@link #dirty}, determined by the first change */
+    private int dirtyUnit;
+
+    /** Copies bytes from an array into the container, and marks the affected sectors as changed.
+     *  The container file itself is not modified before {@link #writeBack}.
+     *  @param position position of the first byte to be changed
+     *  @param src source array
+     *  @param srcPos position of the first byte in <em>src</em>
+     *  @param length number of bytes to be copied
+     */
+    public void putBytes(long position, byte[] src, int srcPos, int length) {
+        loadRange(position, length); // a sector which is changed partially must be complete
+        if (segments == null) {
+            System.arraycopy(src, srcPos, buffer, (int) position, length);
+        } else {
+            long segmentMask = (1L << segmentShift) - 1;
+            long pos = position;
+            int rest = length;
+            while (rest > 0) {
+                ByteBuffer segment = segments[(int) (pos >>> segmentShift)].duplicate();
+                int segPos = (int) (pos & segmentMask);
+                int len = Math.min(rest, segment.limit() - segPos);
+                segment.position(segPos);
+                segment.put(src, srcPos, len);
+                pos    += len;
+                srcPos += len;
+                rest   -= len;
+            } // while rest
+        }
+        if (dirtyUnit == 0) {
+            dirtyUnit = getSectorSize() > 0 ? getSectorSize() : 512;
+        }
+        if (length > 0) {
+            dirty.set((int) (position / dirtyUnit), (int) ((position + length - 1) / dirtyUnit) + 1);
+        }
+    } // putBytes
+
+    /** Gets the number of changed sectors which were not yet written back
+     *  @return number of changed units
+     */
+    public int getDirtyCount() {
+        return dirty.cardinality();
+    } // getDirtyCount
+
+    /** Writes the changed sectors back into the container file,
+     *  with positional writes of the contiguous runs of changed sectors.
+     *  @return number of sectors written, or -1 if the container was not read from an uncompressed file
+     */
+    public int writeBack() {
+        int result = 0;
+        if (containerFile == null) {
+            log.error("the container was not read from an uncompressed file and cannot be written back");
+            result = -1;
+        } else if (! dirty.isEmpty()) {
+            try {
+                FileChannel channel = new RandomAccessFile(containerFile, "rw").getChannel();
+                try {
+                    int iunit = dirty.nextSetBit(0);
+                    while (iunit >= 0) {
+                        int endUnit = dirty.nextClearBit(iunit);
+                        long start = (long) iunit * dirtyUnit;
+                        int length = (int) Math.min((long) (endUnit - iunit) * dirtyUnit, getLength() - start);
+                        if (length > 0) {
+                            writeRange(channel, start, length);
+                        }
+                        result += endUnit - iunit;
+                        iunit = dirty.nextSetBit(endUnit);
+                    } // while iunit
+                    channel.force(false);
+                } finally {
+                    channel.close();
+                }
+                dirty.clear();
+            } catch (Exception exc) {
+                log.error(exc.getMessage(), exc);
+                result = -1;
+            }
+        }
+        return result;
+    } // writeBack
+
+    /** Writes a range of the container into the container file.
+     *  This implementation writes to the same position in the file ("raw" container);
+     *  subclasses with a different layout of the file must override it.
+     *  @param channel channel of the container file, open for writing
+     *  @param position position of the first byte in the container
+     *  @param length number of bytes to be written
+     *  @throws IOException if the file cannot be written
+     */
+    protected void writeRange(FileChannel channel, long position, int length) throws IOException {
+        writeFully(channel, getView(position, length), position);
+    } // writeRange
+
+    /** Writes all bytes of a view to a position in a file
+     *  @param channel channel of the file, open for writing
+     *  @param view bytes to be written
+     *  @param fileOffset position in the file
+     *  @throws IOException if the file cannot be written
+     */
+    protected static void writeFully(FileChannel channel, ByteBuffer view, long fileOffset) throws IOException {
+        while (view.hasRemaining()) {
+            fileOffset += channel.write(view, fileOffset);
+        } // while remaining
+    } // writeFully
+
+    /** Sets the length of a container read from a stream, and appends chunks filled with zeroes if necessary
+     *  @param length new length of the container
+     */
+    protected void setStreamLength(long length) {
+        extendChunks(length);
+        containerLength = length;
+        bufferLength    = (int) Math.min(length, Integer.MAX_VALUE);
+    } // setStreamLength
+
+    /** Appends chunks to the {@link #segments} of a stream until they cover some length.
+     *  Only the array of chunk references is copied when it is full.
+     *  @param length number of bytes to be covered
+     */
+    private void extendChunks(long length) {
+        int chunkCount = (int) ((length + (1L << segmentShift) - 1) >>> segmentShift);
+        if (chunkCount > segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(chunkCount, segments.length * 2));
+        }
+        int ichunk = chunkCount - 1;
+        while (ichunk >= 0 && segments[ichunk] == null) {
+            segments[ichunk] = ByteBuffer.wrap(new byte[1 << segmentShift]);
+            ichunk --;
+        } // while ichunk
+    } // extendChunks
+
     /** Fills the buffer from a disk image container file.
      *  The method should be overwritten by subclasses to implement the
      *  specific container structure.
      *  This is a very simple implementation which reads all bytes
      *  without obeying any structural information ("raw" container).
+     *  The number of bytes and the duration are recorded in the {@link #getMetrics metrics},
+     *  and in a {@link ContainerEvents.Read} event.
      *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
      */
     public void readContainer(int informLevel) {
-        int readLength = 1;
-        int blockSize = 0x4000; // reasonable - 16 kB
-        bufferPos = 0;
-        filePos   = 0;
-        while (readLength > 0 && bufferPos + readLength < allocatedSize) { // -1 = EOF
-            readLength = readChunk(blockSize);
-        } // while not EOF
-        bufferLength = bufferPos;
+        ContainerEvents.Read event = new ContainerEvents.Read();
+        event.begin();
+        long startTime = System.nanoTime();
+        long bytesRead = 0L;
+        if (false) {
+        } else if (isStream()) { // read all chunks, until EOF
+            bufferPos = 0;
+            filePos   = 0;
+            int chunkSize = 1 << segmentShift;
+            while (readStream(containerLength, chunkSize) == chunkSize) {
+            } // while not EOF
+            setStreamLength(containerLength);
+            bytesRead = filePos;
+        } else if (segments != null) { // mapped - nothing to read, the pages are loaded by the operating system
+            bufferPos    = 0;
+            filePos      = 0;
+            bufferLength = (int) Math.min(containerLength, Integer.MAX_VALUE);
+            bytesRead    = containerLength;
+        } else {
+            int readLength = 1;
+            int blockSize = 0x4000; // reasonable - 16 kB
+            bufferPos = 0;
+            filePos   = 0;
+            while (readLength > 0 && bufferPos < allocatedSize) { // -1 = EOF
+                readLength = readChunk(Math.min(blockSize, allocatedSize - bufferPos));
+            } // while not EOF
+            bufferLength = bufferPos;
+            bytesRead    = filePos;
+        }
+        getMetrics().addContainerRead(bytesRead, System.nanoTime() - startTime);
+        commitRead(event, bytesRead);
     } // readContainer
 
+    /** Gets the position of a sector in the container.
+     *  This implementation knows no sector structure;
+     *  subclasses which read the sector identifiers of the container override it.
+     *  @param track cylinder number, starting at 0
+     *  @param head head number, starting at 0
+     *  @param sectorId sector identifier as recorded on the disk (mostly starting at 1)
+     *  @return position of the first byte of the sector in the container, or -1 if not known
+     */
+    public long getSectorPosition(int track, int head, int sectorId) {
+        return -1L;
+    } // getSectorPosition
+
     //---------------------------------
     //  Access to fields in the buffer
     //---------------------------------
@@ -382,16 +1025,102 @@ public class BaseBuffer {
      *  @return that byte
      */
     public byte get1() {
-        return buffer[bufferPos ++];
+        return getByte(bufferPos ++);
     } // get1
 
+    /** Gets the byte at some position of the container,
+     *  without changing the current position
+     *  @param position position of the byte, may exceed 2 GB for mapped containers
+     *  @return that byte
+     */
+    public byte getByte(long position) {
+        byte result = 0;
+        loadRange(position, 1);
+        if (segments == null) {
+            result = buffer[(int) position];
+        } else {
+            result = segments[(int) (position >>> segmentShift)]
+                    .get((int) (position & ((1L << segmentShift) - 1)));
+        }
+        return result;
+    } // getByte
+
+    /** Copies a subsegment of the container into an array,
+     *  without changing the current position.
+     *  This is the common access method for the file systems,
+     *  which works for all container modes.
+     *  @param position position of the first byte, may exceed 2 GB for mapped containers
+     *  @param dest destination array
+     *  @param destPos position in <em>dest</em> where to store the first byte
+     *  @param length number of bytes to be copied
+     */
+    public void copyBytes(long position, byte[] dest, int destPos, int length) {
+        loadRange(position, length);
+        if (segments == null) {
+            System.arraycopy(buffer, (int) position, dest, destPos, length);
+        } else {
+            long segmentMask = (1L << segmentShift) - 1;
+            while (length > 0) {
+                ByteBuffer segment = segments[(int) (position >>> segmentShift)].duplicate();
+                int segPos = (int) (position & segmentMask);
+                int len = Math.min(length, segment.limit() - segPos);
+                segment.position(segPos);
+                segment.get(dest, destPos, len);
+                position += len;
+                destPos  += len;
+                length   -= len;
+            } // while length
+        }
+    } // copyBytes
+
+    /** Gets a read-only view of a subsegment of the container, without copying.
+     *  The view's position is the start of the subsegment, and its limit is the end.
+     *  Only a subsegment which crosses the boundary of two mapped segments is copied.
+     *  The views remain valid as long as the container is not read again.
+     *  @param position position of the first byte, may exceed 2 GB for mapped containers
+     *  @param length number of bytes in the view
+     *  @return a read-only byte buffer
+     */
+    public ByteBuffer getView(long position, int length) {
+        loadRange(position, length);
+        ByteBuffer result = null;
+        if (segments == null) {
+            if (bufferView == null || bufferViewSource != buffer) {
+                bufferViewSource = buffer;
+                bufferView = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+            }
+            result = bufferView.duplicate();
+            result.limit((int) position + length);
+            result.position((int) position);
+        } else {
+            int iseg   = (int) (position >>> segmentShift);
+            int segPos = (int) (position & ((1L << segmentShift) - 1));
+            if (segPos + length <= segments[iseg].limit()) {
+                result = segments[iseg].asReadOnlyBuffer();
+                result.limit(segPos + length);
+                result.position(segPos);
+            } else { // crosses a segment boundary
+                byte[] portion = new byte[length];
+                copyBytes(position, portion, 0, length);
+                result = ByteBuffer.wrap(portion).asReadOnlyBuffer();
+            }
+        }
+        return result;
+    } // getView
+
+    /** read-only view of the whole {@link #buffer}, for {@link #getView} */
+    private ByteBuffer bufferView;
+
+    /** the array for which {@link #bufferView} was created */
+    private byte[] bufferViewSource;
+
     /** Gets some integer value from the current buffer position, in little endian mode,
      *  starting at the current position, and incrementing the latter
      *  @return a Java integer
      */
     public int getLsb2() {
         bufferPos += 2;
-        return (((buffer[bufferPos - 1] & 0xff) << 8) | (buffer[bufferPos - 2] & 0xff)) & 0xffff;
+        return (((getByte(bufferPos - 1) & 0xff) << 8) | (getByte(bufferPos - 2) & 0xff)) & 0xffff;
     } // getLsb2
 
     /** Gets some integer value from a buffer position, in little endian mode,
@@ -411,7 +1140,7 @@ public class BaseBuffer {
      */
     public int getMsb2() {
         bufferPos += 2;
-        return (((buffer[bufferPos - 2] & 0xff) << 8) | (buffer[bufferPos - 1] & 0xff)) & 0xffff;
+        return (((getByte(bufferPos - 2) & 0xff) << 8) | (getByte(bufferPos - 1) & 0xff)) & 0xffff;
     } // getMsb2
 
     /** Gets some integer value from a buffer position, in big endian mode,
@@ -425,8 +1154,10 @@ public class BaseBuffer {
         return (((buffer[bufferPos - 2] & 0xff) << 8) | (buffer[bufferPos - 1] & 0xff)) & 0xffff;
     } // getMsb2
 
-    /** Gets the internal buffer
-     *  @return a byte array
+    /** Gets the internal buffer.
+     *  File systems should rather use {@link #copyBytes}, since there is
+     *  no such array for mapped containers.
+     *  @return a byte array, or null if the container is mapped
      */
     public byte[] getBuffer() {
         return buffer;
@@ -441,7 +1172,7 @@ public class BaseBuffer {
      */
     public byte[] getBytes(int position, int length) {
         byte[] result = new byte[length];
-        System.arraycopy(buffer, position, result, 0, length);
+        copyBytes(position, result, 0, length);
         bufferPos = position + length;
         return result;
     } // getBytes(2)
@@ -463,9 +1194,20 @@ public class BaseBuffer {
      *  @return a string which is truncated at the first null byte
      */
     public String getAscii(int position, int length) {
-        byte[] result = new byte[length];
-        System.arraycopy(buffer, position, result, 0, length);
+        String result = getAscii((long) position, length);
         bufferPos = position + length;
+        return result;
+    } // getAscii(2)
+
+    /** Gets some subsegment of the container as a string,
+     *  without changing the current position.
+     *  @param position starting position of the subsegment, may exceed 2 GB for mapped containers
+     *  @param length number of bytes to be extracted
+     *  @return a string which is truncated at the first null byte
+     */
+    public String getAscii(long position, int length) {
+        byte[] result = new byte[length];
+        copyBytes(position, result, 0, length);
         String sresult = "";
         try {
             sresult = new String(result, "US-ASCII");
@@ -477,7 +1219,7 @@ public class BaseBuffer {
             sresult = sresult.substring(0, nullPos);
         } // cut
         return sresult;
-    } // getAscii
+    } // getAscii(long, int)
 
     /** Gets some subsegment of the buffer,
      *  starting at the current position, and incrementing the latter
@@ -507,60 +1249,72 @@ public class BaseBuffer {
      *  @param length number of bytes to be dumped
      */
     public void dump(byte[] srcBuffer, int offset, int length) {
-        StringBuffer line = new StringBuffer(128);
-        int CHUNK_LEN = 16;
-        byte by1 = 0;
-        int last = offset + length;
-        boolean first = true;
+        dump(ByteBuffer.wrap(srcBuffer), offset, (long) offset, length, true);
+    } // dump(3)
+
+    /** Dumps a portion of a byte buffer (for example a view of the container)
+     *  as hexadecimal and ASCII characters, with offsets which are different
+     *  from the positions in the byte buffer.
+     *  @param src buffer containing the bytes to be displayed; its position is not changed
+     *  @param srcPos position of the first byte in <em>src</em>
+     *  @param offset offset to be shown for the first byte;
+     *  it should be a multiple of 0x10, or even of 0x100.
+     *  @param length number of bytes to be dumped
+     *  @param first whether this is the start of the dump (no blank line before the first line)
+     */
+    protected void dump(ByteBuffer src, int srcPos, long offset, int length, boolean first) {
         try {
-            while (offset < last) {
-                if (first) {
-                    first = false;
-                } else {
-                    if (offset % 0x100 == 0) {
-                        charWriter.println();
-                    }
-                } // ! first
-                line.setLength(0);
-                line.append(String.format("%6x:", offset));
-                int
-                ipos = 0;
-                while (ipos < CHUNK_LEN) { // hex bytes
-                    by1 = srcBuffer[offset + ipos];
-                    if (by1 == 0) {
-                        line.append("   ");
-                    } else {
-                        line.append(String.format(" %2x", by1));
-                    }
-                    ipos ++;
-                } // while ipos hex
-                line.append("  "); // separate ASCII part a little bit
-                ipos = 0;
-                while (ipos < CHUNK_LEN) { // ASCII bytes
-                    by1 = srcBuffer[offset + ipos];
-                    if (by1 < 0x20 || by1 > 0x7e) {
-                        line.append('.');
-                    } else {
-                        line.append((char) by1);
-                    }
-                    ipos ++;
-                } // while ipos ASCII
-                // System.out.println(line.toString());
-                charWriter.println(line.toString());
-                offset += CHUNK_LEN;
-            } // while offset
+            if (dumper == null) {
+                dumper = new HexDumper();
+            }
+            dumper.dump(src, srcPos, offset, length, first, charWriter);
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
         }
-    } // dump(3)
+    } // dump(5)
 
-    /** Dumps a portion of the internal buffer as hexadecimal and ASCII characters.
-     *  @param offset buffer position of first byte to be dumped;
+    /** reusable formatter for {@link #dump} */
+    private HexDumper dumper;
+
+    /** Dumps a portion of the container (or all of it) as hexadecimal and ASCII characters
+     *  to a channel, for example to a file. Large portions are formatted in parallel.
+     *  In contrast to {@link #dump(long, int)}, the dump stops at the end of the container.
+     *  @param offset container position of first byte to be dumped;
+     *  it should be a multiple of 0x10, or even of 0x100.
+     *  @param length number of bytes to be dumped, or <code>Long.MAX_VALUE</code> for the rest of the container
+     *  @param channel receives the lines
+     *  @param threads number of threads which format the chunks
+     *  @throws IOException if the channel cannot be written
+     */
+    public void dump(long offset, long length, WritableByteChannel channel, int threads) throws IOException {
+        HexDumper.dumpParallel(this, offset, Math.min(length, getLength() - offset), channel, threads);
+    } // dump(4)
+
+    /** Dumps a portion of the container as hexadecimal and ASCII characters.
+     *  @param offset container position of first byte to be dumped;
      *  it should be a multiple of 0x10, or even of 0x100.
      *  @param length number of bytes to be dumped
      */
-    public void dump(int offset, int length) {
-        dump(buffer, offset, length);
+    public void dump(long offset, int length) {
+        int avail = (int) Math.min((long) ((length + 15) & ~15), getLength() - offset); // full lines
+        ByteBuffer view = getView(offset, avail);
+        dump(view, view.position(), offset, length, true);
     } // dump(2)
 
+    /** Dumps a series of views (for example the sectors of a block)
+     *  as hexadecimal and ASCII characters, with consecutive offsets starting at 0.
+     *  @param views array of read-only views, each with a length which is a multiple of 0x10
+     *  @param count number of views to be dumped
+     */
+    public void dump(ByteBuffer[] views, int count) {
+        long offset = 0;
+        int iview = 0;
+        while (iview < count) {
+            ByteBuffer view = views[iview];
+            dump(view, view.position(), offset, view.remaining(), iview == 0);
+            offset += view.remaining();
+            iview ++;
+        } // while iview
+    } // dump(ByteBuffer[])
+
 } // BaseBuffer
@@ -1,5 +1,10 @@
 /*  Selects the applicable subclass of BaseBuffer
     @(#) $Id: BufferFactory.java 657 2011-03-17 07:56:38Z gfis $
+    2026-10-16: no leak on corrupt gzip headers; skip unreadable ZIP entries
+    2026-10-16: image names of ZIP entries
+    2026-10-16: ImdBuffer
+    2026-10-16: gzip and ZIP input
+    2026-10-16: detection of the container format
     2017-05-29: javadoc 1.8
     2013-11-05, Georg Fischer
 */
@@ -20,9 +25,23 @@
  */
 package org.teherba.flodskim.buffer;
 import  org.teherba.flodskim.buffer.BaseBuffer;
+import  java.io.BufferedInputStream;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.FilterInputStream;
+import  java.io.InputStream;
+import  java.io.IOException;
+import  java.nio.ByteBuffer;
+import  java.nio.ByteOrder;
+import  java.nio.channels.FileChannel;
 import  java.util.ArrayList;
+import  java.util.Arrays;
 import  java.util.Iterator;
 import  java.util.StringTokenizer;
+import  java.util.function.BiConsumer;
+import  java.util.zip.GZIPInputStream;
+import  java.util.zip.ZipEntry;
+import  java.util.zip.ZipInputStream;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -30,6 +49,8 @@ import  org.apache.logging.log4j.LogManager;
  *  with an iterator and access method.
  *  Initially, a list of the available {@link BaseBuffer}s is built, and classes
  *  which cannot be instantiated are <em>silently</em> ignored.
+ *  The container format of a file can be detected from its first bytes
+ *  (magic strings) and its size, without reading the whole file.
  *  @author Dr. Georg Fischer
  */
 public class BufferFactory {
@@ -64,7 +85,7 @@ public class BufferFactory {
             instances = new ArrayList<BaseBuffer>(64);
             addInstance("base"  , "BaseBuffer");
             addInstance("dsk"   , "DskBuffer");  // http://web.archive.org/web/20090107021455/http://www.kjthacker.f2s.com/docs/dsk.html
-            addInstance("imd"   , "DskBuffer");  // default, raw format
+            addInstance("imd"   , "ImdBuffer");  // http://dunfield.classiccmp.org/img/index.htm
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
         }
@@ -125,4 +146,214 @@ public class BufferFactory {
         return result;
     } // getInstance
 
+    //-----------------------
+    // Detection of the format
+    //-----------------------
+    /** number of bytes at the start of a container which are needed for the detection */
+    public static final int PROBE_SIZE = 512;
+
+    /** sizes of raw containers of common diskette formats, in ascending order */
+    private static final long[] RAW_SIZES = new long[]
+            { 163840L   // 5.25" 40 x 8 x 512, SS
+            , 184320L   // 5.25" 40 x 9 x 512, SS
+            , 327680L   // 5.25" 40 x 8 x 512, DS
+            , 368640L   // 5.25" 40 x 9 x 512, DS
+            , 409600L   // DEC RX50, 80 x 10 x 512
+            , 737280L   // 3.5" 720 kB
+            , 819200L   // 80 x 10 x 512, DS
+            , 1228800L  // 5.25" 1.2 MB
+            , 1474560L  // 3.5" 1.44 MB
+            , 2949120L  // 3.5" 2.88 MB
+            };
+
+    /** Checks whether some ASCII string occurs at a position in the header
+     *  @param header first bytes of the container
+     *  @param length number of valid bytes in <em>header</em>
+     *  @param pos position where the string should start
+     *  @param magic string to be compared
+     *  @return whether the bytes match
+     */
+    private static boolean hasMagic(byte[] header, int length, int pos, String magic) {
+        boolean result = pos + magic.length() <= length;
+        int imag = 0;
+        while (result && imag < magic.length()) {
+            result = header[pos + imag] == magic.charAt(imag);
+            imag ++;
+        } // while imag
+        return result;
+    } // hasMagic
+
+    /** Detects the format of a container from its first bytes and its size.
+     *  @param header first bytes of the container, at most {@link #PROBE_SIZE} are inspected
+     *  @param length number of valid bytes in <em>header</em>
+     *  @param size total size of the container in bytes, or -1 if not known (streams)
+     *  @return "dsk", "edsk", "imd", "tar", "raw" (one of the known sizes) or "unknown"
+     */
+    public String detectFormat(byte[] header, int length, long size) {
+        String result = "unknown";
+        if (false) {
+        } else if (hasMagic(header, length, 0, "MV - CPC")) {
+            result = "dsk";
+        } else if (hasMagic(header, length, 0, "EXTENDED")) {
+            result = "edsk";
+        } else if (hasMagic(header, length, 0, "IMD ")) {
+            result = "imd";
+        } else if (hasMagic(header, length, 257, "ustar")) {
+            result = "tar";
+        } else if (size >= 0 && Arrays.binarySearch(RAW_SIZES, size) >= 0) {
+            result = "raw";
+        }
+        return result;
+    } // detectFormat
+
+    /** Gets the code of the buffer which reads a container format
+     *  @param format result of {@link #detectFormat}
+     *  @return code for {@link #getInstance}: "dsk", "imd" or "base"
+     */
+    public String getCodeForFormat(String format) {
+        String result = "base";
+        if (false) {
+        } else if (format.equals("dsk") || format.equals("edsk")) {
+            result = "dsk";
+        } else if (format.equals("imd")) {
+            result = "imd";
+        }
+        return result;
+    } // getCodeForFormat
+
+    /** Detects the format of a container file by reading its first {@link #PROBE_SIZE} bytes only.
+     *  For a gzip-compressed file, the first bytes are decompressed,
+     *  and the uncompressed size is taken from the gzip trailer.
+     *  @param file the container file
+     *  @param header reusable heap buffer with a capacity of at least {@link #PROBE_SIZE} bytes
+     *  @return "dsk", "edsk", "imd", "tar", "raw" or "unknown"
+     */
+    public String probe(File file, ByteBuffer header) {
+        String result = "unknown";
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                header.clear();
+                header.limit(PROBE_SIZE);
+                int len = 0;
+                while (len >= 0 && header.hasRemaining()) {
+                    len = channel.read(header, header.position());
+                } // while not EOF
+                byte[] bytes = header.array();
+                if (header.position() >= 2 && bytes[0] == 0x1f && bytes[1] == (byte) 0x8b) { // gzip
+                    ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                    channel.read(trailer, channel.size() - 4); // ISIZE = uncompressed size mod 2**32
+                    try (InputStream fileStream = new FileInputStream(file);
+                            InputStream stream = new GZIPInputStream(fileStream, PROBE_SIZE)) { // fileStream is closed even if the gzip header is corrupt
+                        result = detectFormat(bytes, readHeader(stream, bytes), trailer.getInt(0) & 0xffffffffL);
+                    }
+                } else {
+                    result = detectFormat(bytes, header.position(), channel.size());
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        return result;
+    } // probe(File)
+
+    /** Detects the format of a container stream without consuming its first bytes.
+     *  The size of a stream is not known, therefore raw containers are reported as "unknown".
+     *  @param stream a stream which supports {@link InputStream#mark}
+     *  @return "dsk", "edsk", "imd", "tar" or "unknown"
+     */
+    public String probe(InputStream stream) {
+        String result = "unknown";
+        try {
+            byte[] header = new byte[PROBE_SIZE];
+            stream.mark(PROBE_SIZE);
+            int pos = readHeader(stream, header);
+            stream.reset();
+            result = detectFormat(header, pos, -1L);
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        return result;
+    } // probe(InputStream)
+
+    /** Reads the first bytes of a stream, until the header is full or EOF is reached
+     *  @param stream stream to be read
+     *  @param header array of {@link #PROBE_SIZE} bytes which is filled
+     *  @return number of bytes read
+     *  @throws IOException if the stream cannot be read
+     */
+    private static int readHeader(InputStream stream, byte[] header) throws IOException {
+        int pos = 0;
+        int len = 0;
+        while (len >= 0 && pos < PROBE_SIZE) {
+            len = stream.read(header, pos, PROBE_SIZE - pos);
+            if (len > 0) {
+                pos += len;
+            }
+        } // while not EOF
+        return pos;
+    } // readHeader
+
+    /** Reads all containers in a ZIP archive in a single sequential pass.
+     *  Each entry is decompressed straight into the storage of a container,
+     *  without temporary files. Entries which are themselves gzip-compressed
+     *  are decompressed as well.
+     *  The containers are reused: each container is only valid
+     *  during the call of <em>action</em> for its entry.
+     *  An entry which cannot be read is logged and counted as an error
+     *  in the metrics of its container, and the following entries are read anyway.
+     *  @param zipStream stream of the ZIP archive
+     *  @param code code of the buffer for all entries, or "auto" to detect the format of each entry
+     *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     *  @param action called with the name of the entry and the filled container
+     *  @return number of entries which were read
+     */
+    public int forEachZipEntry(InputStream zipStream, String code, int informLevel, BiConsumer<String, BaseBuffer> action) {
+        int result = 0;
+        int errorCount = 0;
+        try {
+            ZipInputStream zipReader = new ZipInputStream(new BufferedInputStream(zipStream, 0x10000));
+            InputStream entryReader = new FilterInputStream(zipReader) {
+                public void close() { // keep the archive open for the next entry
+                }
+            };
+            ZipEntry entry = null;
+            while ((entry = zipReader.getNextEntry()) != null) {
+                if (! entry.isDirectory()) {
+                    BaseBuffer container = null;
+                    try {
+                        InputStream stream = BaseBuffer.decompress(new BufferedInputStream(entryReader, 0x10000));
+                        String entryCode = code;
+                        if (code.equals("auto")) {
+                            entryCode = getCodeForFormat(probe(stream));
+                        }
+                        container = getInstance(entryCode);
+                        container.openStream(stream);
+                        container.setImageName(entry.getName());
+                        container.openFile(1, null);
+                        container.readContainer(informLevel);
+                        action.accept(entry.getName(), container);
+                        container.flush();
+                        result ++;
+                    } catch (Exception exc) { // skip this entry, and continue with the next one
+                        log.error("ZIP entry " + entry.getName() + ": " + exc.getMessage(), exc);
+                        if (container != null) {
+                            container.getMetrics().addError();
+                        }
+                        errorCount ++;
+                    }
+                } // not directory
+            } // while entries
+            zipReader.close();
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        if (errorCount > 0) {
+            log.error(errorCount + " ZIP entries could not be read");
+        }
+        return result;
+    } // forEachZipEntry
+
 } // BufferFactory
@@ -0,0 +1,112 @@
+/*  Flight Recorder events for the reading of disk image containers
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.buffer;
+import  jdk.jfr.Category;
+import  jdk.jfr.DataAmount;
+import  jdk.jfr.Description;
+import  jdk.jfr.Event;
+import  jdk.jfr.Label;
+import  jdk.jfr.Name;
+import  jdk.jfr.StackTrace;
+
+/** JDK Flight Recorder events for the phases of a {@link BaseBuffer}:
+ *  opening of the container, reading of the whole container, and decoding of single tracks.
+ *  The events are only committed while a recording is running, for example with
+ *  <pre>
+ *  java -XX:StartFlightRecording=filename=flodskim.jfr org.teherba.flodskim.Main ...
+ *  </pre>
+ *  and they can then be listed with <code>jfr print --events org.teherba.flodskim.* flodskim.jfr</code>.
+ *  @author Dr. Georg Fischer
+ */
+public class ContainerEvents {
+    public final static String CVSID = "@(#) $Id: ContainerEvents.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** No-args Constructor - the events are nested classes */
+    private ContainerEvents() {
+    } // Constructor
+
+    /** A container file or stream was opened */
+    @Name("org.teherba.flodskim.ContainerOpen")
+    @Label("Container Open")
+    @Category({"flodskim", "Container"})
+    public static final class Open extends Event {
+        @Label("Image")
+        @Description("Name of the container file, or \"-\" for STDIN")
+        public String image;
+
+        @Label("Buffer")
+        @Description("Code of the container format")
+        public String buffer;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+
+        @Label("Success")
+        public boolean success;
+    } // Open
+
+    /** A container was read with <code>readContainer</code> */
+    @Name("org.teherba.flodskim.ContainerRead")
+    @Label("Container Read")
+    @Category({"flodskim", "Container"})
+    public static final class Read extends Event {
+        @Label("Image")
+        public String image;
+
+        @Label("Buffer")
+        public String buffer;
+
+        @Label("Bytes Read")
+        @Description("Number of bytes read from the file or stream")
+        @DataAmount
+        public long bytes;
+
+        @Label("Length")
+        @Description("Length of the decoded image")
+        @DataAmount
+        public long length;
+    } // Read
+
+    /** One track of a structured container was decoded */
+    @Name("org.teherba.flodskim.TrackDecode")
+    @Label("Track Decode")
+    @Category({"flodskim", "Container"})
+    @StackTrace(false)
+    public static final class TrackDecode extends Event {
+        @Label("Image")
+        public String image;
+
+        @Label("Buffer")
+        public String buffer;
+
+        @Label("Track")
+        @Description("Index of the track in the order of the container file")
+        public int track;
+
+        @Label("Sectors")
+        public int sectors;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    } // TrackDecode
+
+} // ContainerEvents
@@ -1,5 +1,13 @@
 /*  Class for a buffer for the (e)DSK disk image container format
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: Flight Recorder events
+    2026-10-16: Metrics
+    2026-10-16: closeInput
+    2026-10-16: writeRange into the sectors of the file
+    2026-10-16: gzip-compressed containers
+    2026-10-16: read from STDIN
+    2026-10-16: EXTENDED CPC DSK; parallel decoding of the tracks
+    2026-10-16: ACCESS_LAZY with a sector index
     2017-05-29: javadoc 1.8
     2013-11-05, Georg Fischer
 
@@ -23,6 +31,17 @@
  */
 package org.teherba.flodskim.buffer;
 import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.buffer.ContainerEvents;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.FileChannel;
+import  java.nio.charset.StandardCharsets;
+import  java.util.Arrays;
+import  java.util.BitSet;
+import  java.util.HashMap;
+import  java.util.stream.IntStream;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -30,6 +49,18 @@ import  org.apache.logging.log4j.LogManager;
  *  defining common properties and methods. The container format
  *  is described in an
  *  <a href="http://web.archive.org/web/20090107021455/http://www.kjthacker.f2s.com/docs/dsk.html">outdated document for CPCEMU</a>.
+ *  Both the standard ("MV - CPC") and the extended ("EXTENDED CPC DSK")
+ *  variants are supported.
+ *  The track and sector information blocks are removed, and the sectors
+ *  are concatenated in the order of the container file.
+ *  <p>
+ *  When the container is read from a file, an index of all sectors is
+ *  built from the disc and track information blocks first.
+ *  With {@link #ACCESS_READ}, the tracks are then read in parallel into
+ *  their final positions in the buffer. With {@link #ACCESS_LAZY},
+ *  each sector is read on its first access.
+ *  Containers from streams (STDIN, pipes) are read sequentially
+ *  into chunks which are appended as needed.
  *  @author Dr. Georg Fischer
  */
 public class DskBuffer extends BaseBuffer {
@@ -41,6 +72,9 @@ public class DskBuffer extends BaseBuffer {
     /** log4j logger (category) */
     private Logger log;
 
+    /** size of the disc and track information blocks */
+    private static final int INFO_SIZE = 0x100;
+
     //--------------------------------
     // Constructor
     //--------------------------------
@@ -57,74 +91,498 @@ public class DskBuffer extends BaseBuffer {
      */
     public void initialize() {
         super.initialize();
+        closeChannel();
+        extended    = false;
+        sectorCount = 0;
+        trackCount  = 0;
+        indexEnd    = 0;
+        sectorFileOffset = new long[64];
+        sectorStart      = new int [64];
+        sectorLength     = new int [64];
+        sectorReadLength = new int [64];
+        trackFirstSector = new int [64];
+        sectorIndex      = new HashMap<Integer, Integer>(256);
+        loaded           = new BitSet();
     } // initialize
 
-    /** Fills the buffer from a disk image container file.
+    /** Sets the access mode for the container file.
+     *  The DSK container is restructured while it is read, therefore
+     *  it cannot be mapped, and {@link #ACCESS_MAPPED} is treated as {@link #ACCESS_LAZY}.
+     *  @param accessMode {@link #ACCESS_READ}, {@link #ACCESS_MAPPED} or {@link #ACCESS_LAZY}
+     */
+    public void setAccessMode(int accessMode) {
+        super.setAccessMode(accessMode == ACCESS_MAPPED ? ACCESS_LAZY : accessMode);
+    } // setAccessMode
+
+    /** whether the container has the extended format with a track size table */
+    private boolean extended;
+
+    /** Determines whether the container has the extended format
+     *  @return true for "EXTENDED CPC DSK", false for "MV - CPC"
+     */
+    public boolean isExtended() {
+        return extended;
+    } // isExtended
+
+    //-----------------------
+    // Sector index
+    //-----------------------
+    /** channel for the random access to the container file, or null for streams */
+    private FileChannel channel;
+
+    /** number of sectors in the index */
+    private int sectorCount;
+
+    /** position of the data of each sector in the container file */
+    private long[] sectorFileOffset;
+
+    /** position of each sector in the buffer, ascending */
+    private int[] sectorStart;
+
+    /** number of bytes reserved for each sector in the buffer */
+    private int[] sectorLength;
+
+    /** number of bytes to be read from the container file for each sector */
+    private int[] sectorReadLength;
+
+    /** number of tracks in the index */
+    private int trackCount;
+
+    /** number of the first sector of each track in the index */
+    private int[] trackFirstSector;
+
+    /** position behind the last sector in the buffer */
+    private int indexEnd;
+
+    /** maps (track, head, sector id) to the number of the sector in the index */
+    private HashMap<Integer, Integer> sectorIndex;
+
+    /** sectors which were already read into the buffer */
+    private BitSet loaded;
+
+    /** Opens some named (ordinary) input or output file.
+     *  A container file is not read as a stream, but a channel is kept
+     *  for the positional reading of the tracks and sectors.
+     *  STDIN and gzip-compressed files are read as streams.
+     *  @param ifile 0 for source file, 1 for result file
+     *  @param fileName name of the (ordinary) file to be opened,
+     *  or null or "-" for STDIN (source) or STDOUT (result)
+     *  @return whether the operation was successful
+     */
+    public boolean openFile(int ifile, String fileName) {
+        boolean result = true;
+        if (ifile == 0 && fileName != null && ! fileName.equals("-") && ! isGzip(new File(fileName))) {
+            ContainerEvents.Open event = new ContainerEvents.Open();
+            event.begin();
+            try {
+                openRandom(new File(fileName));
+                setContainerFile(new File(fileName));
+                setImageName(fileName);
+            } catch (Exception exc) {
+                log.error(exc.getMessage(), exc);
+                getMetrics().addError();
+                result = false;
+            }
+            commitOpen(event, fileName, result);
+        } else {
+            result = super.openFile(ifile, fileName);
+        }
+        return result;
+    } // openFile
+
+    /** Opens the container file for the positional reading of the tracks and sectors.
+     *  @param containerFile the file to be opened
+     *  @throws IOException if the file cannot be opened
+     */
+    protected void openRandom(File containerFile) throws IOException {
+        closeChannel();
+        channel = new FileInputStream(containerFile).getChannel();
+    } // openRandom
+
+    /** Closes the channel to the container file, if any
+     */
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        channel = null;
+    } // closeChannel
+
+    /** Closes the input file.
+     *  With {@link #ACCESS_LAZY}, sectors which were not yet accessed
+     *  can no longer be read afterwards.
+     */
+    public void closeInput() {
+        super.closeInput();
+        closeChannel();
+    } // closeInput
+
+    /** Appends a sector to the index
+     *  @param track cylinder number
+     *  @param head head number
+     *  @param sectorId sector identifier from the sector information list
+     *  @param fileOffset position of the sector's data in the container file
+     *  @param length number of bytes reserved for the sector in the buffer
+     *  @param readLength number of bytes to be read from the container file
+     */
+    private void addSector(int track, int head, int sectorId, long fileOffset, int length, int readLength) {
+        if (sectorCount >= sectorStart.length) {
+            int newSize = sectorCount * 2;
+            sectorFileOffset = Arrays.copyOf(sectorFileOffset, newSize);
+            sectorStart      = Arrays.copyOf(sectorStart     , newSize);
+            sectorLength     = Arrays.copyOf(sectorLength    , newSize);
+            sectorReadLength = Arrays.copyOf(sectorReadLength, newSize);
+        }
+        sectorFileOffset[sectorCount] = fileOffset;
+        sectorStart     [sectorCount] = indexEnd;
+        sectorLength    [sectorCount] = length;
+        sectorReadLength[sectorCount] = readLength;
+        sectorIndex.put((track << 16) | (head << 8) | sectorId, sectorCount);
+        indexEnd += length;
+        sectorCount ++;
+    } // addSector
+
+    /** Gets the position of a sector in the container
+     *  @param track cylinder number, starting at 0
+     *  @param head head number, starting at 0
+     *  @param sectorId sector identifier from the sector information list (mostly starting at 1)
+     *  @return position of the first byte of the sector in the container, or -1 if there is no such sector
+     */
+    public long getSectorPosition(int track, int head, int sectorId) {
+        Integer isect = sectorIndex.get((track << 16) | (head << 8) | (sectorId & 0xff));
+        return isect == null ? -1L : (long) sectorStart[isect];
+    } // getSectorPosition
+
+    /** Ensures that all sectors overlapping a range of the container were read.
+     *  @param position position of the first byte
+     *  @param length number of bytes
+     */
+    protected void loadRange(long position, int length) {
+        if (channel != null && length > 0) {
+            loadSectors((int) position, (int) position + length);
+        }
+    } // loadRange
+
+    /** Reads all sectors overlapping a range of the container which were not read before
+     *  @param start position of the first byte
+     *  @param end position behind the last byte
+     */
+    private synchronized void loadSectors(int start, int end) {
+        int isect = Arrays.binarySearch(sectorStart, 0, sectorCount, start);
+        if (isect < 0) { // not at the start of a sector
+            isect = Math.max(- isect - 2, 0);
+        }
+        while (isect < sectorCount && sectorStart[isect] < end) {
+            if (! loaded.get(isect)) {
+                readFully(ByteBuffer.wrap(getBuffer(), sectorStart[isect], sectorReadLength[isect]), sectorFileOffset[isect]);
+                loaded.set(isect);
+            }
+            isect ++;
+        } // while isect
+    } // loadSectors
+
+    /** Writes a range of the container into the sectors of the container file.
+     *  Bytes behind the data length of a short sector are not written.
+     *  @param channel channel of the container file, open for writing
+     *  @param position position of the first byte in the container
+     *  @param length number of bytes to be written
+     *  @throws IOException if the file cannot be written
+     */
+    protected void writeRange(FileChannel channel, long position, int length) throws IOException {
+        int start = (int) position;
+        int end   = start + length;
+        int isect = Arrays.binarySearch(sectorStart, 0, sectorCount, start);
+        if (isect < 0) { // not at the start of a sector
+            isect = Math.max(- isect - 2, 0);
+        }
+        while (isect < sectorCount && sectorStart[isect] < end) {
+            int from = Math.max(start, sectorStart[isect]);
+            int to   = Math.min(end  , sectorStart[isect] + sectorReadLength[isect]);
+            if (to > from) {
+                writeFully(channel, getView(from, to - from), sectorFileOffset[isect] + from - sectorStart[isect]);
+            }
+            isect ++;
+        } // while isect
+    } // writeRange
+
+    /** Reads all sectors of one track from the container file.
+     *  If the sectors are stored contiguously in the file, they are read with a single call.
+     *  This method is called concurrently for different tracks.
+     *  @param itrack number of the track in the index
+     */
+    private void loadTrack(int itrack) {
+        ContainerEvents.TrackDecode event = new ContainerEvents.TrackDecode();
+        event.begin();
+        int first = trackFirstSector[itrack];
+        int last  = trackFirstSector[itrack + 1]; // behind
+        boolean contiguous = true;
+        int isect = first;
+        while (contiguous && isect < last) {
+            contiguous = sectorReadLength[isect] == sectorLength[isect]
+                    && (isect == first || sectorFileOffset[isect] == sectorFileOffset[isect - 1] + sectorLength[isect - 1]);
+            isect ++;
+        } // while isect
+        if (contiguous) {
+            if (last > first) {
+                readFully(ByteBuffer.wrap(getBuffer(), sectorStart[first], sectorStart[last - 1] + sectorLength[last - 1] - sectorStart[first])
+                        , sectorFileOffset[first]);
+            }
+        } else {
+            isect = first;
+            while (isect < last) {
+                readFully(ByteBuffer.wrap(getBuffer(), sectorStart[isect], sectorReadLength[isect]), sectorFileOffset[isect]);
+                isect ++;
+            } // while isect
+        }
+        if (event.shouldCommit()) {
+            long bytes = 0L;
+            isect = first;
+            while (isect < last) {
+                bytes += sectorReadLength[isect ++];
+            } // while isect
+            commitTrack(event, itrack, last - first, bytes);
+        }
+    } // loadTrack
+
+    /** Reads bytes from a position in the container file, until the destination is full or EOF is reached
+     *  @param dest destination buffer
+     *  @param fileOffset position in the container file
+     */
+    private void readFully(ByteBuffer dest, long fileOffset) {
+        int start = dest.position();
+        try {
+            int len = 0;
+            while (len >= 0 && dest.hasRemaining()) {
+                len = channel.read(dest, fileOffset);
+                fileOffset += len;
+            } // while
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            getMetrics().addError();
+        }
+        getMetrics().addBytesRead(dest.position() - start);
+    } // readFully
+
+    /** Reads bytes from the input stream, until the destination is full or EOF is reached
+     *  @param dest destination array
+     *  @param length number of bytes to be read
+     *  @return number of bytes which were read
+     */
+    private int readStream(byte[] dest, int length) {
+        int pos = 0;
+        try {
+            int len = 0;
+            while (len >= 0 && pos < length) {
+                len = byteReader.read(dest, pos, length - pos);
+                if (len > 0) {
+                    pos += len;
+                }
+            } // while
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            getMetrics().addError();
+        }
+        filePos += pos;
+        return pos;
+    } // readStream
+
+    /** Skips bytes in the input stream
+     *  @param length number of bytes to be skipped
+     */
+    private void skipStream(long length) {
+        try {
+            long len = 1;
+            while (len > 0 && length > 0) {
+                len = byteReader.skip(length);
+                length  -= len;
+                filePos += len;
+            } // while
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            getMetrics().addError();
+        }
+    } // skipStream
+
+    //-----------------------
+    // Container structure
+    //-----------------------
+    /** Evaluates the disc information block
+     *  @param info the disc information block
      *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     *  @return size of each track in the container file (including the track information block),
+     *  in the order track 0 head 0, track 0 head 1, track 1 head 0 ...;
+     *  0 for unformatted tracks, or -1 if the size must be determined from the track information block
      */
-    public void readContainer(int informLevel) {
-        int blockSize = 0x100;
-        // read disk information block
-        setPosition(0);
-        readChunk(blockSize);
-        setPosition(0x30);
-        int trackNo = get1();
+    private int[] evalDiscInfo(byte[] info, int informLevel) {
+        extended     = info[0] == 'E';
+        int trackNo  = info[0x30] & 0xff;
+        int headNo   = info[0x31] & 0xff;
+        int trackLen = getLsb2(info, 0x32); // not filled by SAMdisk?
         setMaxCylinder(trackNo);
-        int headNo  = get1();
         setMaxHead(headNo);
-        int trackLen = getLsb2(); // not filled by SAMdisk?
         if (informLevel >= 1) { // minimal: Disc Information Block
-            charWriter.println(getAscii(0, 0x30)); // format descriptor and creator
+            String descriptor = new String(info, 0, 0x30, StandardCharsets.US_ASCII);
+            int nullPos = descriptor.indexOf('\0');
+            charWriter.println(nullPos >= 0 ? descriptor.substring(0, nullPos) : descriptor); // format descriptor and creator
             charWriter.println(trackNo + " tracks, " + headNo + " heads");
         } // informLevel >= 0
-        setPosition(0); // overwrite disk information block
-
-        // read all tracks
-        int itrack = 0;
-        while (itrack < trackNo) {
-            int ihead = 0;
-            while (ihead < headNo) {
-                // first read the track's information block (tib)
-                int tib0 = getPosition();
-                readChunk(blockSize);
-                setPosition(tib0 + 0x10);
-                int tibTrack = get1();
-                if (tibTrack == itrack) {
-                    int tibHead  = get1();
-                    if (tibHead  != ihead ) {
-                        log.error("wrong head# "  + tibHead  + " for track " + itrack + ", head " + ihead);
-                    }
-                    int dummy = getLsb2();
-                    int sectSize = 128 << get1(); // 0 = 128, 1= 256, 2 = 512 ...
-                    setSectorSize(sectSize);
-                    int sectNo   = get1();
-                    setMaxSector(sectNo);
-                    if (informLevel >= 2) { // medium
-                        charWriter.println("track " + tibTrack
-                                + ", head " + tibHead + ": "
-                                + sectNo + " sectors of " + sectSize + " bytes"
-                                );
-                    } // informLevel >= 2
-                    setPosition(tib0); // overwrite track information block
-                    int isect = 0;
-                    while (isect < sectNo) { // read 1 sector
-                        readChunk(sectSize);
+        int[] result = new int[trackNo * headNo];
+        int ientry = 0;
+        while (ientry < result.length) {
+            if (extended) { // track size table, high bytes only
+                result[ientry] = ientry + 0x34 < INFO_SIZE ? (info[0x34 + ientry] & 0xff) << 8 : 0;
+            } else {
+                result[ientry] = trackLen > 0 ? trackLen : -1;
+            }
+            ientry ++;
+        } // while ientry
+        return result;
+    } // evalDiscInfo
+
+    /** Evaluates a track information block, and appends its sectors to the index
+     *  @param info the track information block
+     *  @param dataOffset position of the first sector's data in the container file
+     *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     *  @return number of data bytes for the track in the container file
+     */
+    private int evalTrackInfo(byte[] info, long dataOffset, int informLevel) {
+        int tibTrack = info[0x10] & 0xff;
+        int tibHead  = info[0x11] & 0xff;
+        int sectSize = 128 << (info[0x14] & 0x07); // 0 = 128, 1= 256, 2 = 512 ...
+        int sectNo   = Math.min(info[0x15] & 0xff, (INFO_SIZE - 0x18) / 8);
+        setSectorSize(sectSize);
+        setMaxSector(sectNo);
+        if (tibTrack > getMaxCylinder()) {
+            setMaxCylinder(tibTrack);
+        }
+        if (informLevel >= 2) { // medium
+            charWriter.println("track " + tibTrack
+                    + ", head " + tibHead + ": "
+                    + sectNo + " sectors of " + sectSize + " bytes"
+                    );
+        } // informLevel >= 2
+        if (trackCount + 1 >= trackFirstSector.length) {
+            trackFirstSector = Arrays.copyOf(trackFirstSector, trackFirstSector.length * 2);
+        }
+        trackFirstSector[trackCount] = sectorCount;
+        int dataLength = 0;
+        int isect = 0;
+        while (isect < sectNo) {
+            int sinfo = 0x18 + isect * 8; // C, H, R, N, ST1, ST2, data length (extended only)
+            int length = sectSize;
+            int fileLength = sectSize;
+            if (extended) {
+                length     = 128 << Math.min(info[sinfo + 3] & 0xff, 6);
+                fileLength = getLsb2(info, sinfo + 6);
+                if (fileLength == 0) { // not filled by older writers: size from N
+                    fileLength = length;
+                } else if (fileLength < length) { // short sector
+                    length = fileLength;
+                }
+            }
+            addSector(tibTrack, tibHead, info[sinfo + 2] & 0xff, dataOffset + dataLength, length, Math.min(length, fileLength));
+            dataLength += fileLength;
+            isect ++;
+        } // while isect
+        trackCount ++;
+        trackFirstSector[trackCount] = sectorCount;
+        getMetrics().addTrack(sectNo);
+        return dataLength;
+    } // evalTrackInfo
+
+    /** Fills the buffer from a disk image container file.
+     *  The duration is recorded in the {@link #getMetrics metrics}, together with the
+     *  number of bytes of a stream; positional reads are counted in {@link #readFully}.
+     *  A {@link ContainerEvents.Read} event gets the bytes of the stream, or the length of the
+     *  sectors if they were all loaded.
+     *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     */
+    public void readContainer(int informLevel) {
+        ContainerEvents.Read event = new ContainerEvents.Read();
+        event.begin();
+        long startTime = System.nanoTime();
+        long streamed  = 0L;
+        if (channel != null) {
+            indexContainer(informLevel);
+            if (getAccessMode() != ACCESS_LAZY) {
+                IntStream.range(0, trackCount).parallel().forEach(itrack -> loadTrack(itrack));
+                closeChannel();
+            }
+        } else {
+            streamContainer(informLevel);
+            streamed = filePos;
+        }
+        setPosition(0);
+        getMetrics().addContainerRead(streamed, System.nanoTime() - startTime);
+        commitRead(event, streamed > 0 || getAccessMode() == ACCESS_LAZY ? streamed : indexEnd);
+    } // readContainer
+
+    /** Builds the sector index from a container file.
+     *  Only the disc information block and the track information blocks are read,
+     *  and the buffer is allocated, but not filled.
+     *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     */
+    private void indexContainer(int informLevel) {
+        ByteBuffer infoBlock = ByteBuffer.allocate(INFO_SIZE);
+        byte[] info = infoBlock.array();
+        readFully(infoBlock, 0L);
+        int[] trackSizes = evalDiscInfo(info, informLevel);
+        long tib0 = INFO_SIZE; // position of the track information block in the file
+        int ientry = 0;
+        while (ientry < trackSizes.length) {
+            if (trackSizes[ientry] != 0) { // not unformatted
+                infoBlock.clear();
+                readFully(infoBlock, tib0);
+                if (infoBlock.position() < INFO_SIZE) { // EOF - ignore missing tracks
+                    ientry = trackSizes.length; // will stop loop
+                } else {
+                    int dataLength = evalTrackInfo(info, tib0 + INFO_SIZE, informLevel);
+                    tib0 += trackSizes[ientry] > 0 ? trackSizes[ientry] : INFO_SIZE + dataLength;
+                }
+            } // not unformatted
+            ientry ++;
+        } // while ientry
+        allocate(indexEnd);
+        loaded.clear();
+    } // indexContainer
+
+    /** Reads the container sequentially from an input stream
+     *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     */
+    private void streamContainer(int informLevel) {
+        byte[] info = new byte[INFO_SIZE];
+        filePos = 0;
+        readStream(info, INFO_SIZE);
+        int[] trackSizes = evalDiscInfo(info, informLevel);
+        int ientry = 0;
+        while (ientry < trackSizes.length) {
+            if (trackSizes[ientry] != 0) { // not unformatted
+                long tib0 = filePos;
+                ContainerEvents.TrackDecode event = new ContainerEvents.TrackDecode();
+                event.begin();
+                if (readStream(info, INFO_SIZE) < INFO_SIZE) { // EOF - ignore missing tracks
+                    ientry = trackSizes.length; // will stop loop
+                } else {
+                    int isect = sectorCount;
+                    long dataEnd = filePos + evalTrackInfo(info, filePos, informLevel);
+                    while (isect < sectorCount) { // read 1 sector, and skip any bytes behind it
+                        readStream(sectorStart[isect], sectorReadLength[isect]);
+                        skipStream((isect + 1 < sectorCount ? sectorFileOffset[isect + 1] : dataEnd) - filePos);
                         isect ++;
                     } // while isect
-                } else if (tibTrack > itrack) {
-                    log.error("wrong track# " + tibTrack + " for track " + itrack + ", head " + ihead);
-                	// ignore
-                } else { // tibTrack < itrack - ignore any strange tracks at the end of the disk
-                    // log.error("wrong track# " + tibTrack + " for track " + itrack + ", head " + ihead);
-                    setMaxCylinder(itrack - 1);
-                    itrack = trackNo; // will stop loop
-                    ihead  = headNo;
+                    if (trackSizes[ientry] > 0) { // skip any padding behind the sectors
+                        skipStream(tib0 + trackSizes[ientry] - filePos);
+                    }
+                    commitTrack(event, trackCount - 1, sectorCount - trackFirstSector[trackCount - 1], filePos - tib0);
                 }
-                ihead ++;
-            } // while ihead
-            itrack ++;
-        } // while itrack
-        bufferLength = bufferPos;
-    } // readContainer
+            } // not unformatted
+            ientry ++;
+        } // while ientry
+        setStreamLength(indexEnd);
+    } // streamContainer
 
 } // DskBuffer
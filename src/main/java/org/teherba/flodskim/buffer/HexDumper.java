@@ -0,0 +1,343 @@
+/*  Table-driven formatter for hexadecimal dumps
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer: extracted from BaseBuffer.dump
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.buffer;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  java.io.IOException;
+import  java.io.Writer;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.WritableByteChannel;
+import  java.util.ArrayDeque;
+import  java.util.Arrays;
+import  java.util.concurrent.ForkJoinPool;
+import  java.util.concurrent.ForkJoinTask;
+
+/** Formats hexadecimal dumps in the layout described in {@link BaseBuffer#dump(byte[], int, int)}.
+ *  The lines are built from precomputed tables into a reusable byte array,
+ *  which is written to a <code>Writer</code> or to a channel when it is full.
+ *  Large ranges of a container can be formatted in parallel chunks
+ *  which are written in order.
+ *  An instance is not thread-safe; use one per thread.
+ *  @author Dr. Georg Fischer
+ */
+public class HexDumper {
+    public final static String CVSID = "@(#) $Id: HexDumper.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** number of bytes shown per line */
+    public static final int LINE_BYTES = 16;
+
+    /** number of bytes which are formatted by one task of {@link #dumpParallel} (a multiple of 0x100) */
+    public static final int CHUNK_BYTES = 1 << 20;
+
+    /** hex digits with leading zero suppressed, and 3 spaces for a zero byte:
+     *  3 characters for each byte value
+     */
+    private static final byte[] HEX3 = new byte[256 * 3];
+
+    /** printable ASCII character, or '.', for each byte value */
+    private static final byte[] ASCII = new byte[256];
+
+    /** lowercase hexadecimal digits */
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes();
+
+    static {
+        int code = 0;
+        while (code < 256) {
+            int pos = code * 3;
+            HEX3[pos    ] = ' ';
+            HEX3[pos + 1] = code < 0x10 ? (byte) ' ' : DIGITS[code >> 4];
+            HEX3[pos + 2] = code == 0   ? (byte) ' ' : DIGITS[code & 0xf];
+            ASCII[code]   = code < 0x20 || code > 0x7e ? (byte) '.' : (byte) code;
+            code ++;
+        } // while code
+    } // static
+
+    /** line separator, as written by <code>PrintWriter.println</code> */
+    private final byte[] newline;
+
+    /** reusable output buffer */
+    private byte[] out;
+
+    /** number of bytes in {@link #out} */
+    private int outLen;
+
+    /** reusable character buffer for the output to a <code>Writer</code> */
+    private char[] chars;
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor with a buffer of 64 kB
+     */
+    public HexDumper() {
+        this(1 << 16);
+    } // Constructor(0)
+
+    /** Constructor with a buffer size
+     *  @param bufferSize number of bytes which are formatted before they are written
+     */
+    public HexDumper(int bufferSize) {
+        newline = System.lineSeparator().getBytes();
+        out     = new byte[Math.max(bufferSize, 256)];
+        outLen  = 0;
+        chars   = null;
+    } // Constructor(1)
+
+    //--------------------------
+    // Formatting
+    //--------------------------
+    /** Gets the maximum number of bytes of one formatted line, including a preceding blank line
+     *  @return number of bytes
+     */
+    private int maxLineLength() {
+        return 2 * newline.length + 17 + 3 * LINE_BYTES + 2 + LINE_BYTES;
+    } // maxLineLength
+
+    /** Appends one formatted line to {@link #out}
+     *  @param src buffer containing the bytes to be displayed
+     *  @param srcPos absolute position of the first byte of the line in <em>src</em>
+     *  @param offset offset to be shown for the line
+     *  @param count number of bytes in the line (at most {@link #LINE_BYTES});
+     *  missing bytes are shown as spaces
+     *  @param blankBefore whether a blank line should precede the line
+     */
+    private void formatLine(ByteBuffer src, int srcPos, long offset, int count, boolean blankBefore) {
+        byte[] dest = out;
+        int pos = outLen;
+        if (blankBefore) {
+            System.arraycopy(newline, 0, dest, pos, newline.length);
+            pos += newline.length;
+            outLen = pos; // the blank line is kept even if the bytes cannot be read
+        }
+        // offset, right-aligned in 6 columns like "%6x:"
+        int digits = 1;
+        while (digits < 16 && (offset >>> (digits * 4)) != 0) {
+            digits ++;
+        } // while digits
+        int pad = 6 - digits;
+        while (pad > 0) {
+            dest[pos ++] = ' ';
+            pad --;
+        } // while pad
+        while (digits > 0) {
+            digits --;
+            dest[pos ++] = DIGITS[(int) (offset >>> (digits * 4)) & 0xf];
+        } // while digits
+        dest[pos ++] = ':';
+        int asciiPos = pos + 3 * LINE_BYTES + 2; // ASCII part behind the hex part
+        int ipos = 0;
+        while (ipos < count) {
+            int code = src.get(srcPos + ipos) & 0xff;
+            int hex  = code * 3;
+            dest[pos    ] = HEX3[hex    ];
+            dest[pos + 1] = HEX3[hex + 1];
+            dest[pos + 2] = HEX3[hex + 2];
+            pos += 3;
+            dest[asciiPos ++] = ASCII[code];
+            ipos ++;
+        } // while ipos
+        while (ipos < LINE_BYTES) {
+            dest[pos ++] = ' ';
+            dest[pos ++] = ' ';
+            dest[pos ++] = ' ';
+            ipos ++;
+        } // while missing
+        dest[pos ++] = ' '; // separate ASCII part a little bit
+        dest[pos ++] = ' ';
+        pos = asciiPos;
+        System.arraycopy(newline, 0, dest, pos, newline.length);
+        outLen = pos + newline.length;
+    } // formatLine
+
+    /** Formats a portion of a byte buffer, and passes the lines to a sink whenever {@link #out} is full
+     *  @param src buffer containing the bytes to be displayed; its position is not changed
+     *  @param srcPos position of the first byte in <em>src</em>
+     *  @param offset offset to be shown for the first byte
+     *  @param length number of bytes to be dumped
+     *  @param first whether this is the start of the dump (no blank line before the first line)
+     *  @param fullLines whether the last line always shows 16 bytes, even behind <em>length</em>
+     *  @param sink receives the formatted bytes, or null if {@link #out} should grow instead
+     *  @throws IOException if the sink cannot be written
+     */
+    private void format(ByteBuffer src, int srcPos, long offset, int length, boolean first
+            , boolean fullLines, Sink sink) throws IOException {
+        long last  = offset + length;
+        long delta = srcPos - offset; // add to offset to get the position in src
+        int lineLen = maxLineLength();
+        while (offset < last) {
+            if (outLen + lineLen > out.length) {
+                if (sink != null) {
+                    sink.write(out, outLen);
+                    outLen = 0;
+                } else {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+            }
+            int count = fullLines ? LINE_BYTES : (int) Math.min(LINE_BYTES, last - offset);
+            formatLine(src, (int) (offset + delta), offset, count, ! first && offset % 0x100 == 0);
+            first = false;
+            offset += LINE_BYTES;
+        } // while offset
+    } // format
+
+    /** Receiver of formatted bytes */
+    private interface Sink {
+        /** Writes the formatted bytes
+         *  @param bytes array with the formatted bytes
+         *  @param len number of bytes to be written
+         *  @throws IOException if the bytes cannot be written
+         */
+        void write(byte[] bytes, int len) throws IOException;
+    } // Sink
+
+    //--------------------------
+    // Output
+    //--------------------------
+    /** Dumps a portion of a byte buffer to a character writer.
+     *  Like the original implementation, each line shows 16 bytes, even if they are behind <em>length</em>.
+     *  If a byte outside of <em>src</em> is reached, the lines up to that point are written,
+     *  and the exception is thrown.
+     *  @param src buffer containing the bytes to be displayed; its position is not changed
+     *  @param srcPos position of the first byte in <em>src</em>
+     *  @param offset offset to be shown for the first byte;
+     *  it should be a multiple of 0x10, or even of 0x100.
+     *  @param length number of bytes to be dumped
+     *  @param first whether this is the start of the dump (no blank line before the first line)
+     *  @param writer receives the lines
+     *  @throws IOException if the writer fails
+     */
+    public void dump(ByteBuffer src, int srcPos, long offset, int length, boolean first, Writer writer)
+            throws IOException {
+        Sink sink = (bytes, len) -> {
+            if (chars == null || chars.length < len) {
+                chars = new char[bytes.length];
+            }
+            int ipos = 0;
+            while (ipos < len) {
+                chars[ipos] = (char) bytes[ipos]; // all ASCII
+                ipos ++;
+            } // while ipos
+            writer.write(chars, 0, len);
+        };
+        try {
+            format(src, srcPos, offset, length, first, true, sink);
+        } finally {
+            sink.write(out, outLen);
+            outLen = 0;
+        }
+    } // dump(Writer)
+
+    /** Dumps a portion of a byte buffer to a channel.
+     *  The last line is shortened to the bytes within <em>length</em>.
+     *  @param src buffer containing the bytes to be displayed; its position is not changed
+     *  @param srcPos position of the first byte in <em>src</em>
+     *  @param offset offset to be shown for the first byte
+     *  @param length number of bytes to be dumped
+     *  @param first whether this is the start of the dump (no blank line before the first line)
+     *  @param channel receives the lines
+     *  @throws IOException if the channel cannot be written
+     */
+    public void dump(ByteBuffer src, int srcPos, long offset, int length, boolean first, WritableByteChannel channel)
+            throws IOException {
+        Sink sink = (bytes, len) -> writeFully(channel, ByteBuffer.wrap(bytes, 0, len));
+        try {
+            format(src, srcPos, offset, length, first, false, sink);
+        } finally {
+            sink.write(out, outLen);
+            outLen = 0;
+        }
+    } // dump(WritableByteChannel)
+
+    /** Formats a portion of a byte buffer completely into a new byte buffer
+     *  @param src buffer containing the bytes to be displayed; its position is not changed
+     *  @param srcPos position of the first byte in <em>src</em>
+     *  @param offset offset to be shown for the first byte
+     *  @param length number of bytes to be dumped
+     *  @param first whether this is the start of the dump (no blank line before the first line)
+     *  @return buffer with the formatted lines, ready to be written
+     */
+    public ByteBuffer format(ByteBuffer src, int srcPos, long offset, int length, boolean first) {
+        try {
+            format(src, srcPos, offset, length, first, false, null);
+        } catch (IOException exc) { // cannot occur without a sink
+        }
+        ByteBuffer result = ByteBuffer.wrap(Arrays.copyOf(out, outLen));
+        outLen = 0;
+        return result;
+    } // format(5)
+
+    /** Dumps a range of a container to a channel.
+     *  The range is formatted in chunks of {@link #CHUNK_BYTES} by several threads,
+     *  and the chunks are written in ascending order.
+     *  @param container buffer with the bytes to be displayed
+     *  @param offset container position of the first byte to be dumped;
+     *  it should be a multiple of 0x10, or even of 0x100.
+     *  @param length number of bytes to be dumped; it is truncated at the end of the container
+     *  @param channel receives the lines
+     *  @param threads number of threads which format the chunks; 1 for sequential formatting
+     *  @throws IOException if the channel cannot be written
+     */
+    public static void dumpParallel(BaseBuffer container, long offset, long length
+            , WritableByteChannel channel, int threads) throws IOException {
+        final long last = Math.min(offset + length, container.getLength());
+        if (threads <= 1 || last - offset <= CHUNK_BYTES) {
+            HexDumper dumper = new HexDumper();
+            long pos = offset;
+            while (pos < last) {
+                int len = (int) Math.min(CHUNK_BYTES, last - pos);
+                ByteBuffer view = container.getView(pos, len);
+                dumper.dump(view, view.position(), pos, len, pos == offset, channel);
+                pos += len;
+            } // while pos
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ArrayDeque<ForkJoinTask<ByteBuffer>> pending = new ArrayDeque<ForkJoinTask<ByteBuffer>>(threads * 2);
+            ThreadLocal<HexDumper> dumpers = ThreadLocal.withInitial(() -> new HexDumper(CHUNK_BYTES * 5)); // about 4.6 characters per byte
+            try {
+                long pos = offset;
+                while (pos < last || ! pending.isEmpty()) {
+                    while (pos < last && pending.size() < threads * 2) { // limit the memory in use
+                        final long start = pos;
+                        final int  len   = (int) Math.min(CHUNK_BYTES - (start % CHUNK_BYTES), last - start); // aligned chunks
+                        pending.add(pool.submit(() -> {
+                            ByteBuffer view = container.getView(start, len);
+                            return dumpers.get().format(view, view.position(), start, len, start == offset);
+                        }));
+                        pos += len;
+                    } // while submitting
+                    writeFully(channel, pending.poll().join());
+                } // while pos
+            } finally {
+                pool.shutdown();
+            }
+        }
+    } // dumpParallel
+
+    /** Writes a buffer completely to a channel
+     *  @param channel receives the bytes
+     *  @param buffer bytes to be written
+     *  @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        } // while remaining
+    } // writeFully
+
+} // HexDumper
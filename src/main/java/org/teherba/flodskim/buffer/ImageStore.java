@@ -0,0 +1,357 @@
+/*  Size-bounded store for disk images in direct memory
+    @(#) $Id: ImageStore.java 852 2012-01-06 08:07:08Z gfis $
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.buffer;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  java.io.IOException;
+import  java.nio.ByteBuffer;
+import  java.util.ArrayDeque;
+import  java.util.Iterator;
+import  java.util.LinkedHashMap;
+
+/** Keeps the decoded bytes of disk images in direct memory outside of the Java heap,
+ *  for example the images which were uploaded to the servlet by many users.
+ *  The store has a total byte budget. When a new image does not fit,
+ *  the least recently used images are evicted.
+ *  <p>
+ *  The images are held in chunks of 64 kB, which are allocated once
+ *  and then recycled, such that the direct memory is neither freed nor allocated
+ *  again when images come and go. Access is by reference-counted {@link Handle}s:
+ *  an image which was evicted while it is still in use keeps its chunks
+ *  until the last handle is closed.
+ *  <pre>
+ *  try (ImageStore.Handle handle = store.acquire(key)) {
+ *      BaseBuffer container = handle.openContainer();
+ *      ...
+ *  }
+ *  </pre>
+ *  All methods are thread-safe.
+ *  @author Dr. Georg Fischer
+ */
+public class ImageStore {
+    public final static String CVSID = "@(#) $Id: ImageStore.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** number of address bits covered by one chunk */
+    public static final int CHUNK_SHIFT = 16;
+
+    /** size of one chunk (64 kB) */
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /** maximum number of chunks, from the byte budget */
+    private final int maxChunks;
+
+    /** number of chunks which belong to images, including evicted images which are still in use */
+    private int usedChunks;
+
+    /** chunks which were allocated, but which belong to no image */
+    private final ArrayDeque<ByteBuffer> freeChunks;
+
+    /** images by key, in the order of their last use */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /** number of images which were evicted to make room for others */
+    private long evictionCount;
+
+    /** One image in the store */
+    private static class Entry {
+        /** key of the image */
+        final String key;
+        /** name of the image, for example the name of the uploaded file */
+        final String name;
+        /** chunks with the bytes of the image */
+        final ByteBuffer[] chunks;
+        /** number of bytes in the image */
+        final long length;
+        /** number of open handles */
+        int refCount;
+        /** whether the image was removed from {@link #entries} */
+        boolean evicted;
+
+        /** Constructor
+         *  @param key key of the image
+         *  @param name name of the image
+         *  @param chunks chunks with the bytes of the image
+         *  @param length number of bytes in the image
+         */
+        Entry(String key, String name, ByteBuffer[] chunks, long length) {
+            this.key    = key;
+            this.name   = name;
+            this.chunks = chunks;
+            this.length = length;
+        } // Constructor
+    } // Entry
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor with a byte budget
+     *  @param budget maximum number of bytes in direct memory, rounded down to a multiple of {@link #CHUNK_SIZE}
+     */
+    public ImageStore(long budget) {
+        maxChunks  = (int) Math.min(budget >>> CHUNK_SHIFT, Integer.MAX_VALUE);
+        usedChunks = 0;
+        freeChunks = new ArrayDeque<ByteBuffer>();
+        entries    = new LinkedHashMap<String, Entry>(64, 0.75f, true); // access order
+        evictionCount = 0L;
+    } // Constructor
+
+    //--------------------------------
+    // Storing and retrieval
+    //--------------------------------
+    /** Copies the bytes of a container which was read into the store.
+     *  An image which was stored with the same key before is replaced.
+     *  @param key unique key of the image, for example the session id and the file name
+     *  @param container a container which was filled by {@link BaseBuffer#readContainer}
+     *  @return an acquired handle for the new image, which must be closed by the caller
+     *  @throws IOException if the image does not fit into the budget,
+     *  since all other images are in use
+     */
+    public Handle put(String key, BaseBuffer container) throws IOException {
+        long length = container.getLength();
+        ByteBuffer[] chunks = reserve((int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT));
+        try {
+            long position = 0L;
+            for (ByteBuffer chunk : chunks) {
+                chunk.clear();
+                int len = (int) Math.min(length - position, CHUNK_SIZE);
+                chunk.put(container.getView(position, len));
+                position += len;
+            } // for chunk
+        } catch (RuntimeException exc) {
+            release(chunks);
+            throw exc;
+        }
+        Entry entry = new Entry(key, container.getImageName(), chunks, length);
+        entry.refCount = 1;
+        Entry old = null;
+        synchronized (this) {
+            old = entries.put(key, entry);
+            if (old != null) {
+                evict(old);
+            }
+        } // synchronized
+        return new Handle(entry);
+    } // put
+
+    /** Acquires a handle for an image, and marks the image as recently used
+     *  @param key key of the image
+     *  @return a handle which must be closed by the caller,
+     *  or null if there is no such image (any more)
+     */
+    public synchronized Handle acquire(String key) {
+        Handle result = null;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.refCount ++;
+            result = new Handle(entry);
+        }
+        return result;
+    } // acquire
+
+    /** Removes an image from the store. Its memory is reused
+     *  as soon as all handles for it are closed.
+     *  @param key key of the image
+     *  @return whether there was such an image
+     */
+    public synchronized boolean remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            evict(entry);
+        }
+        return entry != null;
+    } // remove
+
+    /** Removes all images, and drops the chunks which are not in use,
+     *  for example when the servlet is taken out of service
+     */
+    public synchronized void clear() {
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            iter.remove();
+            evict(entry);
+        } // while iter
+        freeChunks.clear(); // the direct memory is freed by the garbage collector
+    } // clear
+
+    //--------------------------------
+    // Memory management
+    //--------------------------------
+    /** Gets chunks for a new image, and evicts the least recently used images
+     *  which are not in use if necessary
+     *  @param count number of chunks
+     *  @return array of chunks
+     *  @throws IOException if the images in use leave no room for the new image
+     */
+    private synchronized ByteBuffer[] reserve(int count) throws IOException {
+        Iterator<Entry> iter = entries.values().iterator(); // eldest first
+        while (usedChunks + count > maxChunks && iter.hasNext()) {
+            Entry entry = iter.next();
+            if (entry.refCount == 0) {
+                iter.remove();
+                evict(entry);
+                evictionCount ++;
+            }
+        } // while evicting
+        if (usedChunks + count > maxChunks) {
+            throw new IOException("image store is full: " + ((long) count << CHUNK_SHIFT)
+                    + " bytes requested, " + ((long) usedChunks << CHUNK_SHIFT) + " of "
+                    + ((long) maxChunks << CHUNK_SHIFT) + " bytes in use");
+        }
+        ByteBuffer[] result = new ByteBuffer[count];
+        int ichunk = 0;
+        while (ichunk < count) {
+            ByteBuffer chunk = freeChunks.pollLast(); // most recently freed, probably still in the CPU caches
+            result[ichunk ++] = chunk != null ? chunk : ByteBuffer.allocateDirect(CHUNK_SIZE);
+        } // while ichunk
+        usedChunks += count;
+        return result;
+    } // reserve
+
+    /** Returns the chunks of an image to the free list
+     *  @param chunks chunks which are no longer used
+     */
+    private synchronized void release(ByteBuffer[] chunks) {
+        for (ByteBuffer chunk : chunks) {
+            freeChunks.addLast(chunk);
+        } // for chunk
+        usedChunks -= chunks.length;
+    } // release
+
+    /** Marks an image which was removed from {@link #entries} as evicted,
+     *  and releases its chunks if it is not in use
+     *  @param entry the image
+     */
+    private synchronized void evict(Entry entry) {
+        entry.evicted = true;
+        if (entry.refCount == 0) {
+            release(entry.chunks);
+        }
+    } // evict
+
+    /** Closes a handle
+     *  @param entry the image of the handle
+     */
+    private synchronized void close(Entry entry) {
+        entry.refCount --;
+        if (entry.refCount == 0 && entry.evicted) {
+            release(entry.chunks);
+        }
+    } // close
+
+    //--------------------------------
+    // Statistics
+    //--------------------------------
+    /** Gets the byte budget
+     *  @return maximum number of bytes
+     */
+    public long getBudget() {
+        return (long) maxChunks << CHUNK_SHIFT;
+    } // getBudget
+
+    /** Gets the number of bytes which are used by images
+     *  @return multiple of {@link #CHUNK_SIZE}
+     */
+    public synchronized long getUsedBytes() {
+        return (long) usedChunks << CHUNK_SHIFT;
+    } // getUsedBytes
+
+    /** Gets the number of images in the store
+     *  @return number of images which can be acquired
+     */
+    public synchronized int getImageCount() {
+        return entries.size();
+    } // getImageCount
+
+    /** Gets the number of images which were evicted to make room for others
+     *  @return number of evictions since the creation of the store
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    } // getEvictionCount
+
+    //--------------------------------
+    // Handles
+    //--------------------------------
+    /** Reference to an image in the store.
+     *  The image's memory is not reused before the handle is closed.
+     */
+    public class Handle implements AutoCloseable {
+        /** the image */
+        private final Entry entry;
+
+        /** whether {@link #close} was called */
+        private boolean closed;
+
+        /** Constructor
+         *  @param entry the image, whose reference count was already incremented
+         */
+        private Handle(Entry entry) {
+            this.entry  = entry;
+            this.closed = false;
+        } // Constructor
+
+        /** Gets the key of the image
+         *  @return key which was used in {@link ImageStore#put}
+         */
+        public String getKey() {
+            return entry.key;
+        } // getKey
+
+        /** Gets the name of the image
+         *  @return the image name of the container which was stored
+         */
+        public String getName() {
+            return entry.name;
+        } // getName
+
+        /** Gets the length of the image
+         *  @return number of bytes
+         */
+        public long getLength() {
+            return entry.length;
+        } // getLength
+
+        /** Creates a read-only container for the image, without copying its bytes.
+         *  The container has the decoded (linear) image, and the code "base".
+         *  It must not be used after the handle was closed.
+         *  @return a new container
+         */
+        public BaseBuffer openContainer() {
+            if (closed) {
+                throw new IllegalStateException("handle for image " + entry.key + " is closed");
+            }
+            BaseBuffer result = new BaseBuffer();
+            result.initialize();
+            result.openSegments(entry.chunks, CHUNK_SHIFT, entry.length);
+            result.setImageName(entry.name);
+            return result;
+        } // openContainer
+
+        /** Closes the handle; further calls have no effect
+         */
+        public void close() {
+            if (! closed) {
+                closed = true;
+                ImageStore.this.close(entry);
+            }
+        } // close
+    } // Handle
+
+} // ImageStore
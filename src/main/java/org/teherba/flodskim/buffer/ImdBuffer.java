@@ -0,0 +1,371 @@
+/*  Class for a buffer for the ImageDisk (IMD) container format
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: sectors in the order of the file, as in DskBuffer
+    2026-10-16: Flight Recorder events
+    2026-10-16: Metrics
+    2026-10-16, Georg Fischer
+
+    c.f. http://dunfield.classiccmp.org/img/index.htm
+    and http://simonowen.com/samdisk/formats/
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.buffer;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.buffer.ContainerEvents;
+import  java.io.FileInputStream;
+import  java.io.IOException;
+import  java.util.Arrays;
+import  java.util.BitSet;
+import  java.util.HashMap;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Class for a byte buffer for the ImageDisk (IMD) container format
+ *  written by Dave Dunfield's <em>ImageDisk</em>.
+ *  The file starts with an ASCII header line and a comment, terminated by 0x1a.
+ *  Each track follows with a header (mode, cylinder, head, number of sectors,
+ *  sector size code), the sector numbering map, optional cylinder and head maps,
+ *  an optional table of sector sizes, and one data record per sector.
+ *  A data record is either unavailable (type 0), normal (odd types)
+ *  or compressed to a single fill byte (even types).
+ *  <p>
+ *  The container is decoded in a single sequential pass.
+ *  As in {@link DskBuffer}, the sectors are concatenated in the order of the file,
+ *  and the sector numbering map is kept in an index for {@link #getSectorPosition}.
+ *  Compressed sectors are only expanded when their range is accessed.
+ *  @author Dr. Georg Fischer
+ */
+public class ImdBuffer extends BaseBuffer {
+    public final static String CVSID = "@(#) $Id: BaseBuffer.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** whether to write debugging output (iff &gt; 0) */
+    protected final static int debug = 0;
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** end of the comment header */
+    private static final int COMMENT_END = 0x1a;
+
+    //--------------------------------
+    // Constructor
+    //--------------------------------
+    /** Constructor with no arguments, no heavy-weight operations.
+     */
+    public ImdBuffer() {
+        super();
+        log = LogManager.getLogger(ImdBuffer.class.getName());
+        setCode("imd");
+        setDescription("ImageDisk Image");
+    } // Constructor(0)
+
+    /** Initializes the buffer
+     */
+    public void initialize() {
+        super.initialize();
+        comment     = "";
+        sectorCount = 0;
+        fillCount   = 0;
+        sectorStart = new int[64];
+        fillStart   = new int[64];
+        fillLength  = new int[64];
+        fillValue   = new byte[64];
+        sectorIndex = new HashMap<Integer, Integer>(256);
+        expanded    = new BitSet();
+    } // initialize
+
+    /** Sets the access mode for the container file.
+     *  The IMD container must be decoded sequentially, therefore it is always read as a stream.
+     *  @param accessMode ignored
+     */
+    public void setAccessMode(int accessMode) {
+        super.setAccessMode(ACCESS_READ);
+    } // setAccessMode
+
+    /** comment from the header of the container */
+    private String comment;
+
+    /** Gets the comment from the header of the container
+     *  @return header line and comment, without the terminating 0x1a
+     */
+    public String getComment() {
+        return comment;
+    } // getComment
+
+    //-----------------------
+    // Sector index
+    //-----------------------
+    /** number of sectors in the index */
+    private int sectorCount;
+
+    /** position of each sector in the buffer */
+    private int[] sectorStart;
+
+    /** maps (track, head, sector id) to the number of the sector in the index */
+    private HashMap<Integer, Integer> sectorIndex;
+
+    /** number of compressed sectors */
+    private int fillCount;
+
+    /** position of each compressed sector in the buffer, ascending since the sectors are in the order of the file */
+    private int[] fillStart;
+
+    /** length of each compressed sector */
+    private int[] fillLength;
+
+    /** fill byte of each compressed sector */
+    private byte[] fillValue;
+
+    /** compressed sectors which were already expanded */
+    private BitSet expanded;
+
+    /** Opens some named (ordinary) input or output file.
+     *  A container file is always read as a stream.
+     *  @param ifile 0 for source file, 1 for result file
+     *  @param fileName name of the (ordinary) file to be opened,
+     *  or null or "-" for STDIN (source) or STDOUT (result)
+     *  @return whether the operation was successful
+     */
+    public boolean openFile(int ifile, String fileName) {
+        boolean result = true;
+        if (ifile == 0 && fileName != null && ! fileName.equals("-")) {
+            ContainerEvents.Open event = new ContainerEvents.Open();
+            event.begin();
+            try {
+                openStream(new FileInputStream(fileName));
+                setImageName(fileName);
+            } catch (Exception exc) {
+                log.error(exc.getMessage(), exc);
+                result = false;
+            }
+            commitOpen(event, fileName, result);
+        } else {
+            result = super.openFile(ifile, fileName);
+        }
+        return result;
+    } // openFile
+
+    /** Appends a sector to the index
+     *  @param track cylinder number
+     *  @param head head number
+     *  @param sectorId sector identifier from the sector numbering map
+     *  @param start position of the sector in the buffer
+     */
+    private void addSector(int track, int head, int sectorId, int start) {
+        if (sectorCount >= sectorStart.length) {
+            sectorStart = Arrays.copyOf(sectorStart, sectorCount * 2);
+        }
+        sectorStart[sectorCount] = start;
+        sectorIndex.put((track << 16) | (head << 8) | sectorId, sectorCount);
+        sectorCount ++;
+    } // addSector
+
+    /** Appends a compressed sector to the list of sectors to be expanded
+     *  @param start position of the sector in the buffer
+     *  @param length length of the sector
+     *  @param value fill byte
+     */
+    private void addFill(int start, int length, byte value) {
+        if (fillCount >= fillStart.length) {
+            int newSize = fillCount * 2;
+            fillStart  = Arrays.copyOf(fillStart , newSize);
+            fillLength = Arrays.copyOf(fillLength, newSize);
+            fillValue  = Arrays.copyOf(fillValue , newSize);
+        }
+        fillStart [fillCount] = start;
+        fillLength[fillCount] = length;
+        fillValue [fillCount] = value;
+        fillCount ++;
+    } // addFill
+
+    /** Gets the position of a sector in the container
+     *  @param track cylinder number, starting at 0
+     *  @param head head number, starting at 0
+     *  @param sectorId sector identifier from the sector numbering map (mostly starting at 1)
+     *  @return position of the first byte of the sector in the container, or -1 if there is no such sector
+     */
+    public long getSectorPosition(int track, int head, int sectorId) {
+        Integer isect = sectorIndex.get((track << 16) | (head << 8) | (sectorId & 0xff));
+        return isect == null ? -1L : (long) sectorStart[isect];
+    } // getSectorPosition
+
+    /** Ensures that all compressed sectors overlapping a range of the container are expanded.
+     *  @param position position of the first byte
+     *  @param length number of bytes
+     */
+    protected void loadRange(long position, int length) {
+        if (fillCount > 0 && length > 0) {
+            expandSectors((int) position, (int) position + length);
+        }
+    } // loadRange
+
+    /** Expands all compressed sectors overlapping a range of the container which were not expanded before
+     *  @param start position of the first byte
+     *  @param end position behind the last byte
+     */
+    private synchronized void expandSectors(int start, int end) {
+        int ifill = Arrays.binarySearch(fillStart, 0, fillCount, start);
+        if (ifill < 0) { // not at the start of a compressed sector
+            ifill = Math.max(- ifill - 2, 0);
+        }
+        while (ifill < fillCount && fillStart[ifill] < end) {
+            if (! expanded.get(ifill) && fillStart[ifill] + fillLength[ifill] > start) {
+                fillBytes(fillStart[ifill], fillLength[ifill], fillValue[ifill]);
+                expanded.set(ifill);
+            }
+            ifill ++;
+        } // while ifill
+    } // expandSectors
+
+    //-----------------------
+    // Container structure
+    //-----------------------
+    /** Reads the next byte of the container file
+     *  @return the byte (0..255)
+     *  @throws IOException at EOF
+     */
+    private int readByte() throws IOException {
+        int result = byteReader.read();
+        if (result < 0) {
+            throw new IOException("unexpected EOF at position " + filePos);
+        }
+        filePos ++;
+        return result;
+    } // readByte
+
+    /** Reads a series of bytes from the container file
+     *  @param dest destination array
+     *  @param length number of bytes to be read
+     *  @throws IOException at EOF
+     */
+    private void readBytes(byte[] dest, int length) throws IOException {
+        int ipos = 0;
+        while (ipos < length) {
+            dest[ipos ++] = (byte) readByte();
+        } // while ipos
+    } // readBytes
+
+    /** Fills the buffer from a disk image container file.
+     *  @param informLevel amount if diagnostic output: 0 = none, 1 = minimal, 2 = medium, 3 = full
+     */
+    public void readContainer(int informLevel) {
+        ContainerEvents.Read event = new ContainerEvents.Read();
+        event.begin();
+        long startTime = System.nanoTime();
+        filePos = 0;
+        int pos = 0; // position behind the last track in the buffer
+        try {
+            StringBuffer header = new StringBuffer(128);
+            int ch = readByte();
+            while (ch != COMMENT_END) {
+                header.append((char) ch);
+                ch = readByte();
+            } // while comment
+            comment = header.toString();
+            if (informLevel >= 1) { // minimal: header and comment
+                charWriter.print(comment.replaceAll("\r", ""));
+                if (! comment.endsWith("\n")) {
+                    charWriter.println();
+                }
+            } // informLevel >= 1
+            byte[] numbering = new byte[256];
+            byte[] cylinders = new byte[256];
+            int [] sizes     = new int [256];
+            int [] sectorPos = new int [256];
+            int itrack = 0;
+            int mode = byteReader.read(); // -1 at EOF
+            while (mode >= 0) {
+                ContainerEvents.TrackDecode trackEvent = new ContainerEvents.TrackDecode();
+                trackEvent.begin();
+                long trackPos = filePos;
+                filePos ++;
+                int track    = readByte();
+                int head     = readByte();
+                int sectNo   = readByte();
+                int sizeCode = readByte();
+                readBytes(numbering, sectNo);
+                if ((head & 0x80) != 0) { // sector cylinder map
+                    readBytes(cylinders, sectNo);
+                }
+                if ((head & 0x40) != 0) { // sector head map - skip it
+                    readBytes(cylinders, sectNo);
+                }
+                head &= 0x0f;
+                int isect = 0;
+                while (isect < sectNo) {
+                    if (sizeCode == 0xff) { // sector size table
+                        sizes[isect] = readByte() | (readByte() << 8);
+                    } else {
+                        sizes[isect] = 128 << Math.min(sizeCode, 6);
+                    }
+                    sectorPos[isect] = pos;
+                    addSector(track, head, numbering[isect] & 0xff, pos);
+                    pos += sizes[isect];
+                    isect ++;
+                } // while isect
+                if (track > getMaxCylinder()) {
+                    setMaxCylinder(track);
+                }
+                if (head > getMaxHead()) {
+                    setMaxHead(head);
+                }
+                if (sectNo > getMaxSector()) {
+                    setMaxSector(sectNo);
+                }
+                if (sectNo > 0) {
+                    setSectorSize(sizes[0]);
+                }
+                getMetrics().addTrack(sectNo);
+                if (informLevel >= 2) { // medium
+                    charWriter.println("track " + track
+                            + ", head " + head + ": "
+                            + sectNo + " sectors of " + sizes[0] + " bytes"
+                            + (informLevel >= 3 ? ", mode " + mode : "")
+                            );
+                } // informLevel >= 2
+                isect = 0;
+                while (isect < sectNo) { // data records in the order of the file
+                    int type = readByte();
+                    if (false) {
+                    } else if (type == 0) { // data unavailable
+                    } else if ((type & 1) == 1) { // normal data
+                        if (readStream(sectorPos[isect], sizes[isect]) < sizes[isect]) {
+                            throw new IOException("unexpected EOF at position " + filePos);
+                        }
+                    } else { // compressed: all bytes have the same value
+                        byte value = (byte) readByte();
+                        if (value != 0) { // chunks are already zeroed
+                            addFill(sectorPos[isect], sizes[isect], value);
+                        }
+                    }
+                    isect ++;
+                } // while isect
+                commitTrack(trackEvent, itrack ++, sectNo, filePos - trackPos);
+                mode = byteReader.read();
+            } // while tracks
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            getMetrics().addError();
+        }
+        setStreamLength(pos);
+        expanded.clear();
+        setPosition(0);
+        getMetrics().addContainerRead(filePos, System.nanoTime() - startTime);
+        commitRead(event, filePos);
+    } // readContainer
+
+} // ImdBuffer
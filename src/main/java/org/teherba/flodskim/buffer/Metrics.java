@@ -0,0 +1,344 @@
+/*  Counters and latency histograms for the processing of disk images
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.buffer;
+import  org.teherba.flodskim.buffer.MetricsMBean;
+import  java.lang.management.ManagementFactory;
+import  java.util.concurrent.ConcurrentHashMap;
+import  java.util.concurrent.atomic.LongAdder;
+import  javax.management.ObjectName;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Counters and latency histograms for one buffer code (type "Buffer")
+ *  or one file system code (type "System").
+ *  There is one shared instance per type and code, which is registered
+ *  in the platform MBean server under the name
+ *  <code>org.teherba.flodskim:type=Buffer,code=dsk</code> (for example)
+ *  when it is first used. All counters are {@link LongAdder}s, such that
+ *  the threads of a batch can update them without contention.
+ *  @author Dr. Georg Fischer
+ */
+public class Metrics implements MetricsMBean {
+    public final static String CVSID = "@(#) $Id: Metrics.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** domain of the MBean names */
+    public static final String DOMAIN = "org.teherba.flodskim";
+
+    /** type of the metrics for container buffers */
+    public static final String TYPE_BUFFER = "Buffer";
+
+    /** type of the metrics for file systems */
+    public static final String TYPE_SYSTEM = "System";
+
+    /** shared instances, indexed by type and code */
+    private static final ConcurrentHashMap<String, Metrics> instances = new ConcurrentHashMap<String, Metrics>();
+
+    /** code of the buffer or system */
+    private final String code;
+
+    /** counters */
+    private final LongAdder bytesRead        = new LongAdder();
+    private final LongAdder tracksDecoded    = new LongAdder();
+    private final LongAdder sectorsDecoded   = new LongAdder();
+    private final LongAdder blockReads       = new LongAdder();
+    private final LongAdder directoryEntries = new LongAdder();
+    private final LongAdder filesExtracted   = new LongAdder();
+    private final LongAdder bytesExtracted   = new LongAdder();
+    private final LongAdder errors           = new LongAdder();
+
+    /** latency histograms */
+    private final Histogram readLatency      = new Histogram();
+    private final Histogram directoryLatency = new Histogram();
+    private final Histogram extractLatency   = new Histogram();
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor
+     *  @param code code of the buffer or system
+     */
+    private Metrics(String code) {
+        this.code = code;
+    } // Constructor
+
+    /** Gets the shared instance for a buffer or system code,
+     *  and registers it as an MBean when it is created
+     *  @param type {@link #TYPE_BUFFER} or {@link #TYPE_SYSTEM}
+     *  @param code code of the buffer or system, for example "dsk" or "ta-vs"
+     *  @return the metrics for this code
+     */
+    public static Metrics getInstance(String type, String code) {
+        Metrics result = instances.get(type + ":" + code);
+        if (result == null) {
+            result = instances.computeIfAbsent(type + ":" + code, key -> register(type, new Metrics(code)));
+        }
+        return result;
+    } // getInstance
+
+    /** Registers an instance in the platform MBean server.
+     *  Failures (for example in a restricted environment) are logged,
+     *  and the metrics are collected anyway.
+     *  @param type {@link #TYPE_BUFFER} or {@link #TYPE_SYSTEM}
+     *  @param metrics instance to be registered
+     *  @return <em>metrics</em>
+     */
+    private static Metrics register(String type, Metrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics
+                    , new ObjectName(DOMAIN + ":type=" + type + ",code=" + metrics.code));
+        } catch (Exception exc) {
+            Logger log = LogManager.getLogger(Metrics.class.getName());
+            log.error(exc.getMessage(), exc);
+        }
+        return metrics;
+    } // register
+
+    //--------------------------
+    // Recording
+    //--------------------------
+    /** Records a container which was read
+     *  @param bytes number of bytes read from the file or stream
+     *  @param nanos duration of <code>readContainer</code>
+     */
+    public void addContainerRead(long bytes, long nanos) {
+        bytesRead.add(bytes);
+        readLatency.record(nanos);
+    } // addContainerRead
+
+    /** Records bytes which were read on demand, after <code>readContainer</code>
+     *  @param bytes number of bytes read from the file
+     */
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    } // addBytesRead
+
+    /** Records a decoded track
+     *  @param sectors number of sectors in the track
+     */
+    public void addTrack(int sectors) {
+        tracksDecoded.increment();
+        sectorsDecoded.add(sectors);
+    } // addTrack
+
+    /** Records a call of <code>getBlock</code> or <code>getBlockViews</code>
+     */
+    public void addBlockRead() {
+        blockReads.increment();
+    } // addBlockRead
+
+    /** Records a directory traversal
+     *  @param entries number of entries which were parsed
+     *  @param nanos duration of the traversal
+     */
+    public void addDirectoryRead(int entries, long nanos) {
+        directoryEntries.add(entries);
+        directoryLatency.record(nanos);
+    } // addDirectoryRead
+
+    /** Records a file which was copied or extracted
+     *  @param bytes number of bytes written
+     *  @param nanos duration of the extraction
+     */
+    public void addFileExtracted(long bytes, long nanos) {
+        filesExtracted.increment();
+        bytesExtracted.add(bytes);
+        extractLatency.record(nanos);
+    } // addFileExtracted
+
+    /** Records an error
+     */
+    public void addError() {
+        errors.increment();
+    } // addError
+
+    //--------------------------
+    // MBean attributes
+    //--------------------------
+    public String getCode() {
+        return code;
+    } // getCode
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    } // getBytesRead
+
+    public long getTracksDecoded() {
+        return tracksDecoded.sum();
+    } // getTracksDecoded
+
+    public long getSectorsDecoded() {
+        return sectorsDecoded.sum();
+    } // getSectorsDecoded
+
+    public long getBlockReads() {
+        return blockReads.sum();
+    } // getBlockReads
+
+    public long getDirectoryEntries() {
+        return directoryEntries.sum();
+    } // getDirectoryEntries
+
+    public long getFilesExtracted() {
+        return filesExtracted.sum();
+    } // getFilesExtracted
+
+    public long getBytesExtracted() {
+        return bytesExtracted.sum();
+    } // getBytesExtracted
+
+    public long getErrors() {
+        return errors.sum();
+    } // getErrors
+
+    public long getContainerReads() {
+        return readLatency.getCount();
+    } // getContainerReads
+
+    public long getReadLatency50() {
+        return readLatency.getPercentile(0.50);
+    } // getReadLatency50
+
+    public long getReadLatency99() {
+        return readLatency.getPercentile(0.99);
+    } // getReadLatency99
+
+    public long[] getReadLatencyHistogram() {
+        return readLatency.getCounts();
+    } // getReadLatencyHistogram
+
+    public long getDirectoryReads() {
+        return directoryLatency.getCount();
+    } // getDirectoryReads
+
+    public long getDirectoryLatency50() {
+        return directoryLatency.getPercentile(0.50);
+    } // getDirectoryLatency50
+
+    public long getDirectoryLatency99() {
+        return directoryLatency.getPercentile(0.99);
+    } // getDirectoryLatency99
+
+    public long[] getDirectoryLatencyHistogram() {
+        return directoryLatency.getCounts();
+    } // getDirectoryLatencyHistogram
+
+    public long getExtractLatency50() {
+        return extractLatency.getPercentile(0.50);
+    } // getExtractLatency50
+
+    public long getExtractLatency99() {
+        return extractLatency.getPercentile(0.99);
+    } // getExtractLatency99
+
+    public long[] getExtractLatencyHistogram() {
+        return extractLatency.getCounts();
+    } // getExtractLatencyHistogram
+
+    public void reset() {
+        bytesRead       .reset();
+        tracksDecoded   .reset();
+        sectorsDecoded  .reset();
+        blockReads      .reset();
+        directoryEntries.reset();
+        filesExtracted  .reset();
+        bytesExtracted  .reset();
+        errors          .reset();
+        readLatency     .reset();
+        directoryLatency.reset();
+        extractLatency  .reset();
+    } // reset
+
+    /** Histogram with buckets for the powers of 2
+     */
+    private static class Histogram {
+        /** bucket i counts the values from 2<sup>i</sup> to 2<sup>i+1</sup> - 1 (0 in bucket 0) */
+        private final LongAdder[] buckets = new LongAdder[64];
+
+        /** Constructor */
+        Histogram() {
+            int ibuck = 0;
+            while (ibuck < buckets.length) {
+                buckets[ibuck ++] = new LongAdder();
+            } // while ibuck
+        } // Constructor
+
+        /** Adds a value
+         *  @param value non-negative value, for example a duration in ns
+         */
+        void record(long value) {
+            buckets[value <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(value)].increment();
+        } // record
+
+        /** Gets the counts of all buckets
+         *  @return array of 64 counts
+         */
+        long[] getCounts() {
+            long[] result = new long[buckets.length];
+            int ibuck = 0;
+            while (ibuck < buckets.length) {
+                result[ibuck] = buckets[ibuck].sum();
+                ibuck ++;
+            } // while ibuck
+            return result;
+        } // getCounts
+
+        /** Gets the number of values
+         *  @return sum of all buckets
+         */
+        long getCount() {
+            long result = 0;
+            for (LongAdder bucket : buckets) {
+                result += bucket.sum();
+            } // for bucket
+            return result;
+        } // getCount
+
+        /** Gets an approximate percentile
+         *  @param fraction for example 0.99 for the 99th percentile
+         *  @return upper bound of the bucket which contains the percentile, or 0 if there are no values
+         */
+        long getPercentile(double fraction) {
+            long[] counts = getCounts();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            } // for count
+            long result = 0;
+            if (total > 0) {
+                long rank = (long) Math.ceil(fraction * total);
+                long sum = 0;
+                int ibuck = 0;
+                while (sum < rank && ibuck < counts.length) {
+                    sum += counts[ibuck ++];
+                } // while ibuck
+                result = ibuck >= 63 ? Long.MAX_VALUE : (1L << ibuck) - 1;
+            }
+            return result;
+        } // getPercentile
+
+        /** Resets all buckets to zero */
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            } // for bucket
+        } // reset
+    } // Histogram
+
+} // Metrics
@@ -0,0 +1,134 @@
+/*  Management interface of the processing metrics
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.buffer;
+
+/** Standard MBean interface of {@link Metrics}: the counters and latency histograms
+ *  of one buffer or system code, as shown by <code>jconsole</code> or any JMX client.
+ *  Latencies are given in nanoseconds; the histograms have 64 buckets,
+ *  where bucket <em>i</em> counts the latencies from 2<sup>i</sup> to 2<sup>i+1</sup> - 1 ns.
+ *  @author Dr. Georg Fischer
+ */
+public interface MetricsMBean {
+
+    /** Gets the code of the buffer or system
+     *  @return for example "dsk" or "ta-vs"
+     */
+    public String getCode();
+
+    /** Gets the number of bytes read from container files and streams
+     *  @return number of bytes
+     */
+    public long getBytesRead();
+
+    /** Gets the number of tracks decoded from structured containers
+     *  @return number of tracks
+     */
+    public long getTracksDecoded();
+
+    /** Gets the number of sectors decoded from structured containers
+     *  @return number of sectors
+     */
+    public long getSectorsDecoded();
+
+    /** Gets the number of blocks which were read with <code>getBlock</code> or <code>getBlockViews</code>
+     *  @return number of calls
+     */
+    public long getBlockReads();
+
+    /** Gets the number of directory entries which were parsed
+     *  @return number of entries
+     */
+    public long getDirectoryEntries();
+
+    /** Gets the number of files which were copied or extracted
+     *  @return number of files
+     */
+    public long getFilesExtracted();
+
+    /** Gets the number of bytes which were copied or extracted
+     *  @return number of bytes
+     */
+    public long getBytesExtracted();
+
+    /** Gets the number of errors
+     *  @return number of errors which were logged
+     */
+    public long getErrors();
+
+    /** Gets the number of containers which were read
+     *  @return number of calls of <code>readContainer</code>
+     */
+    public long getContainerReads();
+
+    /** Gets the median latency of <code>readContainer</code>
+     *  @return upper bound of the histogram bucket in ns
+     */
+    public long getReadLatency50();
+
+    /** Gets the 99th percentile of the latency of <code>readContainer</code>
+     *  @return upper bound of the histogram bucket in ns
+     */
+    public long getReadLatency99();
+
+    /** Gets the histogram of the latency of <code>readContainer</code>
+     *  @return counts of the 64 buckets
+     */
+    public long[] getReadLatencyHistogram();
+
+    /** Gets the number of complete directory traversals
+     *  @return number of calls of <code>getDirectoryEntries</code>
+     */
+    public long getDirectoryReads();
+
+    /** Gets the median latency of a directory traversal
+     *  @return upper bound of the histogram bucket in ns
+     */
+    public long getDirectoryLatency50();
+
+    /** Gets the 99th percentile of the latency of a directory traversal
+     *  @return upper bound of the histogram bucket in ns
+     */
+    public long getDirectoryLatency99();
+
+    /** Gets the histogram of the latency of a directory traversal
+     *  @return counts of the 64 buckets
+     */
+    public long[] getDirectoryLatencyHistogram();
+
+    /** Gets the median latency of the extraction of a file
+     *  @return upper bound of the histogram bucket in ns
+     */
+    public long getExtractLatency50();
+
+    /** Gets the 99th percentile of the latency of the extraction of a file
+     *  @return upper bound of the histogram bucket in ns
+     */
+    public long getExtractLatency99();
+
+    /** Gets the histogram of the latency of the extraction of a file
+     *  @return counts of the 64 buckets
+     */
+    public long[] getExtractLatencyHistogram();
+
+    /** Resets all counters and histograms to zero
+     */
+    public void reset();
+
+} // MetricsMBean
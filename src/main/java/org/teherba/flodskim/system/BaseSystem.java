@@ -1,10 +1,30 @@
 /*  Class for a file system structure in a buffer for a disk image container
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: getDirectoryEntries and printDirectory with one DirectoryCursor
+    2026-10-16: copyFile and extractFile stop at the file size
+    2026-10-16: writeBlock returns the size behind the cut view
+    2026-10-16: writeZip with one ZIP entry per file
+    2026-10-16: extractFile and openFile with all extents of a file
+    2026-10-16: copyFiles in parallel only per target name; close channels on errors
+    2026-10-16: long file sizes
+    2026-10-16: getSectorPosition
+    2026-10-16: writeZip
+    2026-10-16: Flight Recorder events
+    2026-10-16: Metrics
+    2026-10-16: shared SystemCharset instead of charTable
+    2026-10-16: getDirectoryCursor
+    2026-10-16: getSnapshot, extractFile, openFile
+    2026-10-16: copyFile with primitive block accessors
+    2026-10-16: parallel copyFiles; positional writes
+    2026-10-16: setWriter
+    2026-10-16: getDirectoryEntries; printDirectory and copyFiles from a list
+    2026-10-16: block views; copyFile with gathering writes
+    2026-10-16: long dirOffset; getBlock via BaseBuffer.copyBytes
     2017-05-29: javadoc 1.8
     2013-11-07, Georg Fischer: copied from BaseBuffer
 
-    Data can currently only be read from a file into a buffer,
-    but not written back to a file.
+    The file system is read from the container. Changes are made in the
+    container (BaseBuffer.putBytes), which writes the changed sectors back.
 */
 /*
  * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
@@ -23,10 +43,32 @@
  */
 package org.teherba.flodskim.system;
 import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.buffer.Metrics;
 import  org.teherba.flodskim.system.DirectoryEntry;
+import  org.teherba.flodskim.system.SystemEvents;
 import  java.io.BufferedOutputStream;
+import  java.io.FileNotFoundException;
 import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.InputStream;
+import  java.io.OutputStreamWriter;
+import  java.io.PrintWriter;
+import  java.io.SequenceInputStream;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.Channels;
+import  java.nio.channels.FileChannel;
+import  java.nio.channels.GatheringByteChannel;
+import  java.nio.channels.WritableByteChannel;
+import  java.util.ArrayList;
+import  java.util.HashMap;
 import  java.util.Iterator;
+import  java.util.LinkedHashMap;
+import  java.util.Vector;
+import  java.util.List;
+import  java.util.concurrent.ForkJoinPool;
+import  java.util.concurrent.ForkJoinTask;
+import  java.util.zip.ZipEntry;
+import  java.util.zip.ZipOutputStream;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -72,6 +114,7 @@ public class BaseSystem {
      */
     public void setCode(String code) {
         this.code = code;
+        metrics   = null;
     } // setCode
 
     /** Gets the file system code
@@ -81,6 +124,47 @@ public class BaseSystem {
         return code;
     } // getCode
 
+    /** shared metrics for the code, see {@link #getMetrics} */
+    private Metrics metrics;
+
+    /** Gets the metrics which are shared by all file systems with the same code
+     *  @return counters and latency histograms
+     */
+    public Metrics getMetrics() {
+        if (metrics == null) { // determined lazily since subclasses set their code after this constructor
+            metrics = Metrics.getInstance(Metrics.TYPE_SYSTEM, code);
+        }
+        return metrics;
+    } // getMetrics
+
+    /** Commits an event for <code>fillDirectory</code>, if it is enabled
+     *  @param event event which was begun before the directory was filled
+     */
+    protected void commitFill(SystemEvents.DirectoryFill event) {
+        if (event.shouldCommit()) {
+            event.image  = getContainer().getImageName();
+            event.system = code;
+            event.commit();
+        }
+    } // commitFill
+
+    /** Commits an event for the extraction of a file, if it is enabled
+     *  @param event event which was begun before the file was extracted
+     *  @param diren directory entry for the file
+     *  @param targetFileName name of the file which was written
+     *  @param bytes number of bytes written
+     */
+    protected void commitExtract(SystemEvents.FileExtract event, DirectoryEntry diren, String targetFileName, long bytes) {
+        if (event.shouldCommit()) {
+            event.image  = getContainer().getImageName();
+            event.system = code;
+            event.entry  = diren.getFullName();
+            event.target = targetFileName;
+            event.bytes  = bytes;
+            event.commit();
+        }
+    } // commitExtract
+
     /** description of the file system */
     private String description;
     /** Sets the description of the file system
@@ -108,6 +192,7 @@ public class BaseSystem {
      */
     public void setContainer(BaseBuffer container) {
         this.container = container;
+        this.snapshot  = null;
     } // setContainer
 
     /** Gets the instance for the disk image container
@@ -117,6 +202,43 @@ public class BaseSystem {
         return container;
     } // getContainer
 
+    /** writer for directory listings and progress messages */
+    private PrintWriter writer;
+
+    /** Sets the writer for directory listings and progress messages
+     *  @param writer a PrintWriter, for example for a buffer of one image in a batch
+     */
+    public void setWriter(PrintWriter writer) {
+        this.writer = writer;
+    } // setWriter
+
+    /** Gets the writer for directory listings and progress messages
+     *  @return the writer set by {@link #setWriter}, or by default a writer for STDOUT
+     */
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(System.out), true); // autoflush
+        }
+        return writer;
+    } // getWriter
+
+    /** number of threads for {@link #copyFiles} */
+    private int copyThreads = 1;
+
+    /** Sets the number of threads which copy files concurrently
+     *  @param copyThreads 1 for sequential copying, or more
+     */
+    public void setCopyThreads(int copyThreads) {
+        this.copyThreads = copyThreads;
+    } // setCopyThreads
+
+    /** Gets the number of threads which copy files concurrently
+     *  @return 1 for sequential copying, or more
+     */
+    public int getCopyThreads() {
+        return copyThreads;
+    } // getCopyThreads
+
     /** size of a directory entry (in bytes) */
     private int dirEntrySize;
 
@@ -137,20 +259,22 @@ public class BaseSystem {
     /** number of possible entries in one directory */
     protected int maxDirEntries;
 
-    /** offset of current directory entry relative to start of {@link #directory} */
-    private int dirOffset;
+    /** offset of current directory entry relative to start of {@link #directory},
+     *  or relative to the start of the container for {@link Tar}
+     */
+    private long dirOffset;
 
     /** Sets the offset of the current directory entry
      *  @param dirOffset offset of directory entry relative to start of directory
      */
-    public void setDirOffset(int dirOffset) {
+    public void setDirOffset(long dirOffset) {
         this.dirOffset = dirOffset;
     } // setDirOffset
 
     /** Gets the offset of the current directory entry
      *  @return offset of directory entry relative to start of directory
      */
-    public int getDirOffset() {
+    public long getDirOffset() {
         return dirOffset;
     } // getDirOffset
 
@@ -227,18 +351,28 @@ public class BaseSystem {
     //--------------------------------------
     // Single byte to character translation
     //--------------------------------------
-    /** Table which maps system bytes to Java characters */
-    protected char[] charTable;
+    /** Shared, immutable character set which maps system bytes to Java characters */
+    private SystemCharset charset = SystemCharset.IDENTITY;
+
+    /** Sets the character set of the file system
+     *  @param charset a shared instance, for example {@link Ta_vs#CHARSET}
+     */
+    protected void setCharset(SystemCharset charset) {
+        this.charset = charset;
+    } // setCharset
+
+    /** Gets the character set of the file system, for example in order
+     *  to read the text of an extracted file with an <code>InputStreamReader</code>
+     *  @return a shared, immutable character set
+     */
+    public SystemCharset getCharset() {
+        return charset;
+    } // getCharset
 
     /** Initializes the character table
      */
     protected void initCharTable() {
-        charTable = new char[256];
-        int ichar = 0;
-        while (ichar < 256) {
-            charTable[ichar] = (char) ichar;
-            ichar ++;
-        } // while ichar
+        setCharset(SystemCharset.IDENTITY);
     } // initCharTable
 
     /** Gets a translated string from a byte subarray
@@ -248,15 +382,7 @@ public class BaseSystem {
      *  @return translated string
      */
     public String translate(byte[] buffer, int start, int len) {
-        StringBuffer result = new StringBuffer(len);
-        int pos = start;
-        while (len > 0) {
-            int ch = buffer[pos] & 0xff;
-            result.append(charTable[ch]);
-            len --;
-            pos ++;
-        } // while len
-        return result.toString();
+        return charset.decode(buffer, start, len);
     } // translate
 
     // Directory Access
@@ -275,38 +401,302 @@ public class BaseSystem {
         return null;
     } // nextDirectoryEntry
 
-    /** Prints a directory listing
+    /** Fills the directory, and gets a cursor which reads the entries
+     *  in place, without allocating a {@link DirectoryEntry} per entry
+     *  @return a cursor positioned before the first entry,
+     *  or null if the file system has no raw directory array
      */
-    public void printDirectory() {
+    public DirectoryCursor getDirectoryCursor() {
+        return null;
+    } // getDirectoryCursor
+
+    /** Fills the directory, and retrieves all its entries.
+     *  If the file system has a {@link #getDirectoryCursor cursor},
+     *  one cursor walks over the whole directory;
+     *  otherwise the entries are retrieved with {@link #nextDirectoryEntry}.
+     *  @param withDeleted whether deleted entries should be returned
+     *  @return list of entries in the order of the directory
+     */
+    public List<DirectoryEntry> getDirectoryEntries(boolean withDeleted) {
+        long startTime = System.nanoTime();
+        ArrayList<DirectoryEntry> result = new ArrayList<DirectoryEntry>(64);
         boolean busy = true;
-        fillDirectory();
+        SystemEvents.DirectoryFill fillEvent = new SystemEvents.DirectoryFill();
+        fillEvent.begin();
+        DirectoryCursor cursor = getDirectoryCursor(); // fills the directory
+        if (cursor == null) {
+            fillDirectory();
+        }
+        commitFill(fillEvent);
         while (busy) {
-            DirectoryEntry diren = nextDirectoryEntry(true);
+            SystemEvents.EntryParse event = new SystemEvents.EntryParse();
+            event.begin();
+            DirectoryEntry diren = null;
+            if (cursor != null) {
+                if (cursor.next(withDeleted)) {
+                    diren = cursor.toEntry();
+                }
+            } else {
+                diren = nextDirectoryEntry(withDeleted);
+            }
             if (diren != null) {
-                System.out.println(diren.toString());
+                result.add(diren);
+                commitParse(event, diren);
             } else {
                 busy = false;
             }
         } // while busy
-    } // printDirector
+        getMetrics().addDirectoryRead(result.size(), System.nanoTime() - startTime);
+        return result;
+    } // getDirectoryEntries
+
+    /** Commits an event for a parsed directory entry, if it is enabled
+     *  @param event event which was begun before the entry was parsed
+     *  @param diren the parsed entry
+     */
+    private void commitParse(SystemEvents.EntryParse event, DirectoryEntry diren) {
+        if (event.shouldCommit()) {
+            event.image  = getContainer().getImageName();
+            event.system = code;
+            event.entry  = diren.getFullName();
+            event.bytes  = diren.getFileSize();
+            event.blocks = diren.getBlockCount();
+            event.commit();
+        }
+    } // commitParse
+
+    /** snapshot of the directory, built on demand */
+    private volatile DirectorySnapshot snapshot;
+
+    /** Sets the snapshot of the directory, for example one built from
+     *  the entries in a {@link ParseCache}
+     *  @param snapshot snapshot of the directory in the current container,
+     *  or null if it should be built again
+     */
+    public void setSnapshot(DirectorySnapshot snapshot) {
+        this.snapshot = snapshot;
+    } // setSnapshot
+
+    /** Gets an immutable snapshot of the directory with an index on the file names.
+     *  The snapshot is built (with {@link #fillDirectory} and {@link #nextDirectoryEntry})
+     *  only once per container, and it may be shared by several threads.
+     *  @return snapshot of the directory, including the deleted entries
+     */
+    public DirectorySnapshot getSnapshot() {
+        DirectorySnapshot result = snapshot;
+        if (result == null) {
+            synchronized (this) { // the iteration state is not thread-safe
+                result = snapshot;
+                if (result == null) {
+                    result = new DirectorySnapshot(getDirectoryEntries(true));
+                    snapshot = result;
+                }
+            } // synchronized
+        }
+        return result;
+    } // getSnapshot
+
+    /** Looks up a file in the {@link #getSnapshot snapshot} of the directory
+     *  @param name name of the file, see {@link DirectoryEntry#getFileName}
+     *  @return entries for all extents of the file, sorted by extent number
+     *  @throws FileNotFoundException if there is no such file which is not deleted
+     */
+    public List<DirectoryEntry> lookupFile(String name) throws FileNotFoundException {
+        List<DirectoryEntry> result = getSnapshot().lookup(name, false);
+        if (result == null) {
+            throw new FileNotFoundException("file \"" + name + "\" not found in " + getCode() + " directory");
+        }
+        return result;
+    } // lookupFile
+
+    /** Copies a single file with all its extents into a target file
+     *  @param name name of the file, see {@link DirectoryEntry#getFileName}
+     *  @param targetFileName name of the file to be written
+     *  @return number of bytes written
+     *  @throws IOException if the file is not found, or if the target cannot be written
+     */
+    public long extractFile(String name, String targetFileName) throws IOException {
+        SystemEvents.FileExtract event = new SystemEvents.FileExtract();
+        event.begin();
+        long startTime = System.nanoTime();
+        List<DirectoryEntry> extents = lookupFile(name);
+        long position = 0L; // in the target file
+        FileChannel channel = new FileOutputStream(targetFileName, false).getChannel();
+        try {
+            ByteBuffer[] views = new ByteBuffer[getMaxBlockViews()];
+            Iterator<DirectoryEntry> iter = extents.iterator();
+            while (iter.hasNext()) {
+                DirectoryEntry diren = iter.next();
+                long remainingSize = diren.getFileSize(); // 0 = all blocks completely
+                boolean limited = remainingSize > 0;
+                int blockCount = getFileBlockCount(diren);
+                int iblock = 0;
+                while (iblock < blockCount && (! limited || remainingSize > 0)) {
+                    long previousSize = remainingSize;
+                    remainingSize = writeBlock(channel, position, getFileBlock(diren, iblock), remainingSize, views);
+                    position += previousSize - remainingSize;
+                    iblock ++;
+                } // while blocks
+            } // while extents
+        } finally {
+            channel.close();
+        }
+        getMetrics().addFileExtracted(position, System.nanoTime() - startTime);
+        commitExtract(event, extents.get(0), targetFileName, position);
+        return position;
+    } // extractFile
+
+    /** Opens a single file for reading.
+     *  The stream reads all extents of the file directly from the views
+     *  of the container, and it need not be closed.
+     *  @param name name of the file, see {@link DirectoryEntry#getFileName}
+     *  @return stream with the bytes of the file
+     *  @throws FileNotFoundException if the file is not found
+     */
+    public InputStream openFile(String name) throws FileNotFoundException {
+        List<DirectoryEntry> extents = lookupFile(name);
+        InputStream result = null;
+        if (extents.size() == 1) {
+            result = new EntryInputStream(this, extents.get(0));
+        } else {
+            Vector<InputStream> streams = new Vector<InputStream>(extents.size());
+            Iterator<DirectoryEntry> iter = extents.iterator();
+            while (iter.hasNext()) {
+                streams.add(new EntryInputStream(this, iter.next()));
+            } // while extents
+            result = new SequenceInputStream(streams.elements());
+        }
+        return result;
+    } // openFile
+
+    /** Gets the number of blocks which contain the bytes of a file
+     *  @param diren directory entry for the file
+     *  @return number of blocks in the block list of the entry
+     */
+    protected int getFileBlockCount(DirectoryEntry diren) {
+        return diren.getBlockCount();
+    } // getFileBlockCount
+
+    /** Gets one of the blocks which contain the bytes of a file
+     *  @param diren directory entry for the file
+     *  @param index 0-based index of the block in the file, less than {@link #getFileBlockCount}
+     *  @return block number for {@link #getBlockViews}
+     */
+    protected int getFileBlock(DirectoryEntry diren, int index) {
+        return diren.getBlock(index);
+    } // getFileBlock
+
+    /** Prints a directory listing.
+     *  If the file system has a {@link #getDirectoryCursor cursor},
+     *  the lines are formatted from the raw entries, without a {@link DirectoryEntry} per entry.
+     */
+    public void printDirectory() {
+        long startTime = System.nanoTime();
+        DirectoryCursor cursor = getDirectoryCursor();
+        if (cursor == null) {
+            printDirectory(getDirectoryEntries(true));
+        } else {
+            int count = 0;
+            StringBuffer line = new StringBuffer(128);
+            PrintWriter writer = getWriter();
+            while (cursor.next(true)) {
+                line.setLength(0);
+                cursor.appendListing(line);
+                writer.println(line);
+                count ++;
+            } // while next
+            getMetrics().addDirectoryRead(count, System.nanoTime() - startTime);
+        }
+    } // printDirectory
+
+    /** Prints a directory listing from a list of entries,
+     *  for example from a {@link ParseCache}
+     *  @param entries list of directory entries
+     */
+    public void printDirectory(List<DirectoryEntry> entries) {
+        Iterator<DirectoryEntry> iter = entries.iterator();
+        while (iter.hasNext()) {
+            getWriter().println(iter.next().toString());
+        } // while iter
+    } // printDirectory(List)
 
     /** Copy all files into a target directory
      *  @param path target directory, for example "."
      */
     public void copyFiles(String path) {
-        boolean busy = true;
-        fillDirectory();
-        while (busy) {
-            DirectoryEntry diren = nextDirectoryEntry(false);
-            if (diren != null) {
-                String targetFileName = copyFile(diren, path);
-                System.out.println("\'" + diren.getBaseFileName() +  "\' -> \'" + targetFileName + "\'");
-            } else {
-                busy = false;
-            }
-        } // while busy
+        copyFiles(path, getDirectoryEntries(false));
     } // copyFiles
 
+    /** Copy the files of a list of directory entries into a target directory;
+     *  deleted entries are skipped.
+     *  With more than one {@link #getCopyThreads copy thread}, the files are written
+     *  concurrently from the (shared, read-only) container. Entries with the same
+     *  {@link #getTargetFileName target file} (for example extents 0 and 1 of a CP/M file)
+     *  are copied by the same task in the order of the list, such that the result is the same
+     *  as with sequential copying. The messages are printed in the order of the list anyway.
+     *  @param path target directory, for example "."
+     *  @param entries list of directory entries, for example from a {@link ParseCache}
+     */
+    public void copyFiles(String path, List<DirectoryEntry> entries) {
+        if (copyThreads <= 1) {
+            Iterator<DirectoryEntry> iter = entries.iterator();
+            while (iter.hasNext()) {
+                DirectoryEntry diren = iter.next();
+                if (! diren.isDeleted()) {
+                    String targetFileName = copyFile(diren, path);
+                    getWriter().println("\'" + diren.getBaseFileName() +  "\' -> \'" + targetFileName + "\'");
+                }
+            } // while iter
+        } else {
+            ArrayList<DirectoryEntry> copied = new ArrayList<DirectoryEntry>(entries.size());
+            LinkedHashMap<String, ArrayList<DirectoryEntry>> groups = new LinkedHashMap<String, ArrayList<DirectoryEntry>>(entries.size() * 2);
+            Iterator<DirectoryEntry> iter = entries.iterator();
+            while (iter.hasNext()) {
+                DirectoryEntry diren = iter.next();
+                if (! diren.isDeleted()) {
+                    copied.add(diren);
+                    groups.computeIfAbsent(getTargetFileName(diren, path), name -> new ArrayList<DirectoryEntry>(2)).add(diren);
+                }
+            } // while iter
+            HashMap<DirectoryEntry, ForkJoinTask<?>> tasks = new HashMap<DirectoryEntry, ForkJoinTask<?>>(copied.size() * 2);
+            ForkJoinPool pool = new ForkJoinPool(copyThreads);
+            try {
+                Iterator<ArrayList<DirectoryEntry>> groupIter = groups.values().iterator();
+                while (groupIter.hasNext()) {
+                    ArrayList<DirectoryEntry> group = groupIter.next();
+                    ForkJoinTask<?> task = pool.submit(() -> { // the entries of one target file in a fixed order
+                        Iterator<DirectoryEntry> entryIter = group.iterator();
+                        while (entryIter.hasNext()) {
+                            copyFile(entryIter.next(), path);
+                        } // while entryIter
+                    });
+                    Iterator<DirectoryEntry> entryIter = group.iterator();
+                    while (entryIter.hasNext()) {
+                        tasks.put(entryIter.next(), task);
+                    } // while entryIter
+                } // while groupIter
+                int icopy = 0;
+                while (icopy < copied.size()) {
+                    DirectoryEntry diren = copied.get(icopy);
+                    tasks.get(diren).join();
+                    getWriter().println("\'" + diren.getBaseFileName() +  "\' -> \'" + getTargetFileName(diren, path) + "\'");
+                    icopy ++;
+                } // while icopy
+            } finally {
+                pool.shutdown();
+            }
+        }
+    } // copyFiles(String, List)
+
+    /** Gets the name of the file which {@link #copyFile} writes for a directory entry
+     *  @param diren directory entry for the file to be copied
+     *  @param path target directory, for example "."
+     *  @return target filename
+     */
+    public String getTargetFileName(DirectoryEntry diren, String path) {
+        return path + "/" + diren.getFullName();
+    } // getTargetFileName
+
     /** Copy one file into a target directory.
      *  This is used for {@link Cpm} and similiar file systems.
      *  @param diren directory entry for the file to be copied
@@ -314,28 +704,124 @@ public class BaseSystem {
      *  @return target filename
      */
     public String copyFile(DirectoryEntry diren, String path) {
-        String targetFileName = path + "/" + diren.getBaseFileName();
-        if (diren.getExtension().length() > 0) {
-            targetFileName += "." + diren.getExtension();
-        }
-        if (diren.getExtentNumber() > 1) { // kind of stupid: separate files for higher extent numbers
-            targetFileName += "." + diren.getExtentNumber();
-        }
-        int remainingSize = diren.getFileSize();
+        SystemEvents.FileExtract event = new SystemEvents.FileExtract();
+        event.begin();
+        long startTime = System.nanoTime();
+        String targetFileName = getTargetFileName(diren, path);
+        long remainingSize = diren.getFileSize(); // 0 = all blocks completely
+        boolean limited = remainingSize > 0;
+        long position = 0L; // in the target file
         try {
-            BufferedOutputStream byteWriter = new BufferedOutputStream(new FileOutputStream(targetFileName, false));
-            Iterator<Integer> blockIterator = diren.getBlockIterator();
-            while (blockIterator.hasNext()) {
-                int blockNo = blockIterator.next();
-                remainingSize = writeBlock(byteWriter, blockNo, remainingSize);
-            } // while blocks
-            byteWriter.close();
-        } catch (Exception exc) {
+            FileChannel channel = new FileOutputStream(targetFileName, false).getChannel();
+            try {
+                ByteBuffer[] views = new ByteBuffer[getMaxBlockViews()];
+                int blockCount = diren.getBlockCount();
+                int iblock = 0;
+                while (iblock < blockCount && (! limited || remainingSize > 0)) {
+                    long previousSize = remainingSize;
+                    remainingSize = writeBlock(channel, position, diren.getBlock(iblock), remainingSize, views);
+                    position += previousSize - remainingSize;
+                    iblock ++;
+                } // while blocks
+            } finally {
+                channel.close();
+            }
+            getMetrics().addFileExtracted(position, System.nanoTime() - startTime);
+            commitExtract(event, diren, targetFileName, position);
+        } catch (Exception exc) { // the copy is incomplete, and it is not counted as extracted
             log.error(exc.getMessage(), exc);
+            getMetrics().addError();
         }
         return targetFileName;
     } // copyFile
 
+    /** Writes files into a ZIP archive, block by block from the views of the container,
+     *  without any intermediate files. Only the views of one block are held at a time,
+     *  such that the memory does not depend on the number or size of the files.
+     *  All extents of a file (with the same {@link DirectoryEntry#getFileName file name})
+     *  are concatenated in the order of their extent numbers into one ZIP entry.
+     *  Deleted entries and repeated extents are skipped;
+     *  names ending with "/" (for example in {@link Tar}) become directory entries.
+     *  @param zip open ZIP stream, for example on a servlet response; it is neither finished nor closed
+     *  @param entries list of directory entries, for example from {@link #getDirectoryEntries}
+     *  @return number of ZIP entries written
+     *  @throws IOException if the ZIP stream cannot be written
+     */
+    public int writeZip(ZipOutputStream zip, List<DirectoryEntry> entries) throws IOException {
+        int result = 0;
+        WritableByteChannel channel = Channels.newChannel(zip);
+        ByteBuffer[] views = new ByteBuffer[getMaxBlockViews()];
+        // group the extents by file name, in the order of the first extents
+        LinkedHashMap<String, ArrayList<DirectoryEntry>> files = new LinkedHashMap<String, ArrayList<DirectoryEntry>>(entries.size() * 2);
+        Iterator<DirectoryEntry> iter = entries.iterator();
+        while (iter.hasNext()) {
+            DirectoryEntry diren = iter.next();
+            String name = diren.getFileName();
+            while (name.startsWith("/")) { // ZIP entry names are relative
+                name = name.substring(1);
+            } // while leading slash
+            if (! diren.isDeleted() && name.length() > 0) {
+                ArrayList<DirectoryEntry> extents = files.get(name);
+                if (extents == null) {
+                    extents = new ArrayList<DirectoryEntry>(1);
+                    files.put(name, extents);
+                }
+                int iext = 0;
+                while (iext < extents.size() && extents.get(iext).getExtentNumber() < diren.getExtentNumber()) {
+                    iext ++;
+                } // while iext
+                if (iext < extents.size() && extents.get(iext).getExtentNumber() == diren.getExtentNumber()) {
+                    log.error("duplicate file \"" + diren.getFullName() + "\" is not written to the ZIP archive");
+                } else {
+                    extents.add(iext, diren); // sorted by extent number
+                }
+            }
+        } // while iter
+
+        Iterator<String> fiter = files.keySet().iterator();
+        while (fiter.hasNext()) {
+            String name = fiter.next();
+            List<DirectoryEntry> extents = files.get(name);
+            SystemEvents.FileExtract event = new SystemEvents.FileExtract();
+            event.begin();
+            long startTime = System.nanoTime();
+            long position = 0L; // in the ZIP entry
+            zip.putNextEntry(new ZipEntry(name));
+            if (! name.endsWith("/")) { // not a directory
+                Iterator<DirectoryEntry> eiter = extents.iterator();
+                while (eiter.hasNext()) {
+                    DirectoryEntry diren = eiter.next();
+                    long remainingSize = diren.getFileSize(); // 0 = all blocks completely
+                    boolean limited = remainingSize > 0;
+                    int blockCount = getFileBlockCount(diren);
+                    int iblock = 0;
+                    while (iblock < blockCount && (! limited || remainingSize > 0)) {
+                        int count = getBlockViews(getFileBlock(diren, iblock), views);
+                        int iview = 0;
+                        while (iview < count) { // cut the views behind the size of the extent
+                            ByteBuffer view = views[iview];
+                            if (limited) {
+                                if (view.remaining() > remainingSize) {
+                                    view.limit(view.position() + (int) remainingSize);
+                                }
+                                remainingSize -= view.remaining();
+                            }
+                            position += view.remaining();
+                            iview ++;
+                        } // while iview
+                        writeViews(channel, views, count); // IOExceptions, for example from an aborted download, are passed on
+                        iblock ++;
+                    } // while blocks
+                } // while extents
+            } // not a directory
+            zip.closeEntry();
+            getMetrics().addFileExtracted(position, System.nanoTime() - startTime);
+            commitExtract(event, extents.get(0), name, position);
+            result ++;
+        } // while fiter
+        return result;
+    } // writeZip
+
     /** Write one block to the target file
      *  @param byteWriter open writer for the target file
      *  @param blockNo number of block to be written
@@ -354,10 +840,107 @@ public class BaseSystem {
             result -= block.length;
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
+            getMetrics().addError();
         }
         return result;
     } // writeBlock
 
+    /** Write one block to the target channel, directly from the views of the container
+     *  @param channel open channel for the target file
+     *  @param blockNo number of block to be written
+     *  @param remainingSize number of bytes still to be written;
+     *  if it is positive and less than the block size, only that many bytes are written
+     *  @param views array with at least {@link #getMaxBlockViews} elements, for temporary use
+     *  @return new remaining size to be written: 0 if the block was cut,
+     *  negative if <em>remainingSize</em> was not positive
+     */
+    public long writeBlock(WritableByteChannel channel, int blockNo, long remainingSize, ByteBuffer[] views) {
+        long result = remainingSize;
+        int count = getBlockViews(blockNo, views);
+        int blockLen = 0;
+        int iview = 0;
+        while (iview < count) { // cut the views behind the remaining size
+            ByteBuffer view = views[iview];
+            if (remainingSize > 0 && blockLen + view.remaining() > remainingSize) {
+                view.limit(view.position() + (int) Math.max(remainingSize - blockLen, 0));
+            }
+            blockLen += view.remaining(); // after the cut
+            iview ++;
+        } // while iview
+        try {
+            writeViews(channel, views, count);
+            result -= blockLen;
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            getMetrics().addError();
+        }
+        return result;
+    } // writeBlock(4)
+
+    /** Write one block to a position in the target file, directly from the views of the container
+     *  @param channel open channel for the target file
+     *  @param position position in the target file where the block should be written
+     *  @param blockNo number of block to be written
+     *  @param remainingSize number of bytes still to be written;
+     *  if it is positive and less than the block size, only that many bytes are written
+     *  @param views array with at least {@link #getMaxBlockViews} elements, for temporary use
+     *  @return new remaining size to be written: 0 if the block was cut,
+     *  negative if <em>remainingSize</em> was not positive
+     *  @throws IOException if the target file cannot be written
+     */
+    public long writeBlock(FileChannel channel, long position, int blockNo, long remainingSize, ByteBuffer[] views) throws IOException {
+        long result = remainingSize;
+        int count = getBlockViews(blockNo, views);
+        int blockLen = 0;
+        int iview = 0;
+        while (iview < count) { // cut the views behind the remaining size
+            ByteBuffer view = views[iview];
+            if (remainingSize > 0 && blockLen + view.remaining() > remainingSize) {
+                view.limit(view.position() + (int) Math.max(remainingSize - blockLen, 0));
+            }
+            blockLen += view.remaining(); // after the cut
+            iview ++;
+        } // while iview
+        iview = 0;
+        while (iview < count) {
+            ByteBuffer view = views[iview];
+            while (view.hasRemaining()) {
+                position += channel.write(view, position);
+            } // while remaining
+            iview ++;
+        } // while iview
+        result -= blockLen;
+        return result;
+    } // writeBlock(5)
+
+    /** Writes views completely to a channel, with gathering writes if possible
+     *  @param channel open channel for the target file
+     *  @param views array of views
+     *  @param count number of views to be written
+     *  @throws IOException if the channel cannot be written
+     */
+    protected static void writeViews(WritableByteChannel channel, ByteBuffer[] views, int count) throws IOException {
+        long remaining = 0;
+        int iview = 0;
+        while (iview < count) {
+            remaining += views[iview].remaining();
+            iview ++;
+        } // while iview
+        if (channel instanceof GatheringByteChannel) {
+            while (remaining > 0) {
+                remaining -= ((GatheringByteChannel) channel).write(views, 0, count);
+            } // while remaining
+        } else {
+            iview = 0;
+            while (iview < count) {
+                while (views[iview].hasRemaining()) {
+                    channel.write(views[iview]);
+                } // while remaining
+                iview ++;
+            } // while iview
+        }
+    } // writeViews
+
    //--------------------------
     // Access methods
     //--------------------------
@@ -373,6 +956,57 @@ public class BaseSystem {
         getContainer().dump(srcBuffer, offset, length);
     } // dump
 
+    /** Dumps a logical block as hexadecimal and ASCII characters,
+     *  directly from the views of the container.
+     *  @param blockNo number of the block
+     */
+    public void dumpBlock(int blockNo) {
+        ByteBuffer[] views = new ByteBuffer[getMaxBlockViews()];
+        int count = getBlockViews(blockNo, views);
+        getContainer().dump(views, count);
+    } // dumpBlock
+
+    /** Gets the position of a physical sector in the container.
+     *  Containers with sector IDs ({@link org.teherba.flodskim.buffer.DskBuffer DskBuffer},
+     *  {@link org.teherba.flodskim.buffer.ImdBuffer ImdBuffer}) are asked for the position
+     *  of the sector, such that the order of the sectors in the container file does not matter.
+     *  Otherwise, the sectors are assumed to be stored linearly, ordered by track, head and sector ID.
+     *  @param track cylinder number, starting at {@link #minCylinder}
+     *  @param head head number, starting at {@link #minHead}
+     *  @param sectorId sector identifier, starting at {@link #minSector}
+     *  @return position of the first byte of the sector in the container
+     */
+    protected long getSectorPosition(int track, int head, int sectorId) {
+        long result = getContainer().getSectorPosition(track, head, sectorId);
+        if (result < 0) { // no sector index, or sector not found
+            result = (((long) (track - minCylinder) * (maxHead - minHead + 1) + head - minHead)
+                    * (maxSector - minSector + 1) + sectorId - minSector) * sectorSize;
+        }
+        return result;
+    } // getSectorPosition
+
+    /** Gets the maximum number of views which {@link #getBlockViews} stores for one block
+     *  @return 1 for a linear structure of blocks
+     */
+    public int getMaxBlockViews() {
+        return 1;
+    } // getMaxBlockViews
+
+    /** Gets a logical block from the file system as read-only views of the container,
+     *  without allocating or copying a byte array.
+     *  This implementation assumes a very simple, linear structure of blocks,
+     *  which yields a single view.
+     *  Block 0 is at the start of the disk.
+     *  @param blockNo number of the block
+     *  @param views array with at least {@link #getMaxBlockViews} elements, which is filled with the views
+     *  @return number of views stored in <em>views</em>
+     */
+    public int getBlockViews(int blockNo, ByteBuffer[] views) {
+        getMetrics().addBlockRead();
+        views[0] = getContainer().getView((long) blockNo * blockSize, blockSize);
+        return 1;
+    } // getBlockViews
+
     /** Get a logical block from the file system.
      *  This implementation assumes a very simple, linear structure of blocks.
      *  Block 0 is at the start of the disk.
@@ -380,13 +1014,14 @@ public class BaseSystem {
      *  @return array of bytes with the content of the block
      */
     public byte[] getBlock(int blockNo) {
+        getMetrics().addBlockRead();
         int sectSize  = blockSize;
         byte[] result = new byte[blockSize];
         int destPos   = 0; // destination position in result
         int sectCount = 1;
         while (sectCount > 0) {
-            int srcPos   = blockNo * blockSize;
-            System.arraycopy(getContainer().getBuffer(), srcPos, result, destPos, sectSize);
+            long srcPos  = (long) blockNo * blockSize;
+            getContainer().copyBytes(srcPos, result, destPos, sectSize);
             destPos += sectSize;
             sectCount --;
         } // while sectCount
@@ -1,5 +1,10 @@
 /*  Class for a CP/M file system structure
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: Flight Recorder event for fillDirectory
+    2026-10-16: Metrics
+    2026-10-16: one reused cursor in nextDirectoryEntry
+    2026-10-16: CpmCursor; nextDirectoryEntry without copying
+    2026-10-16: long dirOffset
     2017-05-29: javadoc 1.8
     2013-11-07, Georg Fischer: copied from BaseSystem
 */
@@ -22,7 +27,9 @@ package org.teherba.flodskim.system;
 import  org.teherba.flodskim.buffer.BaseBuffer;
 import  org.teherba.flodskim.system.BaseSystem;
 import  org.teherba.flodskim.system.DirectoryEntry;
+import  org.teherba.flodskim.system.SystemEvents;
 import  java.io.BufferedOutputStream;
+import  java.nio.charset.StandardCharsets;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -60,42 +67,85 @@ public class Cpm extends BaseSystem {
     // Access methods
     //--------------------------
 
+    /** Cursor over the CP/M directory entries of 32 bytes:
+     *  <ul>
+     *  <li>+0x00: user number, 0xe5 for a deleted file</li>
+     *  <li>+0x01: filename (8 bytes), 0xe5 for an unused entry</li>
+     *  <li>+0x09: extension (3 bytes)</li>
+     *  <li>+0x0c: extent number (low 5 bits), +0x0e: high bits</li>
+     *  <li>+0x10: block numbers (1 byte each, 0 terminates)</li>
+     *  </ul>
+     */
+    private class CpmCursor extends DirectoryCursor {
+        /** Constructor
+         *  @param startOffset offset of the first entry to be examined
+         */
+        CpmCursor(int startOffset) {
+            super(Cpm.this.directory, Cpm.this.getDirEntrySize(), Cpm.this.maxDirEntries, startOffset);
+        } // Constructor
+        protected boolean isUsed() {
+            return directory[offset + 1] != (byte) 0xe5;
+        } // isUsed
+        public boolean isDeleted() {
+            return directory[offset] == (byte) 0xe5;
+        } // isDeleted
+        public String getBaseFileName() {
+            return (new String(directory, offset + 1, 8, StandardCharsets.UTF_8)).trim();
+        } // getBaseFileName
+        public String getExtension() {
+            return (new String(directory, offset + 9, 3, StandardCharsets.UTF_8)).trim();
+        } // getExtension
+        public int getExtentNumber() {
+            return directory[offset + 0xc] | (directory[offset + 0xe] << 5);
+        } // getExtentNumber
+        public int getBlockCount() {
+            int ientry = 16;
+            while (ientry < entrySize && directory[offset + ientry] != 0) {
+                ientry ++;
+            } // while ientry
+            return ientry - 16;
+        } // getBlockCount
+        public int getBlock(int index) {
+            return directory[offset + 16 + index] & 0xff;
+        } // getBlock
+        public int getFileSize() {
+            return getBlockCount() * getBlockSize();
+        } // getFileSize
+    } // CpmCursor
+
+    /** Fills the directory, and gets a cursor which reads the entries in place
+     *  @return a cursor positioned before the first entry
+     */
+    public DirectoryCursor getDirectoryCursor() {
+        SystemEvents.DirectoryFill event = new SystemEvents.DirectoryFill();
+        event.begin();
+        fillDirectory();
+        commitFill(event);
+        return new CpmCursor((int) getDirOffset());
+    } // getDirectoryCursor
+
+    /** cursor which is reused by {@link #nextDirectoryEntry} */
+    private CpmCursor dirCursor;
+
     /** Retrieves the next directory entry
      *  @param withDeleted whether deleted entries should be returned
      *  @return a filled {@link DirectoryEntry}, or null if there
      *  are no more directory entries
      */
     public DirectoryEntry nextDirectoryEntry(boolean withDeleted) {
-        DirectoryEntry result = new DirectoryEntry();
-        boolean found = false;
+        DirectoryEntry result = null;
         try {
-            int dirOffset = getDirOffset();
-            while (! found && dirOffset < maxDirEntries * getDirEntrySize()) {
-                byte[] entry = new byte[getDirEntrySize()];
-                System.arraycopy(directory, dirOffset, entry, 0, getDirEntrySize());
-                dirOffset += getDirEntrySize();
-                setDirOffset(dirOffset);
-                if (entry[1] != (byte) 0xe5) { // there is some filename
-                    if (entry[0] != ((byte) 0xe5) || withDeleted) { // to be shown
-                        found = true;
-                        result.setBaseFileName((new String(entry, 1, 8, "UTF-8")).trim());
-                        result.setExtension   ((new String(entry, 9, 3, "UTF-8")).trim());
-                        result.setDeleted     (entry[0] == (byte) 0xe5);
-                        result.setExtentNumber(entry[0xc] | (entry[0xe] << 5));
-                        int ientry = 16;
-                        while (ientry < getDirEntrySize() && entry[ientry] != 0) {
-                            result.addBlock(entry[ientry] & 0xff);
-                            ientry ++;
-                        } // while ientry
-                        result.setFileSize(result.getBlockCount() * getBlockSize());
-                    } // if to be shown
-                } // some filename
-            } // while ! found
+            if (dirCursor == null || ! dirCursor.walks(directory)) { // fillDirectory allocates a new array
+                dirCursor = new CpmCursor(0);
+            }
+            dirCursor.seek((int) getDirOffset());
+            if (dirCursor.next(withDeleted)) {
+                result = dirCursor.toEntry();
+            }
+            setDirOffset(dirCursor.getOffset() + getDirEntrySize());
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
-        }
-        if (! found) {
-            result = null;
+            getMetrics().addError();
         }
         return result;
     } // nextDirectoryEntry
@@ -1,5 +1,9 @@
 /*  Class for a DEC CP/M file system structure on RX50 floppy disks SS DD 80 tracks
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: sectors located by their IDs
+    2026-10-16: Metrics
+    2026-10-16: getBlockViews
+    2026-10-16: getBlock via BaseBuffer.copyBytes
     2017-05-29: javadoc 1.8
     2013-11-07, Georg Fischer: copied from BaseSystem
 */
@@ -20,6 +24,7 @@
  */
 package org.teherba.flodskim.system;
 import  org.teherba.flodskim.system.Cpm;
+import  java.nio.ByteBuffer;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -105,13 +110,13 @@ public class Dec_rx50 extends Cpm {
 
     /** Get a logical block from the file system.
      *  Block 0 is at the start of the disk.
+     *  The sectors are located by their IDs, see {@link #getSectorPosition}.
      *  @param blockNo number of the block
      *  @return array of bytes with the content of the block
      */
     public byte[] getBlock(int blockNo) {
-        int headNo      = maxHead   - minHead   + 1;
+        getMetrics().addBlockRead();
         int sectNo      = maxSector - minSector + 1; // per track
-        int trackSize   = sectorSize * sectNo * headNo;
         int sectCount   = getBlockSize() / sectorSize; // per block; sectors still to be processed
         int logSect     = blockNo * sectCount; // logical sector number, start of disk = 0
         byte[] result   = new byte[getBlockSize()];
@@ -119,7 +124,7 @@ public class Dec_rx50 extends Cpm {
         while (sectCount > 0) {
             int track    = 2 + logSect / sectNo;
             int physSect = SKEW_TAB_50[logSect % SKEW_TAB_50.length];
-            int srcPos   = track * trackSize + (physSect - 1) * sectorSize;
+            long srcPos  = getSectorPosition(track, minHead, physSect);
             if (debug > 0) {
                 System.err.println(""
                         + ", blockNo="  + blockNo
@@ -130,7 +135,7 @@ public class Dec_rx50 extends Cpm {
                         + ", destPos="  + String.format("0x%x", destPos)
                         );
             }
-            System.arraycopy(getContainer().getBuffer(), srcPos, result, destPos, sectorSize);
+            getContainer().copyBytes(srcPos, result, destPos, sectorSize);
             destPos += sectorSize;
             logSect ++;
             sectCount --;
@@ -138,4 +143,33 @@ public class Dec_rx50 extends Cpm {
         return result;
     } // getBlock
 
+    /** Gets the maximum number of views which {@link #getBlockViews} stores for one block
+     *  @return number of sectors per block
+     */
+    public int getMaxBlockViews() {
+        return getBlockSize() / sectorSize;
+    } // getMaxBlockViews
+
+    /** Gets a logical block as a gather list of the views of its interleaved sectors.
+     *  Block 0 is at the start of the disk.
+     *  @param blockNo number of the block
+     *  @param views array with at least {@link #getMaxBlockViews} elements, which is filled with the views
+     *  @return number of views stored in <em>views</em>
+     */
+    public int getBlockViews(int blockNo, ByteBuffer[] views) {
+        getMetrics().addBlockRead();
+        int sectNo      = maxSector - minSector + 1; // per track
+        int sectCount   = getBlockSize() / sectorSize; // per block
+        int logSect     = blockNo * sectCount; // logical sector number, start of disk = 0
+        int isect = 0;
+        while (isect < sectCount) {
+            int track    = 2 + logSect / sectNo;
+            int physSect = SKEW_TAB_50[logSect % SKEW_TAB_50.length];
+            views[isect] = getContainer().getView(getSectorPosition(track, minHead, physSect), sectorSize);
+            logSect ++;
+            isect ++;
+        } // while isect
+        return sectCount;
+    } // getBlockViews
+
 } // Dec_rx50
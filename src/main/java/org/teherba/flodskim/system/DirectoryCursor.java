@@ -0,0 +1,183 @@
+/*  Flyweight cursor over the raw entries of a directory
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: seek, appendListing
+    2026-10-16, Georg Fischer: copied from DirectoryEntry
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  org.teherba.flodskim.system.DirectoryEntry;
+
+/** Cursor which walks over the raw entries in the <em>directory</em> array
+ *  of a {@link BaseSystem}. The fields of the current entry are read
+ *  in place, and names are only decoded into Strings when they are requested,
+ *  such that a scan over a directory does not allocate per entry.
+ *  A cursor is not thread-safe, but several cursors may walk over the same directory.
+ *  Subclasses define the layout of the entries.
+ *  @author Dr. Georg Fischer
+ */
+public abstract class DirectoryCursor {
+    public final static String CVSID = "@(#) $Id: DirectoryCursor.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** linear byte array with the raw directory entries */
+    protected final byte[] directory;
+
+    /** size of a directory entry (in bytes) */
+    protected final int entrySize;
+
+    /** offset behind the last entry */
+    protected final int endOffset;
+
+    /** offset of the current entry in {@link #directory} */
+    protected int offset;
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor
+     *  @param directory linear byte array with the raw directory entries
+     *  @param entrySize size of a directory entry (in bytes)
+     *  @param entryCount number of (possible) entries in the directory
+     *  @param startOffset offset of the first entry to be examined by {@link #next}
+     */
+    protected DirectoryCursor(byte[] directory, int entrySize, int entryCount, int startOffset) {
+        this.directory = directory;
+        this.entrySize = entrySize;
+        this.endOffset = entryCount * entrySize;
+        this.offset    = startOffset - entrySize; // before the first entry
+    } // Constructor
+
+    //--------------------------
+    // Navigation
+    //--------------------------
+    /** Positions the cursor again, such that it can be reused for another walk
+     *  over the same directory array
+     *  @param startOffset offset of the first entry to be examined by {@link #next}
+     */
+    public void seek(int startOffset) {
+        this.offset = startOffset - entrySize; // before the first entry
+    } // seek
+
+    /** Determines whether the cursor walks over some directory array
+     *  @param directory array which is tested
+     *  @return true if the cursor reads that array, false if it must be created again
+     */
+    public boolean walks(byte[] directory) {
+        return this.directory == directory;
+    } // walks
+
+    /** Advances to the next entry which is used
+     *  @param withDeleted whether deleted entries should be returned
+     *  @return true if the cursor is positioned on such an entry,
+     *  false if there are no more entries
+     */
+    public boolean next(boolean withDeleted) {
+        boolean found = false;
+        while (! found && offset + entrySize < endOffset) {
+            offset += entrySize;
+            found = isUsed() && (withDeleted || ! isDeleted());
+        } // while ! found
+        if (! found) {
+            offset = endOffset - entrySize; // stay behind the last entry
+        }
+        return found;
+    } // next
+
+    /** Gets the offset of the current entry
+     *  @return offset relative to the start of the directory
+     */
+    public int getOffset() {
+        return offset;
+    } // getOffset
+
+    //--------------------------
+    // Fields of the current entry
+    //--------------------------
+    /** Determines whether the current entry contains some filename
+     *  @return true if the slot is used (possibly by a deleted file)
+     */
+    protected abstract boolean isUsed();
+
+    /** Determines whether the current entry is deleted
+     *  @return true if the entry is deleted, false otherwise
+     */
+    public abstract boolean isDeleted();
+
+    /** Gets the base file name of the current entry (decoded on each call)
+     *  @return base file name
+     */
+    public abstract String getBaseFileName();
+
+    /** Gets the file name extension of the current entry (decoded on each call)
+     *  @return file name extension
+     */
+    public abstract String getExtension();
+
+    /** Gets the allocation extent number of the current entry
+     *  @return allocation extent number
+     */
+    public abstract int getExtentNumber();
+
+    /** Gets the size of the file of the current entry
+     *  @return number of bytes in the file
+     */
+    public abstract int getFileSize();
+
+    /** Gets the number of blocks allocated by the current entry
+     *  @return number of blocks
+     */
+    public abstract int getBlockCount();
+
+    /** Gets one of the blocks allocated by the current entry
+     *  @param index 0-based index of the block, less than {@link #getBlockCount}
+     *  @return block number
+     */
+    public abstract int getBlock(int index);
+
+    /** Copies the fields of the current entry into a new {@link DirectoryEntry}
+     *  @return a filled directory entry
+     */
+    public DirectoryEntry toEntry() {
+        DirectoryEntry result = new DirectoryEntry();
+        result.setBaseFileName(getBaseFileName());
+        result.setExtension   (getExtension   ());
+        result.setDeleted     (isDeleted      ());
+        result.setExtentNumber(getExtentNumber());
+        int blockCount = getBlockCount();
+        int iblock = 0;
+        while (iblock < blockCount) {
+            result.addBlock(getBlock(iblock));
+            iblock ++;
+        } // while iblock
+        result.setFileSize(getFileSize());
+        return result;
+    } // toEntry
+
+    /** Appends the directory listing line of the current entry,
+     *  in the format of {@link DirectoryEntry#toString}
+     *  @param buffer append to this buffer
+     */
+    public void appendListing(StringBuffer buffer) {
+        DirectoryEntry.appendListing(buffer, getBaseFileName(), getExtension(), getExtentNumber(), getFileSize(), isDeleted());
+        int blockCount = getBlockCount();
+        int iblock = 0;
+        while (iblock < blockCount) {
+            DirectoryEntry.appendBlock(buffer, getBlock(iblock));
+            iblock ++;
+        } // while iblock
+    } // appendListing
+
+} // DirectoryCursor
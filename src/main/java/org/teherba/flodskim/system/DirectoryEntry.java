@@ -1,5 +1,10 @@
 /*  Bean for a directory entry
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: appendListing, shared with DirectoryCursor
+    2026-10-16: getFileName
+    2026-10-16: long fileSize
+    2026-10-16: getFullName
+    2026-10-16: growable int[] block list with primitive accessors
     2017-05-29: javadoc 1.8
     2013-11-07, Georg Fischer: copied from Cpm
 */
@@ -21,8 +26,9 @@
 package org.teherba.flodskim.system;
 import  org.teherba.flodskim.buffer.BaseBuffer;
 import  org.teherba.flodskim.system.BaseSystem;
-import  java.util.ArrayList;
+import  java.util.Arrays;
 import  java.util.Iterator;
+import  java.util.NoSuchElementException;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -45,7 +51,8 @@ public class DirectoryEntry {
      */
     public DirectoryEntry() {
         log = LogManager.getLogger(DirectoryEntry.class.getName());
-        blockList = new ArrayList<Integer>(32);
+        blockList  = new int[32];
+        blockCount = 0;
         setBaseFileName("");
         setExtension("");
         setExtentNumber(0);
@@ -72,29 +79,65 @@ public class DirectoryEntry {
         return baseFileName;
     } // getBaseFileName
 
-    /** List of allocated blocks */
-    private ArrayList<Integer> blockList;
+    /** List of allocated blocks; only the first {@link #blockCount} elements are used */
+    private int[] blockList;
+
+    /** Number of allocated blocks */
+    private int blockCount;
 
     /** Adds a block number
      *  @param blockNo add this block number
      */
     public void addBlock(int blockNo) {
-        blockList.add(new Integer(blockNo));
+        if (blockCount >= blockList.length) {
+            blockList = Arrays.copyOf(blockList, blockList.length * 2);
+        }
+        blockList[blockCount ++] = blockNo;
     } // addBlock
 
-    /** Gets an iterator over all block numbers
+    /** Gets one of the allocated block numbers
+     *  @param index 0-based index of the block, less than {@link #getBlockCount}
+     *  @return block number
+     */
+    public int getBlock(int index) {
+        if (index >= blockCount) {
+            throw new IndexOutOfBoundsException("block index " + index + ", count " + blockCount);
+        }
+        return blockList[index];
+    } // getBlock
+
+    /** Gets a copy of all allocated block numbers
+     *  @return array with {@link #getBlockCount} elements
+     */
+    public int[] getBlocks() {
+        return Arrays.copyOf(blockList, blockCount);
+    } // getBlocks
+
+    /** Gets an iterator over all block numbers.
+     *  This method boxes the block numbers;
+     *  loops over {@link #getBlock} with {@link #getBlockCount} do not allocate.
      *  @return iterator over block numbers
      */
     public Iterator<Integer> getBlockIterator() {
-        Iterator<Integer> result = blockList.iterator();
-        return result;
+        return new Iterator<Integer>() {
+            private int index = 0;
+            public boolean hasNext() {
+                return index < blockCount;
+            } // hasNext
+            public Integer next() {
+                if (index >= blockCount) {
+                    throw new NoSuchElementException();
+                }
+                return blockList[index ++];
+            } // next
+        };
     } // getBlockIterator
 
     /** Gets the number of allocated blocks
      *  @return number of allocated blocks
      */
     public int getBlockCount() {
-        return blockList.size();
+        return blockCount;
     } // getBlockCount
 
     //----
@@ -149,20 +192,20 @@ public class DirectoryEntry {
         return extension;
     } // getExtension
 
-    /** Number of bytes in the file */
-    private int fileSize;
+    /** Number of bytes in the file, may exceed 2 GB (for example in {@link Tar}) */
+    private long fileSize;
 
     /** Sets the file size
      *  @param fileSize file size
      */
-    public void setFileSize(int fileSize) {
+    public void setFileSize(long fileSize) {
         this.fileSize = fileSize;
     } // setFileSize
 
     /** Gets the file size
      *  @return file size
      */
-    public int getFileSize() {
+    public long getFileSize() {
         return fileSize;
     } // getFileSize
 
@@ -170,27 +213,96 @@ public class DirectoryEntry {
     // Access methods
     //--------------------------
 
+    /** Gets the name of the file: base name and extension (if any), separated by a dot.
+     *  All extents of a file have the same name.
+     *  @return name of the file, for example "HELLO.TXT"
+     */
+    public String getFileName() {
+        String result = getBaseFileName();
+        if (getExtension().length() > 0) {
+            result += "." + getExtension();
+        }
+        return result;
+    } // getFileName
+
+    /** Gets the full name of the file: base name, extension (if any)
+     *  and extent number (if greater than 1), separated by dots.
+     *  This is also the name of the file created by {@link BaseSystem#copyFile}.
+     *  @return name of the file, for example "HELLO.TXT" or "DATA.BIN.2"
+     */
+    public String getFullName() {
+        String result = getFileName();
+        if (getExtentNumber() > 1) { // kind of stupid: separate files for higher extent numbers
+            result += "." + getExtentNumber();
+        }
+        return result;
+    } // getFullName
+
     /** Get the display representation of this directory entry
      *  @return human readable entry
      */
     public String toString() {
         StringBuffer result = new StringBuffer(128);
-        String extension = getExtension();
-        result.append(String.format("%-18s", getBaseFileName() + (extension.length() > 0 ? "." + extension : "")));
-        result.append(String.format(" %2d" , getExtentNumber()));
-        result.append(String.format(" %6d" , getFileSize()));
-        if (isDeleted()) {
-            result.append(" deleted");
-        } else {
-            // continue
-        }
+        appendListing(result, getBaseFileName(), getExtension(), getExtentNumber(), getFileSize(), isDeleted());
         // print all block numbers
-        Iterator<Integer> blockIterator = getBlockIterator();
-        while (blockIterator.hasNext()) {
-           int blockNo = blockIterator.next();
-           result.append(String.format(" %3x", blockNo));
+        int iblock = 0;
+        while (iblock < blockCount) {
+            appendBlock(result, blockList[iblock]);
+            iblock ++;
         } // while blocks
         return result.toString();
     } // toString
 
+    /** Appends the fields of a directory listing line, without the block numbers
+     *  @param buffer append to this buffer
+     *  @param baseFileName base file name
+     *  @param extension file name extension, maybe empty
+     *  @param extentNumber allocation extent number
+     *  @param fileSize number of bytes in the file
+     *  @param deleted whether the entry is deleted
+     */
+    static void appendListing(StringBuffer buffer, String baseFileName, String extension
+            , int extentNumber, long fileSize, boolean deleted) {
+        buffer.append(String.format("%-18s", baseFileName + (extension.length() > 0 ? "." + extension : "")));
+        buffer.append(String.format(" %2d" , extentNumber));
+        buffer.append(String.format(" %6d" , fileSize));
+        if (deleted) {
+            buffer.append(" deleted");
+        } else {
+            // continue
+        }
+    } // appendListing
+
+    /** Appends a block number of a directory listing line
+     *  @param buffer append to this buffer
+     *  @param blockNo block number
+     */
+    static void appendBlock(StringBuffer buffer, int blockNo) {
+        buffer.append(' ');
+        appendHex(buffer, blockNo, 3);
+    } // appendBlock
+
+    /** Hexadecimal digits */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Appends a number in hexadecimal, right-aligned like <code>String.format("%3x")</code>
+     *  @param buffer append to this buffer
+     *  @param value number to be appended, treated as unsigned
+     *  @param width minimum number of characters, padded with leading spaces
+     */
+    private static void appendHex(StringBuffer buffer, int value, int width) {
+        int digits = 1;
+        while (digits < 8 && (value >>> (digits * 4)) != 0) {
+            digits ++;
+        } // while digits
+        while (width > digits) {
+            buffer.append(' ');
+            width --;
+        } // while padding
+        while (digits > 0) {
+            digits --;
+            buffer.append(HEX_DIGITS[(value >>> (digits * 4)) & 0xf]);
+        } // while digits
+    } // appendHex
+
 } // DirectoryEntry
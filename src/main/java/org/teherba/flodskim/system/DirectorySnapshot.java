@@ -0,0 +1,139 @@
+/*  Immutable snapshot of a directory with an index on the file names
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: index on file names with all extents
+    2026-10-16, Georg Fischer: copied from DirectoryEntry
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  org.teherba.flodskim.system.DirectoryEntry;
+import  java.util.ArrayList;
+import  java.util.Collections;
+import  java.util.Comparator;
+import  java.util.HashMap;
+import  java.util.Iterator;
+import  java.util.List;
+
+/** Immutable list of the entries of a directory, in the order of the directory,
+ *  together with a hash index on the {@link DirectoryEntry#getFileName file names}.
+ *  A snapshot has no iteration state, and it can therefore be shared by
+ *  several threads which look up files in the same disk image.
+ *  The index maps a file name to all extents of the file, sorted by their
+ *  extent numbers. If the file has extents which are not deleted, only these
+ *  are indexed, or else the deleted ones. If an extent number occurs more
+ *  than once, the first entry in the directory is taken.
+ *  @author Dr. Georg Fischer
+ */
+public class DirectorySnapshot {
+    public final static String CVSID = "@(#) $Id: DirectorySnapshot.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** entries in the order of the directory */
+    private final List<DirectoryEntry> entries;
+
+    /** maps file names to the extents of the files */
+    private final HashMap<String, List<DirectoryEntry>> index;
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor with a list of entries
+     *  @param entries list of directory entries, for example from
+     *  {@link BaseSystem#getDirectoryEntries} or from a {@link ParseCache};
+     *  the list is copied
+     */
+    public DirectorySnapshot(List<DirectoryEntry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<DirectoryEntry>(entries));
+        index = new HashMap<String, List<DirectoryEntry>>(entries.size() * 2);
+        Iterator<DirectoryEntry> iter = entries.iterator();
+        while (iter.hasNext()) {
+            DirectoryEntry diren = iter.next();
+            String name = diren.getFileName();
+            List<DirectoryEntry> extents = index.get(name);
+            if (extents == null) {
+                extents = new ArrayList<DirectoryEntry>(1);
+                index.put(name, extents);
+            }
+            if (extents.size() > 0 && extents.get(0).isDeleted() && ! diren.isDeleted()) {
+                extents.clear(); // live extents replace the deleted ones
+            }
+            if (extents.size() == 0 || extents.get(0).isDeleted() == diren.isDeleted()) {
+                boolean found = false;
+                Iterator<DirectoryEntry> eiter = extents.iterator();
+                while (! found && eiter.hasNext()) {
+                    found = eiter.next().getExtentNumber() == diren.getExtentNumber();
+                } // while eiter
+                if (! found) {
+                    extents.add(diren);
+                }
+            }
+        } // while iter
+        Comparator<DirectoryEntry> byExtent = new Comparator<DirectoryEntry>() {
+            public int compare(DirectoryEntry diren1, DirectoryEntry diren2) {
+                return Integer.compare(diren1.getExtentNumber(), diren2.getExtentNumber());
+            } // compare
+        };
+        Iterator<List<DirectoryEntry>> liter = index.values().iterator();
+        while (liter.hasNext()) {
+            Collections.sort(liter.next(), byExtent); // stable: keeps the directory order otherwise
+        } // while liter
+    } // Constructor(1)
+
+    //--------------------------
+    // Access methods
+    //--------------------------
+    /** Gets all entries
+     *  @param withDeleted whether deleted entries should be returned
+     *  @return unmodifiable list of entries in the order of the directory
+     */
+    public List<DirectoryEntry> getEntries(boolean withDeleted) {
+        List<DirectoryEntry> result = entries;
+        if (! withDeleted) {
+            ArrayList<DirectoryEntry> active = new ArrayList<DirectoryEntry>(entries.size());
+            Iterator<DirectoryEntry> iter = entries.iterator();
+            while (iter.hasNext()) {
+                DirectoryEntry diren = iter.next();
+                if (! diren.isDeleted()) {
+                    active.add(diren);
+                }
+            } // while iter
+            result = Collections.unmodifiableList(active);
+        }
+        return result;
+    } // getEntries
+
+    /** Gets the number of entries, including the deleted ones
+     *  @return number of entries
+     */
+    public int size() {
+        return entries.size();
+    } // size
+
+    /** Looks up the extents of a file by its name
+     *  @param name file name (base name and extension) as returned by
+     *  {@link DirectoryEntry#getFileName}
+     *  @param withDeleted whether the extents of a deleted file should be returned
+     *  @return unmodifiable list of the extents, sorted by extent number,
+     *  or null if there is no such file
+     */
+    public List<DirectoryEntry> lookup(String name, boolean withDeleted) {
+        List<DirectoryEntry> result = index.get(name);
+        if (result != null && result.get(0).isDeleted() && ! withDeleted) {
+            result = null;
+        }
+        return result == null ? null : Collections.unmodifiableList(result);
+    } // lookup
+
+} // DirectorySnapshot
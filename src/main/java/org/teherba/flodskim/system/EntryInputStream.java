@@ -0,0 +1,130 @@
+/*  Stream which reads the bytes of one file in a file system
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer: copied from DirectoryEntry
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  org.teherba.flodskim.system.BaseSystem;
+import  org.teherba.flodskim.system.DirectoryEntry;
+import  java.io.InputStream;
+import  java.nio.ByteBuffer;
+
+/** Stream which reads the bytes of one file, block by block,
+ *  directly from the read-only views of the container.
+ *  As in {@link BaseSystem#copyFile}, a positive file size limits the
+ *  number of bytes; with a size of 0, all blocks are read completely.
+ *  @author Dr. Georg Fischer
+ */
+class EntryInputStream extends InputStream {
+    public final static String CVSID = "@(#) $Id: EntryInputStream.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** file system which contains the file */
+    private final BaseSystem system;
+    /** directory entry for the file */
+    private final DirectoryEntry diren;
+    /** views of the current block */
+    private final ByteBuffer[] views;
+    /** number of views in the current block */
+    private int viewCount;
+    /** index of the current view */
+    private int viewIndex;
+    /** index of the next block in the file */
+    private int blockIndex;
+    /** number of blocks in the file */
+    private final int blockCount;
+    /** whether the file size limits the number of bytes */
+    private final boolean limited;
+    /** number of bytes still to be read if {@link #limited} */
+    private long remaining;
+
+    /** Constructor
+     *  @param system file system which contains the file
+     *  @param diren directory entry for the file
+     */
+    EntryInputStream(BaseSystem system, DirectoryEntry diren) {
+        this.system = system;
+        this.diren  = diren;
+        views       = new ByteBuffer[system.getMaxBlockViews()];
+        viewCount   = 0;
+        viewIndex   = 0;
+        blockIndex  = 0;
+        blockCount  = system.getFileBlockCount(diren);
+        remaining   = diren.getFileSize();
+        limited     = remaining > 0;
+    } // Constructor
+
+    /** Gets the current view, and advances to the next block if necessary
+     *  @return a view with remaining bytes, or null at the end of the file
+     */
+    private ByteBuffer currentView() {
+        ByteBuffer result = null;
+        while (result == null && (! limited || remaining > 0)) {
+            if (viewIndex < viewCount) {
+                if (views[viewIndex].hasRemaining()) {
+                    result = views[viewIndex];
+                } else {
+                    viewIndex ++;
+                }
+            } else if (blockIndex < blockCount) {
+                viewCount = system.getBlockViews(system.getFileBlock(diren, blockIndex), views);
+                viewIndex = 0;
+                blockIndex ++;
+            } else {
+                break; // end of block list
+            }
+        } // while result
+        return result;
+    } // currentView
+
+    /** Reads one byte
+     *  @return the byte (0..255), or -1 at the end of the file
+     */
+    public int read() {
+        int result = -1;
+        ByteBuffer view = currentView();
+        if (view != null) {
+            result = view.get() & 0xff;
+            remaining --;
+        }
+        return result;
+    } // read()
+
+    /** Reads bytes into an array
+     *  @param buffer destination array
+     *  @param offset position of the first byte in <em>buffer</em>
+     *  @param length maximum number of bytes to be read
+     *  @return number of bytes read, or -1 at the end of the file
+     */
+    public int read(byte[] buffer, int offset, int length) {
+        int result = 0;
+        if (length > 0) {
+            ByteBuffer view = currentView();
+            if (view != null) {
+                result = Math.min(length, view.remaining());
+                if (limited && result > remaining) {
+                    result = (int) remaining;
+                }
+                view.get(buffer, offset, result);
+                remaining -= result;
+            } else {
+                result = -1;
+            }
+        }
+        return result;
+    } // read(3)
+
+} // EntryInputStream
@@ -0,0 +1,716 @@
+/*  Writes synthetic disk images for load and scale tests
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: gzip-compressed images, and a corpus in a ZIP archive
+    2026-10-16: ImageDisk containers
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  java.io.ByteArrayOutputStream;
+import  java.io.File;
+import  java.io.FileOutputStream;
+import  java.io.IOException;
+import  java.io.OutputStream;
+import  java.io.PrintWriter;
+import  java.nio.charset.StandardCharsets;
+import  java.util.Arrays;
+import  java.util.Random;
+import  java.util.zip.GZIPOutputStream;
+import  java.util.zip.ZipEntry;
+import  java.util.zip.ZipOutputStream;
+
+/** Generates valid disk images with synthetic files for the supported file systems:
+ *  <ul>
+ *  <li>dec-rx50 - CP/M directory on a DEC RX50 disk (80 tracks, 10 sectors of 512 bytes),
+ *  with the soft sector interleave of {@link Dec_rx50}, and with several extents for large files</li>
+ *  <li>ta-vs - TA VS20 disk (80 tracks, 2 heads, 9 sectors of 512 bytes) with a FAT</li>
+ *  <li>sinix-mx2 - TA VS20 geometry with a ustar archive starting at block 0x38</li>
+ *  <li>tar - plain ustar archive</li>
+ *  </ul>
+ *  The number of files, the range of the file sizes, and the degree of fragmentation
+ *  can be configured. The images are reproducible: the same seed yields the same image.
+ *  Files which do not fit on the disk any more are omitted.
+ *  The images can be written in raw, DSK, extended DSK or ImageDisk containers,
+ *  and a whole corpus of images can be written together with a list file for <code>-batch</code>.
+ *  The images may be gzip-compressed, or the corpus may be written into one ZIP archive.
+ *  @author Dr. Georg Fischer
+ */
+public class ImageGenerator {
+    public final static String CVSID = "@(#) $Id: ImageGenerator.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** code of the file system */
+    private String systemCode;
+    /** container format: "raw", "dsk", "edsk" or "imd" */
+    private String format;
+    /** compression of the images: "" (none), "gz" (each image) or "zip" (the whole corpus) */
+    private String compression;
+    /** number of files to be generated */
+    private int fileCount;
+    /** minimum file size in bytes */
+    private int minSize;
+    /** maximum file size in bytes */
+    private int maxSize;
+    /** percentage of the blocks which are allocated at random free positions */
+    private int fragmentation;
+    /** seed for the random generator */
+    private long seed;
+    /** number of files in the last generated image */
+    private int generatedCount;
+
+    /** disk geometry: tracks, heads, sectors per track, sector size, first sector id */
+    private int tracks, heads, sectors, sectorSize, firstSector;
+
+    /** DEC RX50: soft sector interleave, as in Dec_rx50 */
+    private static final int[] SKEW_TAB_50 = { 1, 3, 5, 7, 9, 2, 4, 6, 8, 10 };
+
+    /** words for file names and contents */
+    private static final String[] WORDS = new String[]
+            { "brief", "daten", "liste", "adresse", "rechnung", "angebot", "memo", "report"
+            , "budget", "kunde", "lager", "notiz", "termin", "vertrag", "protokoll", "tabelle"
+            };
+
+    /** extensions of the CP/M files */
+    private static final String[] CPM_EXTENSIONS = new String[] { "TXT", "DOC", "DAT", "BAS", "ASM" };
+
+    /** size of a DSK information block */
+    private static final int INFO_SIZE = 0x100;
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor with the default parameters: 16 files of 1..8192 bytes,
+     *  no fragmentation, raw container
+     *  @param systemCode code of the file system: "dec-rx50", "ta-vs", "sinix-mx2" or "tar"
+     *  @throws IllegalArgumentException if no images can be generated for the system
+     */
+    public ImageGenerator(String systemCode) {
+        this.systemCode = systemCode;
+        if (false) {
+        } else if (systemCode.equals("dec-rx50")) {
+            setGeometry(80, 1, 10, 512, 1);
+        } else if (systemCode.equals("ta-vs") || systemCode.equals("sinix-mx2")) {
+            setGeometry(80, 2,  9, 512, 1);
+        } else if (systemCode.equals("tar")) {
+            setGeometry( 0, 0,  0, 512, 1);
+        } else {
+            throw new IllegalArgumentException("cannot generate images for system \"" + systemCode + "\"");
+        }
+        format        = "raw";
+        compression   = "";
+        fileCount     = 16;
+        minSize       = 1;
+        maxSize       = 8192;
+        fragmentation = 0;
+        seed          = 4711L;
+    } // Constructor(1)
+
+    /** Sets the disk geometry
+     *  @param tracks number of tracks (cylinders)
+     *  @param heads number of heads (sides)
+     *  @param sectors number of sectors per track
+     *  @param sectorSize number of bytes per sector
+     *  @param firstSector id of the first sector in a track
+     */
+    private void setGeometry(int tracks, int heads, int sectors, int sectorSize, int firstSector) {
+        this.tracks      = tracks;
+        this.heads       = heads;
+        this.sectors     = sectors;
+        this.sectorSize  = sectorSize;
+        this.firstSector = firstSector;
+    } // setGeometry
+
+    //--------------------------
+    // Bean methods
+    //--------------------------
+    /** Sets the container format, and optionally the compression
+     *  @param format "raw", "dsk", "edsk" or "imd" (not for "tar"),
+     *  optionally followed by ".gz" (gzip-compressed images) or ".zip" (corpus in a ZIP archive),
+     *  for example "dsk.gz"
+     *  @throws IllegalArgumentException for an unknown format
+     */
+    public void setFormat(String format) {
+        String tcompression = "";
+        int dotPos = format.indexOf('.');
+        if (dotPos >= 0) {
+            tcompression = format.substring(dotPos + 1);
+            format       = format.substring(0, dotPos);
+            if (! tcompression.equals("gz") && ! tcompression.equals("zip")) {
+                throw new IllegalArgumentException("cannot generate compression \"" + tcompression + "\"");
+            }
+        }
+        if (! format.equals("raw") && (! (format.equals("dsk") || format.equals("edsk") || format.equals("imd"))
+                || systemCode.equals("tar"))) {
+            throw new IllegalArgumentException("cannot generate format \"" + format + "\" for system \"" + systemCode + "\"");
+        }
+        this.format      = format;
+        this.compression = tcompression;
+    } // setFormat
+
+    /** Gets the container format
+     *  @return "raw", "dsk", "edsk" or "imd"
+     */
+    public String getFormat() {
+        return format;
+    } // getFormat
+
+    /** Gets the code of the buffer which reads the generated images
+     *  @return "dsk", "imd" or "base"
+     */
+    public String getBufferCode() {
+        return format.equals("raw") ? "base" : format.equals("imd") ? "imd" : "dsk";
+    } // getBufferCode
+
+    /** Sets the number of files per image
+     *  @param fileCount number of files
+     */
+    public void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    } // setFileCount
+
+    /** Sets the range of the file sizes; the sizes are evenly distributed
+     *  @param minSize minimum file size in bytes, at least 1
+     *  @param maxSize maximum file size in bytes
+     */
+    public void setFileSize(int minSize, int maxSize) {
+        this.minSize = Math.max(minSize, 1);
+        this.maxSize = Math.max(maxSize, this.minSize);
+    } // setFileSize
+
+    /** Sets the degree of fragmentation (ignored for tar archives, which are always contiguous)
+     *  @param fragmentation percentage 0..100 of the blocks which are allocated
+     *  at a random free position instead of the next free position
+     */
+    public void setFragmentation(int fragmentation) {
+        this.fragmentation = Math.min(Math.max(fragmentation, 0), 100);
+    } // setFragmentation
+
+    /** Sets the seed for the random generator
+     *  @param seed start value
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    } // setSeed
+
+    /** Gets the number of files in the last generated image
+     *  @return number of files which fitted on the disk
+     */
+    public int getGeneratedCount() {
+        return generatedCount;
+    } // getGeneratedCount
+
+    /** Gets the file name of an image in a corpus
+     *  @param index number of the image
+     *  @return for example "dec-rx50-0003.dsk", or "dec-rx50-0003.dsk.gz" for gzip-compressed images
+     */
+    public String getFileName(int index) {
+        return systemCode + String.format("-%04d.", index)
+                + (systemCode.equals("tar") ? "tar" : format.equals("raw") ? "img" : format)
+                + (compression.equals("gz") ? ".gz" : "");
+    } // getFileName
+
+    //--------------------------
+    // Generation
+    //--------------------------
+    /** Generates an image
+     *  @return content of the image file
+     */
+    public byte[] generate() {
+        Random random = new Random(seed);
+        byte[] result = null;
+        if (false) {
+        } else if (systemCode.equals("dec-rx50")) {
+            result = generateRx50(random);
+        } else if (systemCode.equals("ta-vs")) {
+            result = generateTaVs(random);
+        } else if (systemCode.equals("sinix-mx2")) {
+            result = new byte[tracks * heads * sectors * sectorSize];
+            int start = 0x38 * 512;
+            byte[] archive = generateTar(random, result.length - start);
+            System.arraycopy(archive, 0, result, start, archive.length);
+        } else if (systemCode.equals("tar")) {
+            result = generateTar(random, Integer.MAX_VALUE);
+        }
+        if (false) {
+        } else if (format.equals("imd")) {
+            result = wrapImd(result);
+        } else if (! format.equals("raw")) {
+            result = wrapDsk(result, format.equals("edsk"));
+        }
+        return result;
+    } // generate
+
+    /** Generates an image and writes it to a file
+     *  @param file target file
+     *  @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            if (compression.equals("gz")) {
+                out = new GZIPOutputStream(out, 0x10000);
+            }
+            out.write(generate());
+        } finally {
+            out.close();
+        }
+    } // write
+
+    /** Writes a corpus of images with consecutive seeds into a directory,
+     *  together with a list file <em>images.lst</em> for <code>-batch</code>
+     *  (lines: filename buffer system).
+     *  With compression "zip", the images are written into one ZIP archive
+     *  <em>system-format.zip</em> for <code>-zip</code> instead.
+     *  @param dir target directory, which is created if necessary
+     *  @param count number of images
+     *  @return the list file, or the ZIP archive
+     *  @throws IOException if a file cannot be written
+     */
+    public File writeCorpus(File dir, int count) throws IOException {
+        dir.mkdirs();
+        if (compression.equals("zip")) {
+            return writeZip(new File(dir, systemCode + "-" + format + ".zip"), count);
+        }
+        long seed0 = seed;
+        File listFile = new File(dir, "images.lst");
+        PrintWriter list = new PrintWriter(listFile, "UTF-8");
+        try {
+            int index = 0;
+            while (index < count) {
+                File file = new File(dir, getFileName(index));
+                setSeed(seed0 + index);
+                write(file);
+                list.println(file.getPath() + " " + getBufferCode() + " " + systemCode);
+                index ++;
+            } // while index
+        } finally {
+            list.close();
+            setSeed(seed0);
+        }
+        return listFile;
+    } // writeCorpus
+
+    /** Writes a corpus of images with consecutive seeds into a ZIP archive
+     *  @param zipFile target file
+     *  @param count number of images
+     *  @return the ZIP archive
+     *  @throws IOException if the file cannot be written
+     */
+    private File writeZip(File zipFile, int count) throws IOException {
+        long seed0 = seed;
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            int index = 0;
+            while (index < count) {
+                setSeed(seed0 + index);
+                zip.putNextEntry(new ZipEntry(getFileName(index)));
+                zip.write(generate());
+                zip.closeEntry();
+                index ++;
+            } // while index
+        } finally {
+            zip.close();
+            setSeed(seed0);
+        }
+        return zipFile;
+    } // writeZip
+
+    //--------------------------
+    // File contents
+    //--------------------------
+    /** Gets a random file size in the configured range
+     *  @param random random generator
+     *  @return number of bytes
+     */
+    private int nextSize(Random random) {
+        return minSize + (int) ((random.nextDouble()) * (maxSize - minSize + 1));
+    } // nextSize
+
+    /** Generates the text of a file: lines of random words
+     *  @param random random generator
+     *  @param size number of bytes
+     *  @param newline line separator
+     *  @return text with exactly <em>size</em> bytes
+     */
+    private byte[] nextContent(Random random, int size, String newline) {
+        byte[] result = new byte[size];
+        int pos = 0;
+        int lineLen = 0;
+        while (pos < size) {
+            String word = lineLen >= 60 ? newline : WORDS[random.nextInt(WORDS.length)] + " ";
+            lineLen = word.equals(newline) ? 0 : lineLen + word.length();
+            int ichar = 0;
+            while (ichar < word.length() && pos < size) {
+                result[pos ++] = (byte) word.charAt(ichar ++);
+            } // while ichar
+        } // while pos
+        return result;
+    } // nextContent
+
+    /** Gets a word for a file name
+     *  @param random random generator
+     *  @param maxLen maximum length of the word
+     *  @return a (possibly truncated) word
+     */
+    private String nextWord(Random random, int maxLen) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        return word.length() > maxLen ? word.substring(0, maxLen) : word;
+    } // nextWord
+
+    //--------------------------
+    // Block allocation
+    //--------------------------
+    /** Allocates free blocks: either the lowest free block, or, with
+     *  the probability of the fragmentation, a random free block
+     *  @param random random generator
+     *  @param free flags for the free blocks, which are updated
+     *  @param count number of blocks to be allocated
+     *  @return block numbers, or null if there are not enough free blocks
+     */
+    private int[] allocate(Random random, boolean[] free, int count) {
+        int freeCount = 0;
+        for (boolean flag : free) {
+            if (flag) {
+                freeCount ++;
+            }
+        } // for flag
+        int[] result = null;
+        if (count <= freeCount) {
+            result = new int[count];
+            int iblock = 0;
+            while (iblock < count) {
+                int skip = random.nextInt(100) < fragmentation ? random.nextInt(freeCount) : 0;
+                int blockNo = 0;
+                while (! free[blockNo] || skip > 0) {
+                    if (free[blockNo]) {
+                        skip --;
+                    }
+                    blockNo ++;
+                } // while blockNo
+                free[blockNo] = false;
+                freeCount --;
+                result[iblock ++] = blockNo;
+            } // while iblock
+        }
+        return result;
+    } // allocate
+
+    //--------------------------
+    // CP/M on DEC RX50
+    //--------------------------
+    /** Generates a linear DEC RX50 image with a CP/M directory in blocks 0 and 1
+     *  @param random random generator
+     *  @return image with 80 tracks of 10 sectors
+     */
+    private byte[] generateRx50(Random random) {
+        int blockSize = 2048;
+        int recordSize = 128; // CP/M record
+        byte[] flat = new byte[tracks * heads * sectors * sectorSize];
+        Arrays.fill(flat, (byte) 0xe5); // formatted
+        byte[] directory = new byte[2 * blockSize];
+        Arrays.fill(directory, (byte) 0xe5);
+        int maxEntries = directory.length / 32;
+        boolean[] free = new boolean[(tracks - 2) * sectors * sectorSize / blockSize]; // tracks 0, 1 are reserved
+        Arrays.fill(free, 2, free.length, true); // blocks 0, 1 = directory
+        int entryNo = 0;
+        generatedCount = 0;
+        boolean busy = true;
+        while (busy && generatedCount < fileCount) {
+            int size = nextSize(random);
+            int records = (size + recordSize - 1) / recordSize;
+            int blockCount = (size + blockSize - 1) / blockSize;
+            int entryCount = (blockCount + 15) / 16;
+            int[] blocks = entryNo + entryCount <= maxEntries ? allocate(random, free, blockCount) : null;
+            if (blocks == null) {
+                busy = false;
+            } else {
+                byte[] content = Arrays.copyOf(nextContent(random, size, "\r\n"), blockCount * blockSize);
+                Arrays.fill(content, size, content.length, (byte) 0x1a); // CP/M end of file
+                String name = String.format("%-8s%-3s"
+                        , (nextWord(random, 4) + String.format("%04d", generatedCount)).toUpperCase()
+                        , CPM_EXTENSIONS[random.nextInt(CPM_EXTENSIONS.length)]);
+                int ientry = 0;
+                while (ientry < entryCount) { // 16 blocks = 2 logical extents of 16 kB per entry
+                    int dirPos = entryNo * 32;
+                    Arrays.fill(directory, dirPos, dirPos + 32, (byte) 0);
+                    byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+                    System.arraycopy(nameBytes, 0, directory, dirPos + 1, 11);
+                    int endRecord = Math.min(records, (ientry + 1) * 256); // behind this entry
+                    int extent = (endRecord - 1) / 128; // last logical extent in this entry
+                    directory[dirPos + 0x0c] = (byte) (extent & 0x1f);
+                    directory[dirPos + 0x0e] = (byte) (extent >> 5);
+                    directory[dirPos + 0x0f] = (byte) (endRecord - extent * 128);
+                    int iblock = ientry * 16;
+                    while (iblock < Math.min(blockCount, (ientry + 1) * 16)) {
+                        directory[dirPos + 16 + iblock % 16] = (byte) blocks[iblock];
+                        putRx50Block(flat, blocks[iblock], content, iblock * blockSize, blockSize);
+                        iblock ++;
+                    } // while iblock
+                    entryNo ++;
+                    ientry ++;
+                } // while ientry
+                generatedCount ++;
+            }
+        } // while busy
+        putRx50Block(flat, 0, directory, 0, blockSize);
+        putRx50Block(flat, 1, directory, blockSize, blockSize);
+        return flat;
+    } // generateRx50
+
+    /** Stores a block in its interleaved sectors, as read by {@link Dec_rx50#getBlock}
+     *  @param flat linear image
+     *  @param blockNo logical block number
+     *  @param src source array
+     *  @param srcPos start of the block in <em>src</em>
+     *  @param blockSize number of bytes in a block
+     */
+    private void putRx50Block(byte[] flat, int blockNo, byte[] src, int srcPos, int blockSize) {
+        int sectCount = blockSize / sectorSize;
+        int logSect = blockNo * sectCount;
+        int isect = 0;
+        while (isect < sectCount) {
+            int track    = 2 + logSect / sectors;
+            int physSect = SKEW_TAB_50[logSect % SKEW_TAB_50.length];
+            System.arraycopy(src, srcPos + isect * sectorSize, flat, (track * sectors + physSect - 1) * sectorSize, sectorSize);
+            logSect ++;
+            isect ++;
+        } // while isect
+    } // putRx50Block
+
+    //--------------------------
+    // TA VS20
+    //--------------------------
+    /** Generates a linear TA VS20 image: the FAT starts at 0x202, the directory at 0x400,
+     *  both in the 2 blocks of 4 kB at the start of the disk.
+     *  Block numbers in the directory and in the FAT are doubled.
+     *  @param random random generator
+     *  @return image with 80 tracks, 2 heads and 9 sectors
+     */
+    private byte[] generateTaVs(Random random) {
+        int blockSize = 4096;
+        int maxChain = 32; // as in Ta_vs.followFat
+        byte[] flat = new byte[tracks * heads * sectors * sectorSize];
+        byte[] signature = { 0x02, 0x00, 0x01, 0x20 };
+        System.arraycopy(signature, 0, flat, 0x202, 4);
+        System.arraycopy(signature, 0, flat, 0x01e, 4);
+        int maxEntries = (2 * blockSize - 0x400) / 32;
+        boolean[] free = new boolean[Math.min(flat.length / blockSize, (0x400 - 0x202) / 2)];
+        Arrays.fill(free, 2, free.length, true); // blocks 0, 1 = FAT and directory
+        generatedCount = 0;
+        boolean busy = true;
+        while (busy && generatedCount < fileCount && generatedCount < maxEntries) {
+            int size = Math.min(nextSize(random), maxChain * blockSize);
+            int blockCount = (size + blockSize - 1) / blockSize;
+            int[] blocks = allocate(random, free, blockCount);
+            if (blocks == null) {
+                busy = false;
+            } else {
+                byte[] content = nextContent(random, size, "\r\n");
+                int dirPos = 0x400 + generatedCount * 32;
+                String name = nextWord(random, 10) + String.format(" %04d", generatedCount);
+                name = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                byte[] nameBytes = String.format("%-16s", name).getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(nameBytes, 0, flat, dirPos, 16);
+                flat[dirPos + 0x10] = 'A';
+                flat[dirPos + 0x11] = (byte) ((blocks[0] * 2) & 0xff);
+                flat[dirPos + 0x12] = (byte) ((blocks[0] * 2) >> 8);
+                flat[dirPos + 0x13] = 1; // valid
+                flat[dirPos + 0x14] = (byte) (1 + random.nextInt(28)); // date
+                flat[dirPos + 0x15] = (byte) (1 + random.nextInt(12));
+                flat[dirPos + 0x16] = (byte) 0x89;
+                int iblock = 0;
+                while (iblock < blockCount) {
+                    int blockNo2 = blocks[iblock] * 2;
+                    int fatValue = iblock < blockCount - 1
+                            ? blocks[iblock + 1] * 2 // even: next block
+                            : 2 * (size - iblock * blockSize) + 1; // odd: bytes in the last block
+                    flat[0x202 + blockNo2    ] = (byte) (fatValue & 0xff);
+                    flat[0x202 + blockNo2 + 1] = (byte) (fatValue >> 8);
+                    System.arraycopy(content, iblock * blockSize, flat, blocks[iblock] * blockSize
+                            , Math.min(blockSize, size - iblock * blockSize));
+                    iblock ++;
+                } // while iblock
+                generatedCount ++;
+            }
+        } // while busy
+        return flat;
+    } // generateTaVs
+
+    //--------------------------
+    // tar archive
+    //--------------------------
+    /** Generates a ustar archive with contiguous files, terminated by 2 empty blocks
+     *  @param random random generator
+     *  @param maxLength maximum length of the archive
+     *  @return archive
+     */
+    private byte[] generateTar(Random random, int maxLength) {
+        int blockSize = 512;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length = 2 * blockSize; // for the trailer
+        generatedCount = 0;
+        boolean busy = true;
+        while (busy && generatedCount < fileCount) {
+            int size = nextSize(random);
+            int dataLength = (size + blockSize - 1) / blockSize * blockSize;
+            if (length + blockSize + dataLength > maxLength) {
+                busy = false;
+            } else {
+                byte[] header = new byte[blockSize];
+                putAscii(header,   0, "usr/" + nextWord(random, 8) + "/"
+                        + nextWord(random, 8) + String.format("%04d.txt", generatedCount));
+                putAscii(header, 100, "0000644");
+                putAscii(header, 108, "0000144");
+                putAscii(header, 116, "0000012");
+                putAscii(header, 124, String.format("%011o", size));
+                putAscii(header, 136, String.format("%011o", 500000000L + random.nextInt(100000000)));
+                header[156] = '0';
+                putAscii(header, 257, "ustar");
+                putAscii(header, 263, "00");
+                Arrays.fill(header, 148, 156, (byte) ' ');
+                int checksum = 0;
+                for (byte by : header) {
+                    checksum += by & 0xff;
+                } // for by
+                putAscii(header, 148, String.format("%06o", checksum));
+                header[154] = 0;
+                out.write(header, 0, blockSize);
+                out.write(Arrays.copyOf(nextContent(random, size, "\n"), dataLength), 0, dataLength);
+                length += blockSize + dataLength;
+                generatedCount ++;
+            }
+        } // while busy
+        out.write(new byte[2 * blockSize], 0, 2 * blockSize);
+        return out.toByteArray();
+    } // generateTar
+
+    /** Stores ASCII characters in an array
+     *  @param dest destination array
+     *  @param pos position in <em>dest</em>
+     *  @param text characters to be stored
+     */
+    private static void putAscii(byte[] dest, int pos, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, dest, pos, bytes.length);
+    } // putAscii
+
+    //--------------------------
+    // DSK container
+    //--------------------------
+    /** Wraps a linear image into a DSK container, as read by <code>DskBuffer</code>,
+     *  with the tracks of all heads in ascending order
+     *  @param flat linear image
+     *  @param extended whether an extended DSK container should be written
+     *  @return DSK container
+     */
+    private byte[] wrapDsk(byte[] flat, boolean extended) {
+        int trackSize = sectors * sectorSize;
+        int trackCount = tracks * heads;
+        byte[] result = new byte[INFO_SIZE + trackCount * (INFO_SIZE + trackSize)];
+        putAscii(result, 0, extended
+                ? "EXTENDED CPC DSK File\r\nDisk-Info\r\n"
+                : "MV - CPCEMU Disk-File\r\nDisk-Info\r\n");
+        putAscii(result, 0x22, "flodskim");
+        result[0x30] = (byte) tracks;
+        result[0x31] = (byte) heads;
+        if (! extended) {
+            result[0x32] = (byte) ((INFO_SIZE + trackSize) & 0xff);
+            result[0x33] = (byte) ((INFO_SIZE + trackSize) >> 8);
+        }
+        int sizeCode = Integer.numberOfTrailingZeros(sectorSize / 128);
+        int itrack = 0;
+        while (itrack < trackCount) {
+            if (extended) { // high bytes of the track sizes
+                result[0x34 + itrack] = (byte) ((INFO_SIZE + trackSize) >> 8);
+            }
+            int tib = INFO_SIZE + itrack * (INFO_SIZE + trackSize);
+            putAscii(result, tib, "Track-Info\r\n");
+            result[tib + 0x10] = (byte) (itrack / heads);
+            result[tib + 0x11] = (byte) (itrack % heads);
+            result[tib + 0x14] = (byte) sizeCode;
+            result[tib + 0x15] = (byte) sectors;
+            result[tib + 0x16] = 0x4e; // gap
+            result[tib + 0x17] = (byte) 0xe5; // filler
+            int isect = 0;
+            while (isect < sectors) {
+                int sinfo = tib + 0x18 + 8 * isect;
+                result[sinfo    ] = (byte) (itrack / heads);
+                result[sinfo + 1] = (byte) (itrack % heads);
+                result[sinfo + 2] = (byte) (firstSector + isect);
+                result[sinfo + 3] = (byte) sizeCode;
+                if (extended) {
+                    result[sinfo + 6] = (byte) (sectorSize & 0xff);
+                    result[sinfo + 7] = (byte) (sectorSize >> 8);
+                }
+                isect ++;
+            } // while isect
+            System.arraycopy(flat, itrack * trackSize, result, tib + INFO_SIZE, trackSize);
+            itrack ++;
+        } // while itrack
+        return result;
+    } // wrapDsk
+
+    //--------------------------
+    // ImageDisk container
+    //--------------------------
+    /** Wraps a linear image into an ImageDisk container, as read by <code>ImdBuffer</code>,
+     *  with the tracks of all heads in ascending order. Sectors with a single byte value
+     *  (for example the formatted, unused ones) are written compressed.
+     *  @param flat linear image
+     *  @return IMD container
+     */
+    private byte[] wrapImd(byte[] flat) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(flat.length + 0x1000);
+        byte[] header = ("IMD 1.18: 16/10/2026 00:00:00\r\nflodskim\r\n").getBytes(StandardCharsets.US_ASCII);
+        out.write(header, 0, header.length);
+        out.write(0x1a); // end of the comment
+        int sizeCode = Integer.numberOfTrailingZeros(sectorSize / 128);
+        int trackSize = sectors * sectorSize;
+        int trackCount = tracks * heads;
+        int itrack = 0;
+        while (itrack < trackCount) {
+            out.write(5); // mode: 250 kbps MFM
+            out.write(itrack / heads);
+            out.write(itrack % heads);
+            out.write(sectors);
+            out.write(sizeCode);
+            int isect = 0;
+            while (isect < sectors) { // sector numbering map
+                out.write(firstSector + isect);
+                isect ++;
+            } // while isect
+            isect = 0;
+            while (isect < sectors) { // data records
+                int start = itrack * trackSize + isect * sectorSize;
+                int ipos = start + 1;
+                while (ipos < start + sectorSize && flat[ipos] == flat[start]) {
+                    ipos ++;
+                } // while same byte
+                if (ipos == start + sectorSize) { // compressed
+                    out.write(2);
+                    out.write(flat[start]);
+                } else { // normal data
+                    out.write(1);
+                    out.write(flat, start, sectorSize);
+                }
+                isect ++;
+            } // while isect
+            itrack ++;
+        } // while itrack
+        return out.toByteArray();
+    } // wrapImd
+
+} // ImageGenerator
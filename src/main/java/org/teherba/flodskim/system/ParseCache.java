@@ -0,0 +1,427 @@
+/*  Persistent cache for the parsed directories of disk images
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: index compacted by evict, and counted in the total size
+    2026-10-16: VERSION 2 with long file sizes
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  org.teherba.flodskim.buffer.BaseBuffer;
+import  org.teherba.flodskim.system.DirectoryEntry;
+import  java.io.BufferedInputStream;
+import  java.io.BufferedOutputStream;
+import  java.io.BufferedReader;
+import  java.io.DataInputStream;
+import  java.io.DataOutputStream;
+import  java.io.File;
+import  java.io.FileInputStream;
+import  java.io.FileOutputStream;
+import  java.io.FileReader;
+import  java.io.FileWriter;
+import  java.io.IOException;
+import  java.io.PrintWriter;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.FileChannel;
+import  java.security.MessageDigest;
+import  java.util.ArrayList;
+import  java.util.Arrays;
+import  java.util.HashMap;
+import  java.util.HashSet;
+import  java.util.Iterator;
+import  java.util.List;
+import  org.apache.logging.log4j.Logger;
+import  org.apache.logging.log4j.LogManager;
+
+/** Persistent cache for the parsed directories of disk images, which are assumed to be immutable.
+ *  An entry holds the disk geometry and all directory entries with their block lists.
+ *  It is keyed by a hash of the image's content, the buffer code and the file system code.
+ *  <p>
+ *  The content hash of a file is remembered in an index together with the file's
+ *  path, size and modification time, such that the file must be read only once.
+ *  The cache files are evicted in the order of their last use
+ *  when the total size of the cache (including the index) exceeds a limit.
+ *  The index is then rewritten without the lines for evicted hashes,
+ *  and without older lines for the same path.
+ *  @author Dr. Georg Fischer
+ */
+public class ParseCache {
+    public final static String CVSID = "@(#) $Id: ParseCache.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** log4j logger (category) */
+    private Logger log;
+
+    /** name of the index file which maps (path, size, mtime) to the content hash */
+    private static final String INDEX_NAME = "index.txt";
+
+    /** file name extension of the cache entries */
+    private static final String SUFFIX = ".fdc";
+
+    /** version of the format of the cache entries */
+    private static final int VERSION = 2;
+
+    /** directory where the cache is stored */
+    private File cacheDir;
+
+    /** maximum total size of the cache entries and the index (in bytes) */
+    private long maxBytes;
+
+    /** current total size of the cache entries and the index (in bytes) */
+    private long totalBytes;
+
+    /** current size of the index file (in bytes) */
+    private long indexBytes;
+
+    /** current number of lines in the index file */
+    private int indexLines;
+
+    /** maps "path\tsize\tmtime" to the content hash */
+    private HashMap<String, String> hashIndex;
+
+    /** maps the path to the current key "path\tsize\tmtime" in {@link #hashIndex} */
+    private HashMap<String, String> pathKeys;
+
+    //--------------------------------
+    // Constructor
+    //--------------------------------
+    /** Constructor which opens (or creates) a cache directory
+     *  @param cacheDir directory where the cache is stored
+     *  @param maxBytes maximum total size of the cache entries and the index (in bytes)
+     */
+    public ParseCache(File cacheDir, long maxBytes) {
+        log = LogManager.getLogger(ParseCache.class.getName());
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        hashIndex  = new HashMap<String, String>(1024);
+        pathKeys   = new HashMap<String, String>(1024);
+        totalBytes = 0L;
+        indexBytes = 0L;
+        indexLines = 0;
+        try {
+            cacheDir.mkdirs();
+            File indexFile = new File(cacheDir, INDEX_NAME);
+            if (indexFile.exists()) {
+                BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    int tabPos = line.indexOf('\t');
+                    indexLines ++;
+                    if (tabPos > 0) {
+                        putKey(line.substring(tabPos + 1), line.substring(0, tabPos)); // later lines replace older ones
+                    }
+                } // while lines
+                reader.close();
+                indexBytes = indexFile.length();
+                totalBytes += indexBytes;
+            }
+            File[] files = listEntries();
+            int ifile = 0;
+            while (ifile < files.length) {
+                totalBytes += files[ifile].length();
+                ifile ++;
+            } // while ifile
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+    } // Constructor(2)
+
+    /** Gets all cache entries
+     *  @return array of the cache files
+     */
+    private File[] listEntries() {
+        File[] result = cacheDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return result != null ? result : new File[0];
+    } // listEntries
+
+    //--------------------------------
+    // Content hash
+    //--------------------------------
+    /** Gets the content hash of an image file.
+     *  The file is only read if its path, size or modification time are not yet in the index.
+     *  @param file the image file
+     *  @return hexadecimal SHA-256 of the file's content, or null if the file cannot be read
+     */
+    public String getHash(File file) {
+        String result = null;
+        try {
+            String key = file.getCanonicalPath() + "\t" + file.length() + "\t" + file.lastModified();
+            synchronized (this) {
+                result = hashIndex.get(key);
+            }
+            if (result == null) {
+                result = computeHash(file);
+                synchronized (this) {
+                    putKey(key, result);
+                    File indexFile = new File(cacheDir, INDEX_NAME);
+                    PrintWriter writer = new PrintWriter(new FileWriter(indexFile, true));
+                    writer.println(result + "\t" + key);
+                    writer.close();
+                    totalBytes += indexFile.length() - indexBytes;
+                    indexBytes  = indexFile.length();
+                    indexLines ++;
+                    if (indexLines > 2 * pathKeys.size() + 64) { // many stale lines, for example of touched files
+                        compactIndex(key);
+                    }
+                }
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+        }
+        return result;
+    } // getHash
+
+    /** Stores a key in the {@link #hashIndex}, and removes an older key for the same path
+     *  @param key "path\tsize\tmtime"
+     *  @param hash content hash of the file
+     */
+    private void putKey(String key, String hash) {
+        String oldKey = pathKeys.put(key.substring(0, key.indexOf('\t')), key);
+        if (oldKey != null && ! oldKey.equals(key)) {
+            hashIndex.remove(oldKey);
+        }
+        hashIndex.put(key, hash);
+    } // putKey
+
+    /** Computes the SHA-256 of the content of a file
+     *  @param file the file to be read
+     *  @return hexadecimal hash
+     *  @throws Exception if the file cannot be read
+     */
+    private String computeHash(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            ByteBuffer chunk = ByteBuffer.allocate(0x10000);
+            while (channel.read(chunk) >= 0) {
+                chunk.flip();
+                digest.update(chunk);
+                chunk.clear();
+            } // while not EOF
+        } finally {
+            channel.close();
+        }
+        StringBuffer result = new StringBuffer(64);
+        byte[] hash = digest.digest();
+        int ibyte = 0;
+        while (ibyte < hash.length) {
+            result.append(String.format("%02x", hash[ibyte] & 0xff));
+            ibyte ++;
+        } // while ibyte
+        return result.toString();
+    } // computeHash
+
+    //--------------------------------
+    // Cache entries
+    //--------------------------------
+    /** Gets the file of a cache entry
+     *  @param hash content hash of the image
+     *  @param bufferCode code of the container buffer
+     *  @param systemCode code of the file system
+     *  @return file in the cache directory
+     */
+    private File getEntryFile(String hash, String bufferCode, String systemCode) {
+        return new File(cacheDir, hash + "-" + bufferCode + "-" + systemCode + SUFFIX);
+    } // getEntryFile
+
+    /** Gets the parsed directory of an image from the cache
+     *  @param hash content hash of the image
+     *  @param bufferCode code of the container buffer
+     *  @param systemCode code of the file system
+     *  @param container if not null, the cached disk geometry is stored in this container
+     *  @return list of all directory entries (including the deleted ones), or null if not cached
+     */
+    public List<DirectoryEntry> get(String hash, String bufferCode, String systemCode, BaseBuffer container) {
+        List<DirectoryEntry> result = null;
+        File entryFile = getEntryFile(hash, bufferCode, systemCode);
+        if (hash != null && entryFile.exists()) {
+            try {
+                DataInputStream reader = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)));
+                try {
+                    if (reader.readInt() != VERSION) {
+                        throw new IOException("outdated cache entry " + entryFile.getName());
+                    }
+                    int maxCylinder = reader.readInt();
+                    int maxHead     = reader.readInt();
+                    int maxSector   = reader.readInt();
+                    int sectorSize  = reader.readInt();
+                    if (container != null) {
+                        container.setMaxCylinder(maxCylinder);
+                        container.setMaxHead    (maxHead    );
+                        container.setMaxSector  (maxSector  );
+                        container.setSectorSize (sectorSize );
+                    }
+                    int count = reader.readInt();
+                    result = new ArrayList<DirectoryEntry>(count);
+                    while (count > 0) {
+                        DirectoryEntry diren = new DirectoryEntry();
+                        diren.setBaseFileName(reader.readUTF());
+                        diren.setExtension   (reader.readUTF());
+                        diren.setExtentNumber(reader.readInt());
+                        diren.setFileSize    (reader.readLong());
+                        diren.setDeleted     (reader.readBoolean());
+                        int blockCount = reader.readInt();
+                        while (blockCount > 0) {
+                            diren.addBlock(reader.readInt());
+                            blockCount --;
+                        } // while blockCount
+                        result.add(diren);
+                        count --;
+                    } // while count
+                } finally {
+                    reader.close();
+                }
+                entryFile.setLastModified(System.currentTimeMillis()); // for LRU eviction
+            } catch (Exception exc) {
+                log.error(exc.getMessage(), exc);
+                result = null;
+                remove(entryFile);
+            }
+        } // exists
+        return result;
+    } // get
+
+    /** Stores the parsed directory of an image in the cache, and evicts old entries if necessary
+     *  @param hash content hash of the image
+     *  @param bufferCode code of the container buffer
+     *  @param systemCode code of the file system
+     *  @param container container with the disk geometry
+     *  @param entries list of all directory entries (including the deleted ones)
+     */
+    public void put(String hash, String bufferCode, String systemCode, BaseBuffer container, List<DirectoryEntry> entries) {
+        if (hash == null) {
+            return;
+        }
+        File entryFile = getEntryFile(hash, bufferCode, systemCode);
+        File tempFile  = new File(cacheDir, entryFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                writer.writeInt(VERSION);
+                writer.writeInt(container.getMaxCylinder());
+                writer.writeInt(container.getMaxHead    ());
+                writer.writeInt(container.getMaxSector  ());
+                writer.writeInt(container.getSectorSize ());
+                writer.writeInt(entries.size());
+                Iterator<DirectoryEntry> iter = entries.iterator();
+                while (iter.hasNext()) {
+                    DirectoryEntry diren = iter.next();
+                    writer.writeUTF    (diren.getBaseFileName());
+                    writer.writeUTF    (diren.getExtension   ());
+                    writer.writeInt    (diren.getExtentNumber());
+                    writer.writeLong   (diren.getFileSize    ());
+                    writer.writeBoolean(diren.isDeleted      ());
+                    int blockCount = diren.getBlockCount();
+                    writer.writeInt    (blockCount);
+                    int iblock = 0;
+                    while (iblock < blockCount) {
+                        writer.writeInt(diren.getBlock(iblock));
+                        iblock ++;
+                    } // while blocks
+                } // while iter
+            } finally {
+                writer.close();
+            }
+            synchronized (this) {
+                if (entryFile.exists()) {
+                    totalBytes -= entryFile.length();
+                }
+                if (tempFile.renameTo(entryFile)) {
+                    totalBytes += entryFile.length();
+                } else {
+                    tempFile.delete();
+                }
+                if (totalBytes > maxBytes) {
+                    evict();
+                }
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            tempFile.delete();
+        }
+    } // put
+
+    /** Removes a cache entry
+     *  @param entryFile file of the cache entry
+     */
+    private synchronized void remove(File entryFile) {
+        long length = entryFile.length();
+        if (entryFile.delete()) {
+            totalBytes -= length;
+        }
+    } // remove
+
+    /** Deletes the least recently used cache entries until the total size is below the limit,
+     *  and rewrites the index
+     */
+    private synchronized void evict() {
+        File[] files = listEntries();
+        Arrays.sort(files, (file1, file2) -> Long.compare(file1.lastModified(), file2.lastModified()));
+        int ifile = 0;
+        while (totalBytes > maxBytes && ifile < files.length) {
+            remove(files[ifile]);
+            ifile ++;
+        } // while evicting
+        compactIndex(null);
+    } // evict
+
+    /** Rewrites the index with the current key of each path,
+     *  but only for the hashes which still have a cache entry
+     *  @param keepKey key which is kept even if its hash has no cache entry yet, or null
+     */
+    private synchronized void compactIndex(String keepKey) {
+        HashSet<String> hashes = new HashSet<String>(256);
+        File[] files = listEntries();
+        int ifile = 0;
+        while (ifile < files.length) {
+            String name = files[ifile].getName();
+            hashes.add(name.substring(0, Math.max(name.indexOf('-'), 0)));
+            ifile ++;
+        } // while ifile
+        File indexFile = new File(cacheDir, INDEX_NAME);
+        File tempFile  = new File(cacheDir, INDEX_NAME + ".tmp");
+        int lineCount  = 0;
+        try {
+            PrintWriter writer = new PrintWriter(new FileWriter(tempFile, false));
+            try {
+                Iterator<String> iter = pathKeys.values().iterator();
+                while (iter.hasNext()) {
+                    String key  = iter.next();
+                    String hash = hashIndex.get(key);
+                    if (hashes.contains(hash) || key.equals(keepKey)) {
+                        writer.println(hash + "\t" + key);
+                        lineCount ++;
+                    } else { // evicted - forget it
+                        hashIndex.remove(key);
+                        iter.remove();
+                    }
+                } // while iter
+            } finally {
+                writer.close();
+            }
+            if (tempFile.renameTo(indexFile)) {
+                totalBytes += indexFile.length() - indexBytes;
+                indexBytes  = indexFile.length();
+                indexLines  = lineCount;
+            } else {
+                tempFile.delete();
+            }
+        } catch (Exception exc) {
+            log.error(exc.getMessage(), exc);
+            tempFile.delete();
+        }
+    } // compactIndex
+
+} // ParseCache
@@ -1,5 +1,6 @@
 /*  Class for a Sinix tar file system structure on MX-2 floppy disks
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: long dirOffset
     2017-05-29: javadoc 1.8
     2014-12-04, Georg Fischer: copied from Dex_rx50
 */
@@ -79,7 +80,7 @@ public class Sinix_mx2 extends Tar {
     /** Fills the directory by reading blocks from the container buffer
      */
     public void fillDirectory() {
-        setDirOffset(getDirStartBlock() * getBlockSize());
+        setDirOffset((long) getDirStartBlock() * getBlockSize());
         if (debug > 0) {
             System.err.println("Sinix_mx2.fillDirectory, dirOffset = " + String.format("0x%x", getDirOffset()));
         }
@@ -0,0 +1,173 @@
+/*  Table-driven single byte character set of a file system
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer: extracted from BaseSystem.initCharTable
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  java.nio.ByteBuffer;
+import  java.nio.CharBuffer;
+import  java.nio.charset.Charset;
+import  java.nio.charset.CharsetDecoder;
+import  java.nio.charset.CharsetEncoder;
+import  java.nio.charset.CoderResult;
+
+/** Immutable single byte character set which maps the 256 byte values
+ *  of a file system to Java characters by a table.
+ *  One instance per file system type is shared by all {@link BaseSystem} instances.
+ *  The decoder works on whole arrays, such that it can be used for file contents
+ *  (for example with an <code>InputStreamReader</code>) as well as for names.
+ *  Encoding is not supported.
+ *  @author Dr. Georg Fischer
+ */
+public class SystemCharset extends Charset {
+    public final static String CVSID = "@(#) $Id: SystemCharset.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** Character set which maps each byte to the character with the same code (ISO-8859-1) */
+    public static final SystemCharset IDENTITY = new SystemCharset("x-flodskim-base", identityTable());
+
+    /** Table which maps system bytes to Java characters */
+    private final char[] table;
+
+    //--------------------------------
+    // Construction
+    //--------------------------------
+    /** Constructor
+     *  @param canonicalName name of the character set, for example "x-flodskim-ta-vs"
+     *  @param table 256 characters for the byte values 0x00..0xff; the array is copied
+     */
+    public SystemCharset(String canonicalName, char[] table) {
+        super(canonicalName, new String[0]);
+        if (table.length != 256) {
+            throw new IllegalArgumentException("character table must have 256 elements");
+        }
+        this.table = table.clone();
+    } // Constructor
+
+    /** Gets a new table which maps each byte to the character with the same code,
+     *  to be modified for a specific character set
+     *  @return array of 256 characters
+     */
+    public static char[] identityTable() {
+        char[] result = new char[256];
+        int ichar = 0;
+        while (ichar < 256) {
+            result[ichar] = (char) ichar;
+            ichar ++;
+        } // while ichar
+        return result;
+    } // identityTable
+
+    //--------------------------
+    // Access methods
+    //--------------------------
+    /** Translates a single byte
+     *  @param code byte value (only the low 8 bits are used)
+     *  @return Java character
+     */
+    public char decode(int code) {
+        return table[code & 0xff];
+    } // decode(1)
+
+    /** Translates a byte subarray into a character array
+     *  @param src source array
+     *  @param srcPos first byte position
+     *  @param dest destination array
+     *  @param destPos first character position in <em>dest</em>
+     *  @param len number of bytes to be translated
+     */
+    public void decode(byte[] src, int srcPos, char[] dest, int destPos, int len) {
+        int end = srcPos + len;
+        while (srcPos < end) {
+            dest[destPos ++] = table[src[srcPos ++] & 0xff];
+        } // while srcPos
+    } // decode(5)
+
+    /** Translates a byte subarray into a String
+     *  @param src source array
+     *  @param start first byte position
+     *  @param len number of bytes to be translated
+     *  @return translated string
+     */
+    public String decode(byte[] src, int start, int len) {
+        char[] result = new char[len];
+        decode(src, start, result, 0, len);
+        return new String(result);
+    } // decode(3)
+
+    /** Determines whether this character set contains another one
+     *  @param cs another character set
+     *  @return true only for the same character set
+     */
+    public boolean contains(Charset cs) {
+        return cs == this;
+    } // contains
+
+    /** Gets a new decoder
+     *  @return decoder which maps bytes by the table
+     */
+    public CharsetDecoder newDecoder() {
+        return new Decoder();
+    } // newDecoder
+
+    /** Tells whether this character set supports encoding
+     *  @return false
+     */
+    public boolean canEncode() {
+        return false;
+    } // canEncode
+
+    /** Encoding is not supported
+     *  @return never
+     *  @throws UnsupportedOperationException always
+     */
+    public CharsetEncoder newEncoder() {
+        throw new UnsupportedOperationException(name() + " cannot encode");
+    } // newEncoder
+
+    /** Decoder which maps the bytes by the table, array-based if possible
+     */
+    private class Decoder extends CharsetDecoder {
+        /** Constructor */
+        Decoder() {
+            super(SystemCharset.this, 1.0f, 1.0f);
+        } // Constructor
+
+        /** Decodes as many bytes as fit into the output buffer
+         *  @param in input buffer
+         *  @param out output buffer
+         *  @return UNDERFLOW if the input was consumed, OVERFLOW if the output is full
+         */
+        protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+            int len = Math.min(in.remaining(), out.remaining());
+            if (in.hasArray() && out.hasArray()) {
+                int srcPos  = in .arrayOffset() + in .position();
+                int destPos = out.arrayOffset() + out.position();
+                SystemCharset.this.decode(in.array(), srcPos, out.array(), destPos, len);
+                in .position(in .position() + len);
+                out.position(out.position() + len);
+            } else {
+                int ilen = len;
+                while (ilen > 0) {
+                    out.put(table[in.get() & 0xff]);
+                    ilen --;
+                } // while ilen
+            }
+            return in.hasRemaining() ? CoderResult.OVERFLOW : CoderResult.UNDERFLOW;
+        } // decodeLoop
+    } // Decoder
+
+} // SystemCharset
@@ -0,0 +1,104 @@
+/*  Flight Recorder events for the file systems in disk images
+    @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16, Georg Fischer
+*/
+/*
+ * Copyright 2013 Dr. Georg Fischer <punctum at punctum dot kom>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teherba.flodskim.system;
+import  jdk.jfr.Category;
+import  jdk.jfr.DataAmount;
+import  jdk.jfr.Description;
+import  jdk.jfr.Event;
+import  jdk.jfr.Label;
+import  jdk.jfr.Name;
+import  jdk.jfr.StackTrace;
+
+/** JDK Flight Recorder events for the phases of a {@link BaseSystem}:
+ *  filling of the directory, parsing of single directory entries,
+ *  and the extraction of single files.
+ *  Together with the events in {@link org.teherba.flodskim.buffer.ContainerEvents},
+ *  a recording shows which images and which phases are slow.
+ *  @author Dr. Georg Fischer
+ */
+public class SystemEvents {
+    public final static String CVSID = "@(#) $Id: SystemEvents.java 852 2012-01-06 08:07:08Z gfis $";
+
+    /** No-args Constructor - the events are nested classes */
+    private SystemEvents() {
+    } // Constructor
+
+    /** The directory was read with <code>fillDirectory</code> */
+    @Name("org.teherba.flodskim.DirectoryFill")
+    @Label("Directory Fill")
+    @Category({"flodskim", "System"})
+    public static final class DirectoryFill extends Event {
+        @Label("Image")
+        @Description("Name of the container file, or \"-\" for STDIN")
+        public String image;
+
+        @Label("System")
+        @Description("Code of the file system")
+        public String system;
+    } // DirectoryFill
+
+    /** One directory entry was parsed with <code>nextDirectoryEntry</code> */
+    @Name("org.teherba.flodskim.EntryParse")
+    @Label("Entry Parse")
+    @Category({"flodskim", "System"})
+    @StackTrace(false)
+    public static final class EntryParse extends Event {
+        @Label("Image")
+        public String image;
+
+        @Label("System")
+        public String system;
+
+        @Label("Entry")
+        @Description("Full name of the file in the directory")
+        public String entry;
+
+        @Label("File Size")
+        @DataAmount
+        public long bytes;
+
+        @Label("Blocks")
+        public int blocks;
+    } // EntryParse
+
+    /** One file was copied or extracted */
+    @Name("org.teherba.flodskim.FileExtract")
+    @Label("File Extract")
+    @Category({"flodskim", "System"})
+    public static final class FileExtract extends Event {
+        @Label("Image")
+        public String image;
+
+        @Label("System")
+        public String system;
+
+        @Label("Entry")
+        public String entry;
+
+        @Label("Target")
+        @Description("Name of the file which was written")
+        public String target;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytes;
+    } // FileExtract
+
+} // SystemEvents
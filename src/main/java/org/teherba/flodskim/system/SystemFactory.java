@@ -1,5 +1,6 @@
 /*  Selects the applicable subclass of BaseSystem
     @(#) $Id: SystemFactory.java 657 2011-03-17 07:56:38Z gfis $
+    2026-10-16: detect
     2017-05-29: javadoc 1.8
     2013-11-05, Georg Fischer
 */
@@ -19,7 +20,9 @@
  * limitations under the License.
  */
 package org.teherba.flodskim.system;
+import  org.teherba.flodskim.buffer.BaseBuffer;
 import  org.teherba.flodskim.system.BaseSystem;
+import  java.nio.charset.StandardCharsets;
 import  java.util.ArrayList;
 import  java.util.Iterator;
 import  java.util.StringTokenizer;
@@ -128,4 +131,106 @@ public class SystemFactory {
         return result;
     } // getInstance
 
+    //-----------------------
+    // Detection of the file system
+    //-----------------------
+    /** Detects the file system in a container which was read,
+     *  from the signatures of the supported systems:
+     *  <ul>
+     *  <li>tar - a valid tar header at the start</li>
+     *  <li>sinix-mx2 - a valid tar header in block 0x38</li>
+     *  <li>ta-vs - the FAT signature 02 00 01 20</li>
+     *  <li>dec-rx50 - a plausible CP/M directory in track 2</li>
+     *  </ul>
+     *  @param container a container which was filled by {@link BaseBuffer#readContainer}
+     *  @return code of the file system, or "base" if none was recognized
+     */
+    public String detect(BaseBuffer container) {
+        String result = "base";
+        long length = container.getLength();
+        if (false) {
+        } else if (isTarHeader(container, 0L)) {
+            result = "tar";
+        } else if (isTarHeader(container, 0x38 * 512L)) {
+            result = "sinix-mx2";
+        } else if (length >= 0x400 && (hasFatSignature(container, 0x202) && hasFatSignature(container, 0x01e)
+                || hasFatSignature(container, 0x002))) {
+            result = "ta-vs";
+        } else if (isCpmDirectory(container, 2 * 10 * 512L)) {
+            result = "dec-rx50";
+        }
+        return result;
+    } // detect
+
+    /** Determines whether there is a tar header with a valid checksum
+     *  @param container a container which was read
+     *  @param offset position of the header
+     *  @return whether the header is valid
+     */
+    private boolean isTarHeader(BaseBuffer container, long offset) {
+        boolean result = false;
+        if (offset + 512 <= container.getLength()) {
+            byte[] header = new byte[512];
+            container.copyBytes(offset, header, 0, header.length);
+            long sum = 0;
+            int ipos = 0;
+            while (ipos < header.length) {
+                sum += ipos >= 148 && ipos < 156 ? ' ' : header[ipos] & 0xff; // checksum field counts as blanks
+                ipos ++;
+            } // while ipos
+            String field = new String(header, 148, 8, StandardCharsets.US_ASCII).replace('\0', ' ').trim();
+            try {
+                result = header[0] != 0 && field.length() > 0 && Long.parseLong(field, 8) == sum;
+            } catch (NumberFormatException exc) {
+                // not octal - no tar header
+            }
+        }
+        return result;
+    } // isTarHeader
+
+    /** Determines whether there is the signature 02 00 01 20 of a TA VS file allocation table
+     *  @param container a container which was read
+     *  @param offset position of the signature
+     *  @return whether the signature is present
+     */
+    private boolean hasFatSignature(BaseBuffer container, int offset) {
+        byte[] sig = new byte[4];
+        container.copyBytes(offset, sig, 0, sig.length);
+        return sig[0] == 0x02 && sig[1] == 0x00 && sig[2] == 0x01 && sig[3] == 0x20;
+    } // hasFatSignature
+
+    /** Determines whether a sector contains a plausible CP/M directory:
+     *  each entry is unused (0xe5), or it has a user number 0..15 and
+     *  a name and extension of printable characters, and at least one entry is used.
+     *  @param container a container which was read
+     *  @param offset position of the first directory sector
+     *  @return whether all entries in the sector are plausible
+     */
+    private boolean isCpmDirectory(BaseBuffer container, long offset) {
+        boolean result = false;
+        if (offset + 512 <= container.getLength()) {
+            byte[] sector = new byte[512];
+            container.copyBytes(offset, sector, 0, sector.length);
+            boolean valid = true;
+            int entry = 0;
+            while (valid && entry < sector.length) {
+                int user = sector[entry] & 0xff;
+                if (user <= 15) {
+                    int ipos = 1;
+                    while (valid && ipos <= 11) { // name and extension
+                        int ch = sector[entry + ipos] & 0x7f; // high bits are attributes
+                        valid = ch >= 0x20 && ch < 0x7f;
+                        ipos ++;
+                    } // while ipos
+                    result = valid;
+                } else if (user != 0xe5) {
+                    valid = false;
+                }
+                entry += 32;
+            } // while entry
+            result &= valid;
+        }
+        return result;
+    } // isCpmDirectory
+
 } // SystemFactory
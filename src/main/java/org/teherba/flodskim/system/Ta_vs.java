@@ -1,5 +1,13 @@
 /*  Class for the file system structure of Triumph-Adler VS20 and BSM100
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: Flight Recorder event for fillDirectory
+    2026-10-16: Metrics
+    2026-10-16: static CHARSET
+    2026-10-16: one reused cursor in nextDirectoryEntry
+    2026-10-16: TaVsCursor; name filter without regex
+    2026-10-16: no System.exit
+    2026-10-16: getBlockViews
+    2026-10-16: getBlock via BaseBuffer.copyBytes
     2017-05-29: javadoc 1.8
     2013-11-07, Georg Fischer: copied from BaseSystem
 */
@@ -22,7 +30,9 @@ package org.teherba.flodskim.system;
 import  org.teherba.flodskim.buffer.BaseBuffer;
 import  org.teherba.flodskim.system.BaseSystem;
 import  org.teherba.flodskim.system.DirectoryEntry;
+import  org.teherba.flodskim.system.SystemEvents;
 import  java.io.BufferedOutputStream;
+import  java.nio.ByteBuffer;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -56,10 +66,14 @@ public class Ta_vs extends BaseSystem {
         super.initialize();
     } // initialize
 
-    /** Initializes the character table
+    /** Character set of TA VS20 and BSM100, shared by all instances */
+    public static final SystemCharset CHARSET = new SystemCharset("x-flodskim-ta-vs", createCharTable());
+
+    /** Builds the table for {@link #CHARSET}
+     *  @return array of 256 characters
      */
-    protected void initCharTable() {
-        super.initCharTable();
+    private static char[] createCharTable() {
+        char[] charTable = SystemCharset.identityTable();
         charTable[0x80] = 'Ä'; // Ae
         charTable[0x81] = 'Ö'; // Oe
         charTable[0x82] = 'Ü'; // Ue
@@ -94,6 +108,13 @@ public class Ta_vs extends BaseSystem {
         charTable[0x80] = 'Ä'; // Ae
         charTable[0x81] = 'Ö'; // Oe
         charTable[0x90] = '\'';
+        return charTable;
+    } // createCharTable
+
+    /** Initializes the character table
+     */
+    protected void initCharTable() {
+        setCharset(CHARSET);
     } // initCharTable
 
     /** Initializes the disk geometry properties
@@ -122,12 +143,13 @@ public class Ta_vs extends BaseSystem {
      *  @return array of bytes with the content of the block
      */
     public byte[] getBlock(int blockNo2) {
+        getMetrics().addBlockRead();
         int blockNo = blockNo2 / 2;
         int sectCount = 1; // blockSize / sectSize; // per block; sectors still to be processed
         byte[] result = new byte[getBlockSize()];
         int destPos = 0; // destination position in result
         while (sectCount > 0) {
-            int srcPos   = blockNo * getBlockSize();
+            long srcPos  = (long) blockNo * getBlockSize();
             if (debug > 0) {
                 System.err.println(""
                         + ", blockNo2=" + String.format("0x%x", blockNo2)
@@ -135,13 +157,25 @@ public class Ta_vs extends BaseSystem {
                         + ", destPos="  + String.format("0x%x", destPos)
                         );
             }
-            System.arraycopy(getContainer().getBuffer(), srcPos, result, destPos, getBlockSize());
+            getContainer().copyBytes(srcPos, result, destPos, getBlockSize());
             destPos += sectorSize;
             sectCount --;
         } // while sectCount
         return result;
     } // getBlock
 
+    /** Gets a logical block as a read-only view of the container.
+     *  @param blockNo2 number of the block, always even, must
+     *  be divided by 2 to yield a canonical blockNo fitted for the blocksize
+     *  @param views array with at least 1 element, which is filled with the view
+     *  @return number of views stored in <em>views</em>
+     */
+    public int getBlockViews(int blockNo2, ByteBuffer[] views) {
+        getMetrics().addBlockRead();
+        views[0] = getContainer().getView((long) (blockNo2 / 2) * getBlockSize(), getBlockSize());
+        return 1;
+    } // getBlockViews
+
     /** Offset of file allocation table in {@link #directory} */
     protected int fatOffset;
 
@@ -192,10 +226,14 @@ public class Ta_vs extends BaseSystem {
             fatOffset = 0x002;
         } else {
             log.error("cannot find signature");
-            System.exit(1);
+            getMetrics().addError();
+            maxDirEntries = 0; // no entries
         }
     } // fillDirectory
 
+    /** cursor which is reused by {@link #nextDirectoryEntry} */
+    private TaVsCursor dirCursor;
+
     /** Retrieves the next directory entry which has the following fields:
      *  <ul>
      *  <li>+0x00: Filename (16 bytes in TA VS character set)</li>
@@ -222,42 +260,153 @@ public class Ta_vs extends BaseSystem {
      *  are no more directory entries.
      */
     public DirectoryEntry nextDirectoryEntry(boolean withDeleted) {
-        DirectoryEntry result = new DirectoryEntry();
-        boolean found = false;
+        DirectoryEntry result = null;
         try {
-            int dirOffset = getDirOffset();
-            while (! found && dirOffset < maxDirEntries * getDirEntrySize()) {
-                byte[] entry = new byte[getDirEntrySize()];
-                System.arraycopy(directory, dirOffset, entry, 0, getDirEntrySize());
-                dirOffset += getDirEntrySize();
-                setDirOffset(dirOffset);
-                if (entry[0] != 0) { // there is some filename
-                    if (entry[0x13] != 0 || withDeleted) { // to be shown
-                        found = true;
-                        result.setBaseFileName(translate(entry, 0, 15).trim().replaceAll("[^A-Za-z0-9ÄÖÜäöüß.]", "_"));
-                        result.setExtension   (translate(entry, 16, 1).trim());
-                        result.setDeleted     (entry[0x13] == 0 );
-                        result.setExtentNumber(0);
-                        int blockNo2 = BaseBuffer.getLsb2(entry, 17); // starting block
-                        result.addBlock(blockNo2);
-                        // blockNo /= 2;
-                        int fileSize = 0;
-                        if (true || ! result.isDeleted()) {
-                            fileSize += followFat(blockNo2,  result  ); // now consult the FAT
-                        } // not deleted
-                        result.setFileSize(fileSize);
-                    } // if to be shown
-                } // some filename
-            } // while ! found
+            if (dirCursor == null || ! dirCursor.walks(directory)) { // fillDirectory allocates a new array
+                dirCursor = new TaVsCursor(0);
+            }
+            dirCursor.seek((int) getDirOffset());
+            if (dirCursor.next(withDeleted)) {
+                result = dirCursor.toEntry();
+            }
+            setDirOffset(dirCursor.getOffset() + getDirEntrySize());
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
-        }
-        if (! found) {
-            result = null;
+            getMetrics().addError();
         }
         return result;
     } // nextDirectoryEntry
 
+    /** Cursor over the directory entries described in {@link #nextDirectoryEntry}
+     */
+    private class TaVsCursor extends DirectoryCursor {
+        /** Constructor
+         *  @param startOffset offset of the first entry to be examined
+         */
+        TaVsCursor(int startOffset) {
+            super(Ta_vs.this.directory, Ta_vs.this.getDirEntrySize(), Ta_vs.this.maxDirEntries, startOffset);
+        } // Constructor
+        protected boolean isUsed() {
+            return directory[offset] != 0;
+        } // isUsed
+        public boolean isDeleted() {
+            return directory[offset + 0x13] == 0;
+        } // isDeleted
+        /** Gets the translated, trimmed filename, where all characters other than
+         *  letters, digits, German umlauts and "." are replaced by "_"
+         *  @return base file name
+         */
+        public String getBaseFileName() {
+            SystemCharset charset = getCharset();
+            int start = offset;
+            int end   = offset + 15;
+            while (start < end && charset.decode(directory[start  ]) <= ' ') {
+                start ++;
+            } // while leading
+            while (end > start && charset.decode(directory[end - 1]) <= ' ') {
+                end --;
+            } // while trailing
+            char[] name = new char[end - start];
+            int pos = start;
+            while (pos < end) {
+                char ch = charset.decode(directory[pos]);
+                name[pos - start] = isNameChar(ch) ? ch : '_';
+                pos ++;
+            } // while pos
+            return new String(name);
+        } // getBaseFileName
+        public String getExtension() {
+            return translate(directory, offset + 16, 1).trim();
+        } // getExtension
+        public int getExtentNumber() {
+            return 0;
+        } // getExtentNumber
+        public int getBlockCount() {
+            int result = 1;
+            int blockNo2 = getStartBlock();
+            int loopLimit = 32; // as in followFat
+            while (loopLimit > 0 && (blockNo2 = nextFatBlock(blockNo2)) >= 0) {
+                result ++;
+                loopLimit --;
+            } // while loopLimit
+            return result;
+        } // getBlockCount
+        public int getBlock(int index) {
+            int blockNo2 = getStartBlock();
+            while (index > 0) {
+                blockNo2 = nextFatBlock(blockNo2);
+                index --;
+            } // while index
+            return blockNo2;
+        } // getBlock
+        public int getFileSize() {
+            return followFat(getStartBlock(), null);
+        } // getFileSize
+        /** Copies the fields into a new entry, with a single walk through the FAT
+         *  @return a filled directory entry
+         */
+        public DirectoryEntry toEntry() {
+            DirectoryEntry result = new DirectoryEntry();
+            result.setBaseFileName(getBaseFileName());
+            result.setExtension   (getExtension   ());
+            result.setDeleted     (isDeleted      ());
+            result.setExtentNumber(0);
+            int blockNo2 = getStartBlock();
+            result.addBlock(blockNo2);
+            result.setFileSize(followFat(blockNo2, result)); // now consult the FAT
+            return result;
+        } // toEntry
+        /** Gets the starting block
+         *  @return blockNo2 of the first block
+         */
+        private int getStartBlock() {
+            return BaseBuffer.getLsb2(directory, offset + 17);
+        } // getStartBlock
+    } // TaVsCursor
+
+    /** Determines whether a character may occur in a file name
+     *  @param ch character to be tested
+     *  @return true for letters, digits, German umlauts and "."
+     */
+    private static boolean isNameChar(char ch) {
+        return (ch >= 'A' && ch <= 'Z')
+            || (ch >= 'a' && ch <= 'z')
+            || (ch >= '0' && ch <= '9')
+            || ch == '.'
+            || "ÄÖÜäöüß".indexOf(ch) >= 0
+            ;
+    } // isNameChar
+
+    /** Fills the directory, and gets a cursor which reads the entries in place
+     *  @return a cursor positioned before the first entry
+     */
+    public DirectoryCursor getDirectoryCursor() {
+        SystemEvents.DirectoryFill event = new SystemEvents.DirectoryFill();
+        event.begin();
+        fillDirectory();
+        commitFill(event);
+        return new TaVsCursor((int) getDirOffset());
+    } // getDirectoryCursor
+
+    /** Gets the following block from the file allocation table
+     *  @param blockNo2 logical block number
+     *  @return number of the following block, or -1 if <em>blockNo2</em> is the last block
+     */
+    private int nextFatBlock(int blockNo2) {
+        int result = -1;
+        int offset = fatOffset + blockNo2;
+        if (offset < 0x400) {
+            int fatValue = BaseBuffer.getLsb2(directory, offset);
+            if (fatValue % 2 == 0) { // even, next block number
+                result = fatValue;
+                if (result >= 0xff00) { // deleted block, for BSM100
+                    result &= 0x00ff;
+                }
+            }
+        }
+        return result;
+    } // nextFatBlock
+
     /** Retrieves the following block numbers and the byte length in the last
      *  block from the file allocation table starting at offset 0x202.
      *  For each blockNo2 the FAT contains a value which is:
@@ -277,7 +426,8 @@ public class Ta_vs extends BaseSystem {
      </pre>
      *  If the high byte of the value is 0xff, the file is deleted (BSM100).
      *  @param blockNo2 logical block number of first block
-     *  @param result the directory entry to be filled (its block list is modified!)
+     *  @param result the directory entry to be filled (its block list is modified!),
+     *  or null if only the size is needed
      *  @return number of total bytes in the file
      */
     private int followFat(int blockNo2,  DirectoryEntry result  ) {
@@ -302,7 +452,9 @@ public class Ta_vs extends BaseSystem {
                     if (blockNo2 >= 0xff00) { // deleted block, for BSM100
                         blockNo2 &= 0x00ff;
                     }
-                    result.addBlock(blockNo2);
+                    if (result != null) {
+                        result.addBlock(blockNo2);
+                    }
                 } else { // odd, number of bytes in last block
                     busy = false;
                     fileSize += (fatValue - 1) / 2;
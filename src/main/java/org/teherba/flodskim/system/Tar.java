@@ -1,5 +1,16 @@
 /*  Class for a Unix tar archive structure
     @(#) $Id: Main.java 820 2011-11-07 21:59:07Z gfis $
+    2026-10-16: fillDirectory
+    2026-10-16: getTargetFileName; close the channel on errors
+    2026-10-16: long file sizes
+    2026-10-16: Flight Recorder events
+    2026-10-16: Metrics
+    2026-10-16: getFileBlockCount, getFileBlock
+    2026-10-16: DirectoryEntry.getBlock
+    2026-10-16: copyFile with a single view and positional writes
+    2026-10-16: no System.exit
+    2026-10-16: copyFile with block views
+    2026-10-16: long offsets for mapped containers
     2017-05-29: javadoc 1.8
     2014-12-04, Georg Fischer: copied from Cpm
 */
@@ -22,10 +33,11 @@ package org.teherba.flodskim.system;
 import  org.teherba.flodskim.buffer.BaseBuffer;
 import  org.teherba.flodskim.system.BaseSystem;
 import  org.teherba.flodskim.system.DirectoryEntry;
-import  java.io.BufferedOutputStream;
+import  org.teherba.flodskim.system.SystemEvents;
 import  java.io.File;
 import  java.io.FileOutputStream;
-import  java.util.Iterator;
+import  java.nio.ByteBuffer;
+import  java.nio.channels.FileChannel;
 import  org.apache.logging.log4j.Logger;
 import  org.apache.logging.log4j.LogManager;
 
@@ -64,6 +76,13 @@ public class Tar extends BaseSystem {
     // Access methods
     //--------------------------
 
+    /** Starts the iteration over the directory: the first header
+     *  is at the start of the archive.
+     */
+    public void fillDirectory() {
+        setDirOffset((long) getDirStartBlock() * getBlockSize());
+    } // fillDirectory
+
     /** Retrieves the next directory entry
      *  @param withDeleted whether deleted entries should be returned
      *  @return a filled {@link DirectoryEntry}, or null if there
@@ -73,17 +92,17 @@ public class Tar extends BaseSystem {
         DirectoryEntry result = new DirectoryEntry();
         try {
             BaseBuffer container = getContainer();
-            int ofs = getDirOffset();
+            long ofs = getDirOffset();
             if (debug > 0) {
                 System.err.println("nextDirectoryEntry.ofs = " + String.format("0x%x", ofs)
                         + ", block " + String.format("0x%x", ofs / getBlockSize())
                         );
             }
-            if (ofs < container.size()) {
+            if (ofs < container.getLength()) {
                 String fileName = container.getAscii(ofs + 0, 100).trim();
                 if (fileName.length() > 0) {
                     result.setBaseFileName(fileName);
-                    result.addBlock(getDirOffset() / getBlockSize() + 1); // file contents start at next block
+                    result.addBlock((int) (ofs / getBlockSize()) + 1); // file contents start at next block
                     // 100,  8 = File mode
                     // 108,  8 = Owner's numeric user ID
                     // 116,  8 = Group's numeric user ID
@@ -92,9 +111,9 @@ public class Tar extends BaseSystem {
                     // 148,  8 = Checksum for header record
                     // 156,  1 = Link indicator (0 = normal, 1 = hard, 2 = symbolic link; pre-POSIX-1-1988)
                     // 157,100 = nume of linked file
-                    result.setFileSize(Integer.parseInt(container.getAscii(ofs + 124, 12).trim(), 8)); // octal
+                    result.setFileSize(Long.parseLong(container.getAscii(ofs + 124, 12).trim(), 8)); // octal, may exceed 2 GB
                     result.setDeleted(false);
-                    ofs += (1 + (result.getFileSize() + getBlockSize() - 1) / getBlockSize()) * getBlockSize();
+                    ofs += (1L + (result.getFileSize() + getBlockSize() - 1) / getBlockSize()) * getBlockSize();
                     setDirOffset(ofs);
                 } else {
                     result = null; // empty directory filename resp. block
@@ -104,40 +123,84 @@ public class Tar extends BaseSystem {
             }
         } catch (Exception exc) {
             log.error(exc.getMessage(), exc);
-            System.exit(1);
+            getMetrics().addError();
+            result = null; // stop at an invalid header
         }
         return result;
     } // nextDirectoryEntry
 
-    /** Copy one file into a target directory.
-     *  Starting at the first block behind the directory entry,
-     *  all bytes of the source file are copied to the target.
+    /** Gets the number of blocks which contain the bytes of a file
+     *  @param diren directory entry for the file
+     *  @return number of contiguous blocks behind the directory entry
+     */
+    protected int getFileBlockCount(DirectoryEntry diren) {
+        return (int) ((diren.getFileSize() + getBlockSize() - 1) / getBlockSize());
+    } // getFileBlockCount
+
+    /** Gets one of the blocks which contain the bytes of a file
+     *  @param diren directory entry for the file
+     *  @param index 0-based index of the block in the file
+     *  @return block number
+     */
+    protected int getFileBlock(DirectoryEntry diren, int index) {
+        return diren.getBlock(0) + index; // contiguous
+    } // getFileBlock
+
+    /** Gets the name of the file which {@link #copyFile} writes for a directory entry
      *  @param diren directory entry for the file to be copied
      *  @param path target directory, for example "."
-     *  @return target filename
+     *  @return target filename, relative to <em>path</em> even if the member name is absolute
      */
-    public String copyFile(DirectoryEntry diren, String path) {
+    public String getTargetFileName(DirectoryEntry diren, String path) {
         String sourceFileName = diren.getBaseFileName();
         if (sourceFileName.startsWith("/")) { // remove leading slash
             sourceFileName = sourceFileName.substring(1);
         }
-        String targetFileName = path + "/" + sourceFileName;
+        return path + "/" + sourceFileName;
+    } // getTargetFileName
+
+    /** maximum number of bytes in one view for {@link #copyFile} */
+    private static final int MAX_VIEW_SIZE = 1 << 24;
+
+    /** Copy one file into a target directory.
+     *  Starting at the first block behind the directory entry,
+     *  all bytes of the source file are contiguous, and they are
+     *  copied to the target with positional writes from views
+     *  of at most {@link #MAX_VIEW_SIZE} bytes, such that members
+     *  of 2 GB and more can also be copied.
+     *  @param diren directory entry for the file to be copied
+     *  @param path target directory, for example "."
+     *  @return target filename
+     */
+    public String copyFile(DirectoryEntry diren, String path) {
+        SystemEvents.FileExtract event = new SystemEvents.FileExtract();
+        event.begin();
+        long startTime = System.nanoTime();
+        long position = 0L; // in the target file
+        String targetFileName = getTargetFileName(diren, path);
         int lastSlash = targetFileName.lastIndexOf("/");
         try {
             (new File(targetFileName.substring(0, lastSlash))).mkdirs(); // intermediate directories are also created
-            if (! sourceFileName.endsWith("/")) { // not a directory
-                int remainingSize = diren.getFileSize();
-                BufferedOutputStream byteWriter = new BufferedOutputStream(new FileOutputStream(targetFileName, false));
-                Iterator<Integer> blockIterator = diren.getBlockIterator();
-                int blockNo = blockIterator.next();
-                while (remainingSize > 0) {
-                    remainingSize = writeBlock(byteWriter, blockNo, remainingSize);
-                    blockNo ++;
-                } // while blocks
-                byteWriter.close();
+            if (! targetFileName.endsWith("/")) { // not a directory
+                FileChannel channel = new FileOutputStream(targetFileName, false).getChannel();
+                try {
+                    long start = (long) diren.getBlock(0) * getBlockSize();
+                    long fileSize = diren.getFileSize();
+                    while (position < fileSize) {
+                        ByteBuffer view = getContainer().getView(start + position, (int) Math.min(fileSize - position, MAX_VIEW_SIZE));
+                        while (view.hasRemaining()) {
+                            position += channel.write(view, position);
+                        } // while remaining
+                    } // while position
+                } finally {
+                    channel.close();
+                }
             } // not a directory
-        } catch (Exception exc) {
+            getMetrics().addFileExtracted(position, System.nanoTime() - startTime);
+            commitExtract(event, diren, targetFileName, position);
+        } catch (Exception exc) { // the copy is incomplete, and it is not counted as extracted
             log.error(exc.getMessage(), exc);
+            getMetrics().addError();
         }
         return targetFileName;
     } // copyFile
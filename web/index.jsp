@@ -1,18 +1,17 @@
 <%--
     @(#) $Id: index.jsp 820 2011-11-07 21:59:07Z gfis $
-    2011-10-17: spellClock
-    2009-11-24: spellGreeting
-	2009-04-24: simple 4 columns layout
-    2009-04-06: old names were 'NumberSpeller' etc.
-    2007-04-24: <input name="digits" maxsize="123" size="101"
-    2007-02-08: use SpellerFactory
-    2006-01-02: result in 2nd row of table
+    2026-10-16: names from the request and from the image are HTML-escaped
+    2026-10-16: upload form and directory listing for flodskim
     2005-08-22: Georg Fischer
 --%>
-<%@page import="org.teherba.numword.BaseSpeller"%>
-<%@page import="org.teherba.numword.NumwordCommand"%>
-<%@page import="org.teherba.numword.SpellerFactory"%>
+<%@page import="org.teherba.flodskim.buffer.BaseBuffer"%>
+<%@page import="org.teherba.flodskim.buffer.BufferFactory"%>
+<%@page import="org.teherba.flodskim.system.BaseSystem"%>
+<%@page import="org.teherba.flodskim.system.DirectoryEntry"%>
+<%@page import="org.teherba.flodskim.system.SystemFactory"%>
+<%@page import="java.net.URLEncoder"%>
 <%@page import="java.util.Iterator"%>
+<%@page import="java.util.List"%>
 <% response.setContentType("text/html; charset=UTF-8"); %>
 <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN"
     "http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd">
@@ -35,152 +34,122 @@
 <html xmlns="http://www.w3.org/1999/xhtml">
 <head>
     <meta http-equiv="Content-Type" content="text/html; charset=utf-8" />
-    <title>Number Words</title>
+    <title>Floppy Disk Images</title>
     <link rel="stylesheet" type="text/css" href="stylesheet.css">
 </head>
+<%!
+    /** Escapes the characters which have a special meaning in HTML text and attribute values
+     *  @param text a value from the request or from the image, for example a file name
+     *  @return text with entities for &amp;, &lt;, &gt; and quotes
+     */
+    private static String escape(String text) {
+        StringBuffer result = new StringBuffer(text.length() + 16);
+        int ichar = 0;
+        while (ichar < text.length()) {
+            char ch = text.charAt(ichar ++);
+            switch (ch) {
+                case '&':  result.append("&amp;" ); break;
+                case '<':  result.append("&lt;"  ); break;
+                case '>':  result.append("&gt;"  ); break;
+                case '"':  result.append("&quot;"); break;
+                case '\'': result.append("&#39;" ); break;
+                default:   result.append(ch);       break;
+            } // switch ch
+        } // while ichar
+        return result.toString();
+    } // escape
+%>
 <%
     String CVSID = "@(#) $Id: index.jsp 820 2011-11-07 21:59:07Z gfis $";
-    String[] optFunction = new String []
-            /*  0 */ { "c"
-            /*  1 */ , "C"
-            /*  2 */ , "m"
-            /*  3 */ , "m3"
-            /*  4 */ , "w"
-            /*  5 */ , "w2"
-            /*  6 */ , "s"
-            /*  7 */ , "g"
-            /*  8 */ , "h0"
-            /*  9 */ , "h1"
-            /* 10 */ , "h2"
-            /* 11 */ , "h3"
-			/* 12 */ , "d"
-			/* 13 */ , "p"
-            } ;
-    String[] enFunction = new String []
-            /*  0 */ { "Digits as Word"
-            /*  1 */ , "Word as Digits"
-            /*  2 */ , "Month"
-            /*  3 */ , "Month's Abbreviation"
-            /*  4 */ , "Weekday"
-            /*  5 */ , "Weekday's Abbreviation"
-            /*  6 */ , "Season"
-            /*  7 */ , "Greeting"
-            /*  8 */ , "Time of Day - offical"
-            /*  9 */ , "Time - variant 1"
-            /* 10 */ , "Time - variant 2"
-            /* 11 */ , "Time - variant 3"
-            /* 12 */ , "Cardinal Direction"
-            /* 13 */ , "Planet"
-            } ;
-    SpellerFactory factory;
-    Object obj = session.getAttribute("factory");
-    if (obj == null) {
-        factory = new SpellerFactory();
-        session.setAttribute("factory"  , factory );
-    } else {
-        factory = (SpellerFactory) obj;
-    }
-    // factory = new SpellerFactory();
     Object
-    field = session.getAttribute("function");
-    String function = (field != null) ? (String) field : "c";
-    field = session.getAttribute("language");
-    String language = (field != null && field != "") ? (String) field : "de";
-    field = session.getAttribute("digits");
-    String digits   = (field != null) ? (String) field : "1947";
+    field = request.getAttribute("image");
+    String image  = (field != null) ? (String) field : "";
+    field = request.getAttribute("buffer");
+    String buffer = (field != null) ? (String) field : "auto";
+    field = request.getAttribute("system");
+    String system = (field != null) ? (String) field : "auto";
+    List<DirectoryEntry> entries = (List<DirectoryEntry>) request.getAttribute("entries");
 %>
 <body>
-    <!--
-    function <%=function%>, language <%=language%>, digits="<%=digits%>"
-    -->
-    <h2>Number Words</h2>
-    <form action="servlet" method="post">
-        <input type = "hidden" name="view" value="index" />
+    <h2>Floppy Disk Images</h2>
+    <form action="servlet" method="post" enctype="multipart/form-data">
+        <%-- the form fields must precede the file, since the upload is parsed while it arrives --%>
         <table cellpadding="8">
             <tr>
-                <td width="100">Language<br />
-                    <select name="language" size="<%= factory.getCount() %>"> <%-- 16 --%>
+                <td width="100" valign="top">Container<br />
+                    <select name="buffer">
+                    <option value="auto">auto</option>
                     <%
-                        Iterator/*<1.5*/<BaseSpeller>/*1.5>*/ iter = factory.getIterator();
-                        while (iter.hasNext()) {
-                            BaseSpeller speller = (BaseSpeller) iter.next();
-                            String iso = speller.getFirstIso639();
+                        Iterator<BaseBuffer> biter = new BufferFactory().getIterator();
+                        while (biter.hasNext()) {
+                            BaseBuffer instance = biter.next();
                             out.write("<option value=\""
-                                    + iso + "\""
-                                    + (iso.equals(language) ? " selected" : "")
+                                    + instance.getCode() + "\""
+                                    + (instance.getCode().equals(buffer) ? " selected" : "")
                                     + ">"
-                                    + speller.getDescription() + "</option>\n");
-                        } // while iter
+                                    + instance.getDescription() + "</option>\n");
+                        } // while biter
                     %>
                     </select>
                 </td>
 
-                <td width="100">Spell<br />
-                    <select name="function" size="<%= optFunction.length %>">
+                <td width="100" valign="top">File System<br />
+                    <select name="system">
+                    <option value="auto">auto</option>
                     <%
-                        int ind = 0;
-                        while (ind < optFunction.length) {
+                        Iterator<BaseSystem> siter = new SystemFactory().getIterator();
+                        while (siter.hasNext()) {
+                            BaseSystem instance = siter.next();
                             out.write("<option value=\""
-                                    + optFunction[ind] + "\""
-                                    + (optFunction[ind].equals(function) ? " selected" : "")
+                                    + instance.getCode() + "\""
+                                    + (instance.getCode().equals(system) ? " selected" : "")
                                     + ">"
-                                    + enFunction[ind] + "</option>\n");
-                            ind ++;
-                        } // while ind
+                                    + instance.getDescription() + "</option>\n");
+                        } // while siter
                     %>
                     </select>
-                    <br />&nbsp;
-                    <br /><a href="docs/documentation.html">Documentation</a>,
-                          <a href="docs/api/index.html">API</a>
-                    <br /><a href="docs/developer.html">Developer Hints, </a>
-                          <a href="docs/bugs.html">Bugs</a>
-                    <br /><a href="servlet?view=uniblock&digits=01">Unicode Tables</a>
-				    <br /><a href="metaInf.jsp?view=manifest">Manifest</a>,
-				          <a href="metaInf.jsp?view=license" >License</a>
-          			<br /><a href="metaInf.jsp?view=notice"  >References</a>
-                    <p  />If the <em>Digits/Word</em> field is left empty, all months, weekdays etc. are shown,
-                    and for "Digits as Word" a list of representative test numbers is spelled.
                 </td>
 
-                <td width="100" valign="top">Digits / Word<br />
-                    <input name="digits" size="80" value="<%= digits %>" />
+                <td width="*" valign="top">Image<br />
+                    <input type="file" name="file" size="60" />
                     <br />&nbsp;
-                    <br /><input type="submit" value="Submit" />
-					<p />
-    <%
-		// this is the result output code
-	    NumwordCommand command = new NumwordCommand();
-        String commandLine = "-l " + language + " -" + function + " " + digits;
-	    command.setMode(command.MODE_HTML_EM);
-        if (digits.equals("") && "ch".indexOf(function.substring(0,1)) >= 0) {
-		    command.setMode(command.MODE_HTML);
-        }
-        out.write(command.process(commandLine));
-	/*
-        if (factory.getSpeller(language).getDirection().equals("rtl")) {
-            // swap around tab
-            int pos = result.indexOf("\t");
-            out.write(result.substring(pos + 1)); // 2nd element - word
-            out.write("\t");
-            out.write(result.substring(0, pos)); // 1st element - digits
-            //    result =  "<bdo dir=\"ltr\">"
-            //            + result.replace("\t", "</bdo>\t<bdo dir=\"ltr\">")
-            //            + "</bdo>";
-        }
-        else {
-            out.write(result);
-        }
-    */
-    %>
-                </td>
-
-                <td width="*">
-                    <%-- such that the input field remains visible --%>
-                    &nbsp;
+                    <br /><input type="submit" value="Upload" />
+                    <br />&nbsp;
+                    <br /><a href="docs/api/index.html">API</a>,
+                          <a href="metaInf.jsp?view=license">License</a>
                 </td>
             </tr>
         </table>
     </form>
+<%
+    if (entries != null) {
+%>
+    <h3><%= escape(image) %> (<%= escape(system) %>)</h3>
+    <form action="servlet" method="get">
+        <input type="hidden" name="function" value="zip" />
+        <input type="hidden" name="image" value="<%= escape(image) %>" />
+        <table cellpadding="2">
+            <tr><th></th><th align="left">Name</th><th align="right">Size</th><th align="right">Blocks</th></tr>
+    <%
+        Iterator<DirectoryEntry> iter = entries.iterator();
+        while (iter.hasNext()) {
+            DirectoryEntry diren = iter.next();
+            String name = escape(diren.getFullName());
+            out.write("<tr><td>"
+                    + (diren.isDeleted() ? "" : "<input type=\"checkbox\" name=\"file\" value=\"" + escape(diren.getFileName()) + "\" />")
+                    + "</td><td>" + name + (diren.isDeleted() ? " (deleted)" : "")
+                    + "</td><td align=\"right\">" + diren.getFileSize()
+                    + "</td><td align=\"right\">" + diren.getBlockCount()
+                    + "</td></tr>\n");
+        } // while iter
+    %>
+        </table>
+        <input type="submit" value="Download selected files" />
+        <a href="servlet?function=zip&image=<%= URLEncoder.encode(image, "UTF-8") %>">all files as ZIP</a>
+    </form>
+<%
+    } // entries
+%>
     <p>
     <font size="-2">
     Questions, remarks to: <a href="mailto:punctum@punctum.com">Dr. Georg Fischer</a>
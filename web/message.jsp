@@ -1,6 +1,8 @@
 <%-- output some numbered system message
     @(#) $Id: message.jsp 13 2008-09-05 05:58:51Z gfis $
     Copyright (c) 2005 Dr. Georg Fischer <punctum@punctum.com>
+    2026-10-16: the function from the request is HTML-escaped
+    2026-10-16: messages for the upload of images
     2005-08-18
 --%>
 <!DOCTYPE html PUBLIC "-//W3C//DTD XHTML 1.0 Transitional//EN"
@@ -29,6 +31,8 @@ final String [] msgText = new String []
     , /* 002 */ "invalid message number"
     , /* 003 */ "invalid format"
     , /* 004 */ "uploaded file not found"
+    , /* 005 */ "image store is full, please try again later"
+    , /* 006 */ "image cannot be read"
     } ;
 %>
 <head>
@@ -38,8 +42,11 @@ final String [] msgText = new String []
 
 <body>
 <%
-    String msg      = (String) session.getAttribute("messno");
-    String function = (String) session.getAttribute("function");
+    String msg      = (String) request.getAttribute("messno");
+    String function = (String) request.getAttribute("function");
+    if (function != null) { // from the request
+        function = function.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
     int msgNo = 000;
     try {
         msgNo = Integer.parseInt(msg);